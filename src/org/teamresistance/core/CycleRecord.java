@@ -0,0 +1,126 @@
+package org.teamresistance.core;
+
+/**
+ * Timing information about a single cycle of the main loop.
+ *
+ * <p>The record belonging to a {@link ModeStateMachine} is reused every cycle, so it should be copied with
+ * {@link #copyTo(CycleRecord)} if it needs to be kept.
+ *
+ */
+public class CycleRecord {
+
+	long cycle;
+	RobotMode mode;
+	boolean transitioned;
+	long start;
+	long robotTime;
+	long initTime;
+	long modeTime;
+	long schedulerTime;
+	long totalTime;
+
+	/**
+	 * Copies the contents of this record into another record.
+	 *
+	 * @param other the record to be overwritten
+	 */
+	public void copyTo(CycleRecord other) {
+		other.cycle = cycle;
+		other.mode = mode;
+		other.transitioned = transitioned;
+		other.start = start;
+		other.robotTime = robotTime;
+		other.initTime = initTime;
+		other.modeTime = modeTime;
+		other.schedulerTime = schedulerTime;
+		other.totalTime = totalTime;
+	}
+
+	/**
+	 * Returns the number of cycles which ran before this one.
+	 *
+	 * @return the index of this cycle
+	 */
+	public long getCycle() {
+		return cycle;
+	}
+
+	/**
+	 * Returns the mode which was running during this cycle.
+	 *
+	 * @return the mode which was running during this cycle
+	 */
+	public RobotMode getMode() {
+		return mode;
+	}
+
+	/**
+	 * Returns whether the mode was entered during this cycle.
+	 *
+	 * @return whether the mode was entered during this cycle
+	 */
+	public boolean isTransition() {
+		return transitioned;
+	}
+
+	/**
+	 * Returns the time at which this cycle started in nanoseconds.
+	 *
+	 * @return the time at which this cycle started in nanoseconds
+	 */
+	public long getStart() {
+		return start;
+	}
+
+	/**
+	 * Returns the time in nanoseconds spent updating the global robot {@link org.teamresistance.core.subsystem.IUpdatable}.
+	 *
+	 * @return the time in nanoseconds spent updating the global robot
+	 */
+	public long getRobotTime() {
+		return robotTime;
+	}
+
+	/**
+	 * Returns the time in nanoseconds spent exiting the previous mode and entering the current one. Zero unless
+	 * {@link #isTransition()}.
+	 *
+	 * @return the time in nanoseconds spent changing modes
+	 */
+	public long getInitTime() {
+		return initTime;
+	}
+
+	/**
+	 * Returns the time in nanoseconds spent updating the current mode.
+	 *
+	 * @return the time in nanoseconds spent updating the current mode
+	 */
+	public long getModeTime() {
+		return modeTime;
+	}
+
+	/**
+	 * Returns the time in nanoseconds spent in the {@link org.teamresistance.core.subsystem.Scheduler}.
+	 *
+	 * @return the time in nanoseconds spent in the scheduler
+	 */
+	public long getSchedulerTime() {
+		return schedulerTime;
+	}
+
+	/**
+	 * Returns the total time in nanoseconds spent in this cycle.
+	 *
+	 * @return the total time in nanoseconds spent in this cycle
+	 */
+	public long getTotalTime() {
+		return totalTime;
+	}
+
+	@Override
+	public String toString() {
+		return "Cycle " + cycle + " (" + mode + "): total " + totalTime + " ns, robot " + robotTime + " ns, init "
+				+ initTime + " ns, mode " + modeTime + " ns, scheduler " + schedulerTime + " ns";
+	}
+}
@@ -0,0 +1,171 @@
+package org.teamresistance.core;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.teamresistance.core.util.LatencyHistogram;
+
+/**
+ * Records how long each {@link org.teamresistance.core.subsystem.IUpdatable} dispatched by the {@link ModeStateMachine}
+ * takes, separately for every {@link RobotMode}.
+ *
+ * <p>Recording happens on the loop thread into preallocated {@link LatencyHistogram}s and neither allocates nor locks.
+ * Summaries are published from a separate daemon thread started with {@link #startPublishing(long)}. Profiling can be
+ * switched off with {@link #setEnabled(boolean)} to measure its own cost.
+ *
+ */
+public class LoopProfiler {
+
+	private static Logger logger = Logger.getLogger(LoopProfiler.class.getName());
+
+	/**
+	 * The parts of a cycle which are timed.
+	 */
+	public enum Stage {
+		/**
+		 * The global robot {@link org.teamresistance.core.subsystem.IUpdatable#update()}.
+		 */
+		ROBOT_UPDATE,
+		/**
+		 * Exiting the previous mode and calling {@link org.teamresistance.core.subsystem.IUpdatable#init()} on the
+		 * new one.
+		 */
+		MODE_INIT,
+		/**
+		 * The current mode's {@link org.teamresistance.core.subsystem.IUpdatable#update()}.
+		 */
+		MODE_UPDATE,
+		/**
+		 * The {@link org.teamresistance.core.subsystem.Scheduler}.
+		 */
+		SCHEDULER,
+		/**
+		 * The whole cycle.
+		 */
+		CYCLE;
+	}
+
+	private static final Stage[] STAGES = Stage.values();
+	private static final RobotMode[] MODES = RobotMode.values();
+
+	private final LatencyHistogram[] histograms = new LatencyHistogram[STAGES.length * MODES.length];
+	private volatile boolean enabled = true;
+	private long robotInitTime;
+
+	private Thread publisher;
+
+	public LoopProfiler() {
+		for(int i = 0; i < histograms.length; i++) {
+			histograms[i] = new LatencyHistogram();
+		}
+	}
+
+	/**
+	 * Records the timing of a completed cycle. Called from the loop thread.
+	 *
+	 * @param record the timing of the cycle
+	 */
+	public void record(CycleRecord record) {
+		int base = record.mode.ordinal() * STAGES.length;
+		histograms[base + Stage.ROBOT_UPDATE.ordinal()].record(record.robotTime);
+		if(record.transitioned) {
+			histograms[base + Stage.MODE_INIT.ordinal()].record(record.initTime);
+		}
+		histograms[base + Stage.MODE_UPDATE.ordinal()].record(record.modeTime);
+		histograms[base + Stage.SCHEDULER.ordinal()].record(record.schedulerTime);
+		histograms[base + Stage.CYCLE.ordinal()].record(record.totalTime);
+	}
+
+	/**
+	 * Returns the histogram for a stage of the cycle in a mode.
+	 *
+	 * @param stage the stage of the cycle
+	 * @param mode the mode
+	 * @return the histogram for the stage in the mode
+	 */
+	public LatencyHistogram getHistogram(Stage stage, RobotMode mode) {
+		return histograms[mode.ordinal() * STAGES.length + stage.ordinal()];
+	}
+
+	/**
+	 * Starts a daemon thread which logs a summary of every histogram at a fixed interval.
+	 *
+	 * @param intervalMillis the time between summaries in milliseconds
+	 */
+	public synchronized void startPublishing(final long intervalMillis) {
+		if(publisher != null) return;
+		publisher = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				LatencyHistogram.Snapshot snapshot = new LatencyHistogram.Snapshot();
+				while(!Thread.currentThread().isInterrupted()) {
+					try {
+						Thread.sleep(intervalMillis);
+					} catch (InterruptedException e) {
+						return;
+					}
+					publish(snapshot);
+				}
+			}
+		}, "Loop Profiler");
+		publisher.setDaemon(true);
+		publisher.setPriority(Thread.MIN_PRIORITY);
+		publisher.start();
+	}
+
+	/**
+	 * Stops the thread started by {@link #startPublishing(long)}.
+	 */
+	public synchronized void stopPublishing() {
+		if(publisher != null) {
+			publisher.interrupt();
+			publisher = null;
+		}
+	}
+
+	private void publish(LatencyHistogram.Snapshot snapshot) {
+		if(!logger.isLoggable(Level.INFO)) return;
+		StringBuilder builder = new StringBuilder("Loop profile");
+		for(RobotMode mode : MODES) {
+			if(getHistogram(Stage.CYCLE, mode).getCount() == 0) continue;
+			for(Stage stage : STAGES) {
+				getHistogram(stage, mode).snapshot(snapshot);
+				if(snapshot.getCount() == 0) continue;
+				builder.append('\n').append(mode.getDisplayName()).append(' ').append(stage).append(": ")
+						.append(snapshot);
+			}
+		}
+		logger.log(Level.INFO, builder.toString());
+	}
+
+	/**
+	 * Returns whether cycles are being recorded.
+	 *
+	 * @return whether cycles are being recorded
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Sets whether cycles are recorded. Can be changed while the loop is running.
+	 *
+	 * @param enabled whether cycles should be recorded
+	 */
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * Returns the time in nanoseconds spent in the global robot {@link org.teamresistance.core.subsystem.IUpdatable#init()}.
+	 *
+	 * @return the time in nanoseconds spent initializing the global robot
+	 */
+	public long getRobotInitTime() {
+		return robotInitTime;
+	}
+
+	void setRobotInitTime(long robotInitTime) {
+		this.robotInitTime = robotInitTime;
+	}
+}
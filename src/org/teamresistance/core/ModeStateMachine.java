@@ -0,0 +1,289 @@
+package org.teamresistance.core;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.teamresistance.core.configuration.Configuration;
+import org.teamresistance.core.subsystem.IUpdatable;
+import org.teamresistance.core.subsystem.Scheduler;
+import org.teamresistance.core.telemetry.FlightRecorder;
+import org.teamresistance.core.telemetry.TelemetryRecorder;
+import org.teamresistance.core.util.LoopWatchdog;
+import org.teamresistance.core.util.Time;
+
+/**
+ * Dispatches each cycle of the main loop to the {@link IUpdatable} registered for the current {@link RobotMode}.
+ *
+ * <p>Every cycle {@link Time} is updated once, the global robot {@link IUpdatable} is updated once, the current mode's
+ * {@link IUpdatable} is updated once and the {@link Scheduler} is updated once. When the mode changes the previous mode
+ * is exited and the new mode is initialized before it is first updated. If a {@link TelemetryRecorder} or
+ * {@link FlightRecorder} is set it is written once at the end of every cycle.
+ *
+ * <p>The start of each cycle is stamped with {@link Time#getCycleTime()}, so it follows whatever clock {@link Time}
+ * reads. How long each stage took is always measured in real time, since it is the cost of running the code.
+ *
+ */
+public class ModeStateMachine {
+
+	private static Logger logger = Logger.getLogger(ModeStateMachine.class.getName());
+
+	/**
+	 * Receives notifications when the state machine leaves or enters a mode.
+	 */
+	public interface Listener {
+		/**
+		 * Called before the {@link IUpdatable} of the new mode is initialized.
+		 *
+		 * @param mode the mode being entered
+		 */
+		void onEnter(RobotMode mode);
+		/**
+		 * Called when another mode is about to be entered.
+		 *
+		 * @param mode the mode being exited
+		 */
+		void onExit(RobotMode mode);
+	}
+
+	private static final RobotMode[] MODES = RobotMode.values();
+
+	private IUpdatable robot;
+	private final IUpdatable[] updatables = new IUpdatable[MODES.length];
+	private final boolean[] reportedMissing = new boolean[MODES.length];
+	private Scheduler scheduler;
+	private Listener listener;
+	private LoopProfiler profiler;
+	private LoopWatchdog watchdog;
+	private TelemetryRecorder telemetry;
+	private FlightRecorder flightRecorder;
+	private Configuration configuration;
+
+	private RobotMode activeMode = null;
+	private long cycle = 0;
+	private final CycleRecord record = new CycleRecord();
+
+	/**
+	 * Initializes the global robot {@link IUpdatable} and the {@link Scheduler}, then writes the snapshot of the
+	 * configuration. Should be called once before the first cycle.
+	 */
+	public void init() {
+		long start = System.nanoTime();
+		if(robot != null) robot.init();
+		if(profiler != null) profiler.setRobotInitTime(System.nanoTime() - start);
+		if(scheduler != null) scheduler.init();
+		if(configuration != null) configuration.saveSnapshot();
+	}
+
+	/**
+	 * Runs one cycle of the main loop in the given mode.
+	 *
+	 * @param mode the mode the robot is currently in
+	 */
+	public void cycle(RobotMode mode) {
+		long start = System.nanoTime();
+		Time.update();
+		if(configuration != null) configuration.update();
+
+		if(robot != null) {
+			running(robot);
+			robot.update();
+		}
+		long robotEnd = System.nanoTime();
+
+		boolean transitioned = mode != activeMode;
+		if(transitioned) {
+			transition(mode);
+		}
+		long initEnd = System.nanoTime();
+
+		IUpdatable updatable = updatables[mode.ordinal()];
+		if(updatable != null) {
+			running(updatable);
+			updatable.update();
+		} else if(!reportedMissing[mode.ordinal()]) {
+			logger.log(Level.SEVERE, mode.getDisplayName() + " not registered!");
+			reportedMissing[mode.ordinal()] = true;
+		}
+		long modeEnd = System.nanoTime();
+
+		if(scheduler != null) {
+			running(scheduler);
+			scheduler.update();
+		}
+		running(null);
+		long end = System.nanoTime();
+
+		record.cycle = cycle++;
+		record.mode = mode;
+		record.transitioned = transitioned;
+		record.start = Time.getCycleTime();
+		record.robotTime = robotEnd - start;
+		record.initTime = initEnd - robotEnd;
+		record.modeTime = modeEnd - initEnd;
+		record.schedulerTime = end - modeEnd;
+		record.totalTime = end - start;
+
+		if(profiler != null && profiler.isEnabled()) {
+			profiler.record(record);
+		}
+		if(telemetry != null) {
+			telemetry.commit(record.start);
+		}
+		if(flightRecorder != null) {
+			flightRecorder.record(record, Time.getDelta());
+		}
+	}
+
+	private void transition(RobotMode mode) {
+		if(activeMode != null && listener != null) {
+			listener.onExit(activeMode);
+		}
+		activeMode = mode;
+		if(listener != null) {
+			listener.onEnter(mode);
+		}
+		IUpdatable updatable = updatables[mode.ordinal()];
+		if(updatable != null) {
+			running(updatable);
+			updatable.init();
+		}
+	}
+
+	/**
+	 * Tells the watchdog, if there is one, which {@link IUpdatable} is about to run.
+	 */
+	private void running(IUpdatable updatable) {
+		if(watchdog != null) watchdog.setRunning(updatable);
+	}
+
+	/**
+	 * Forces the current mode to be exited and initialized again on the next cycle.
+	 */
+	public void reset() {
+		if(activeMode != null && listener != null) {
+			listener.onExit(activeMode);
+		}
+		activeMode = null;
+	}
+
+	/**
+	 * Returns the timing of the most recently completed cycle. The returned record is overwritten every cycle.
+	 *
+	 * @return the timing of the most recently completed cycle
+	 */
+	public CycleRecord getLastCycle() {
+		return record;
+	}
+
+	/**
+	 * Returns the mode which was running during the most recent cycle.
+	 *
+	 * @return the mode which was running during the most recent cycle, or null if no cycle has run
+	 */
+	public RobotMode getActiveMode() {
+		return activeMode;
+	}
+
+	/**
+	 * Returns the {@link IUpdatable} registered for a mode.
+	 *
+	 * @param mode the mode
+	 * @return the {@link IUpdatable} registered for the mode
+	 */
+	public IUpdatable get(RobotMode mode) {
+		return updatables[mode.ordinal()];
+	}
+
+	/**
+	 * Registers the {@link IUpdatable} which handles initialization and updating in a mode.
+	 *
+	 * @param mode the mode
+	 * @param updatable the {@link IUpdatable} to be initialized and updated in that mode
+	 */
+	public void set(RobotMode mode, IUpdatable updatable) {
+		updatables[mode.ordinal()] = updatable;
+		reportedMissing[mode.ordinal()] = false;
+	}
+
+	public IUpdatable getRobot() {
+		return robot;
+	}
+
+	public void setRobot(IUpdatable robot) {
+		this.robot = robot;
+	}
+
+	public Scheduler getScheduler() {
+		return scheduler;
+	}
+
+	public void setScheduler(Scheduler scheduler) {
+		this.scheduler = scheduler;
+		if(scheduler != null) scheduler.setWatchdog(watchdog);
+	}
+
+	public LoopProfiler getProfiler() {
+		return profiler;
+	}
+
+	public void setProfiler(LoopProfiler profiler) {
+		this.profiler = profiler;
+	}
+
+	public LoopWatchdog getWatchdog() {
+		return watchdog;
+	}
+
+	public void setWatchdog(LoopWatchdog watchdog) {
+		this.watchdog = watchdog;
+		if(scheduler != null) scheduler.setWatchdog(watchdog);
+	}
+
+	public TelemetryRecorder getTelemetry() {
+		return telemetry;
+	}
+
+	/**
+	 * Sets the recorder which is committed at the end of every cycle with the time the cycle started.
+	 *
+	 * @param telemetry the recorder committed every cycle, or null for none
+	 */
+	public void setTelemetry(TelemetryRecorder telemetry) {
+		this.telemetry = telemetry;
+	}
+
+	public FlightRecorder getFlightRecorder() {
+		return flightRecorder;
+	}
+
+	/**
+	 * Sets the flight recorder which keeps a snapshot of the end of every cycle.
+	 *
+	 * @param flightRecorder the flight recorder written every cycle, or null for none
+	 */
+	public void setFlightRecorder(FlightRecorder flightRecorder) {
+		this.flightRecorder = flightRecorder;
+	}
+
+	public Configuration getConfiguration() {
+		return configuration;
+	}
+
+	/**
+	 * Sets the configuration which is updated at the start of every cycle, so settings reloaded from its file are only
+	 * swapped in between cycles.
+	 *
+	 * @param configuration the configuration updated every cycle, or null for none
+	 */
+	public void setConfiguration(Configuration configuration) {
+		this.configuration = configuration;
+	}
+
+	public Listener getListener() {
+		return listener;
+	}
+
+	public void setListener(Listener listener) {
+		this.listener = listener;
+	}
+}
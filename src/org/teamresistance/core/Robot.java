@@ -1,17 +1,19 @@
 package org.teamresistance.core;
 
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
-import java.io.OutputStream;
-import java.util.logging.Formatter;
-import java.util.logging.Handler;
-import java.util.logging.Level;
+import java.io.IOException;
 import java.util.logging.Logger;
-import java.util.logging.StreamHandler;
 import java.util.logging.XMLFormatter;
 
+import org.teamresistance.core.configuration.Configuration;
 import org.teamresistance.core.subsystem.IUpdatable;
+import org.teamresistance.core.subsystem.Scheduler;
+import org.teamresistance.core.telemetry.FlightRecorder;
+import org.teamresistance.core.telemetry.TelemetryRecorder;
+import org.teamresistance.core.util.AsyncFileHandler;
+import org.teamresistance.core.util.Clock;
+import org.teamresistance.core.util.LoopTimer;
+import org.teamresistance.core.util.LoopWatchdog;
 import org.teamresistance.core.util.Time;
 import org.teamresistance.core.util.Util;
 
@@ -30,6 +32,7 @@ import edu.wpi.first.wpilibj.livewindow.LiveWindow;
 public class Robot extends RobotBase {
 	protected static String LOG_FILE_PATH = "/home/lvuser/logs/";
 	protected static Logger logger = Logger.getLogger(Robot.class.getName());
+	protected static AsyncFileHandler logHandler;
 	static {
 		// Initialize log file when class is loaded
 		initLogger();
@@ -60,18 +63,62 @@ public class Robot extends RobotBase {
 	 * User-defined {@link IUpdatable} which handles robot-specific test initialization and updating.
 	 */
 	protected IUpdatable test;
+	/**
+	 * User-defined {@link Scheduler} which updates {@link IUpdatable}s at their own rates in every mode.
+	 */
+	protected Scheduler scheduler;
+
+	/**
+	 * Determines what paces the main loop.
+	 */
+	public enum LoopMode {
+		/**
+		 * Run one cycle every time new data arrives from the Driver Station.
+		 */
+		DRIVER_STATION,
+		/**
+		 * Run cycles at a fixed period measured from a monotonic clock.
+		 */
+		FIXED_RATE;
+	}
+
+	/**
+	 * Default period of the main loop when running in {@link LoopMode#FIXED_RATE}, in seconds.
+	 */
+	public static final double DEFAULT_LOOP_PERIOD = 0.01;
 
-	private boolean autonomousInitialized;
-	private boolean disabledInitialized;
-	private boolean teleopInitialized;
-	private boolean testInitialized;
+	private LoopMode loopMode = LoopMode.DRIVER_STATION;
+	private LoopTimer loopTimer = LoopTimer.fromSeconds(DEFAULT_LOOP_PERIOD);
+
+	/**
+	 * State machine which dispatches each cycle to the {@link IUpdatable} of the current mode.
+	 */
+	private final ModeStateMachine modes = new ModeStateMachine();
+	/**
+	 * Records how long each stage of every cycle takes.
+	 */
+	private final LoopProfiler profiler = new LoopProfiler();
+	/**
+	 * Samples the stack of the loop thread when a cycle runs past its budget, null when not enabled.
+	 */
+	private LoopWatchdog watchdog;
+	private double watchdogBudget = 0;
 	
 	public Robot() {
 		instance = this;
-		autonomousInitialized = false;
-		disabledInitialized = false;
-		teleopInitialized = false;
-		testInitialized = false;
+		modes.setProfiler(profiler);
+		modes.setListener(new ModeStateMachine.Listener() {
+			@Override
+			public void onEnter(RobotMode mode) {
+				LiveWindow.setEnabled(mode.isLiveWindowEnabled());
+				modeEntered(mode);
+			}
+			
+			@Override
+			public void onExit(RobotMode mode) {
+				modeExited(mode);
+			}
+		});
 	}
 	
 	@Override
@@ -79,27 +126,35 @@ public class Robot extends RobotBase {
 		HAL.report(tResourceType.kResourceType_Framework, tInstances.kFramework_Simple);
 
 		init();
+		if(watchdogBudget > 0) {
+			// Real time, as a manual clock does not move while a cycle runs and a hung cycle would never be caught
+			watchdog = new LoopWatchdog(Thread.currentThread(), (long) (watchdogBudget * Time.SECOND), Clock.SYSTEM);
+			modes.setWatchdog(watchdog);
+			watchdog.start();
+		}
 		
 		// Tell the DS that the robot is ready to be enabled
 		HAL.observeUserProgramStarting();
 
 		// loop forever, calling the appropriate mode-dependent function
 		LiveWindow.setEnabled(false);
+		loopTimer.start();
 		while (true) {
-			// Wait for new data to arrive
-			m_ds.waitForData();
-			
-			update();
-			// Call the appropriate function depending upon the current robot mode
-			if (isDisabled()) {
-				disabledUpdate();
-			} else if (isTest()) {
-				testUpdate();
-			} else if (isAutonomous()) {
-				autonomousUpdate();
+			if(loopMode == LoopMode.FIXED_RATE) {
+				// Wait for the next deadline, the Driver Station data is updated in the background
+				loopTimer.waitForNextCycle();
 			} else {
-				teleopUpdate();
+				// Wait for new data to arrive
+				m_ds.waitForData();
+				loopTimer.startCycle();
 			}
+			
+			if(watchdog != null) watchdog.beginCycle(Clock.SYSTEM.nanoTime());
+			RobotMode mode = getCurrentMode();
+			observe(mode);
+			modes.cycle(mode);
+			if(watchdog != null) watchdog.endCycle();
+			loopTimer.endCycle();
 		}
 	}
 
@@ -107,138 +162,188 @@ public class Robot extends RobotBase {
 	 * Called at the beginning of program execution before any other initialization functions.
 	 */
 	private void init() {
-		if(robot != null) robot.init();
+		// Pick up any IUpdatables which were assigned directly rather than through their setters
+		modes.setRobot(robot);
+		modes.setScheduler(scheduler);
+		modes.set(RobotMode.DISABLED, disabled);
+		modes.set(RobotMode.AUTONOMOUS, autonomous);
+		modes.set(RobotMode.TELEOP, teleop);
+		modes.set(RobotMode.TEST, test);
+		modes.init();
 	}
 	
 	/**
-	 * Called while all modes are running but before mode specific updates.
+	 * Returns the mode the Driver Station currently has the robot in.
+	 * 
+	 * @return the mode the Driver Station currently has the robot in
 	 */
-	private void update() {
-		Time.update();
-		//TODO: Update user input
-		if(robot != null) robot.update();
-	}
-	
-	private boolean teleopFirstRun = true;
-	/**
-	 * Called while the "teleop" mode is running.
-	 */
-	private void teleopUpdate() {
-		HAL.observeUserProgramTeleop();
-		update();
-		if(teleop != null) {
-			// call teleop.init() if this is the first time
-			// we've entered teleop_mode
-			if (!teleopInitialized) {
-				LiveWindow.setEnabled(false);
-				teleop.init();
-				teleopInitialized = true;
-				testInitialized = false;
-				autonomousInitialized = false;
-				disabledInitialized = false;
-			}
-			teleop.update();
+	public RobotMode getCurrentMode() {
+		if (isDisabled()) {
+			return RobotMode.DISABLED;
+		} else if (isTest()) {
+			return RobotMode.TEST;
+		} else if (isAutonomous()) {
+			return RobotMode.AUTONOMOUS;
 		} else {
-			if(teleopFirstRun) {
-				logger.log(Level.SEVERE, "Teleop not registered!");
-			}
-			teleopFirstRun = false;
+			return RobotMode.TELEOP;
 		}
 	}
 	
-	private boolean autonomousFirstRun = true;
-	/**
-	 * Called while the "autonomous" mode is running.
-	 */
-	private void autonomousUpdate() {
-		HAL.observeUserProgramAutonomous();
-		update();
-		if(autonomous != null) {
-			// call autonomous.init() if this is the first time
-			// we've entered autonomous_mode
-			if (!autonomousInitialized) {
-				LiveWindow.setEnabled(false);
-				autonomous.init();
-				autonomousInitialized = true;
-				testInitialized = false;
-				teleopInitialized = false;
-				disabledInitialized = false;
-			}
-			autonomous.update();
-		} else {
-			if(autonomousFirstRun) {
-				logger.log(Level.SEVERE, "Automous not registered!");
-			}
-			autonomousFirstRun = false;
+	/**
+	 * Tells the Driver Station which mode the user program is running in.
+	 */
+	private static void observe(RobotMode mode) {
+		switch(mode) {
+		case DISABLED:
+			HAL.observeUserProgramDisabled();
+			break;
+		case AUTONOMOUS:
+			HAL.observeUserProgramAutonomous();
+			break;
+		case TELEOP:
+			HAL.observeUserProgramTeleop();
+			break;
+		case TEST:
+			HAL.observeUserProgramTest();
+			break;
 		}
 	}
 	
-	private boolean disabledFirstRun = true;
-	/**
-	 * Called while the "disabled" mode is running.
-	 */
-	private void disabledUpdate() {
-		HAL.observeUserProgramDisabled();
-		update();
-		if(disabled != null) {
-			// call disabled.init() if we are now just entering disabled mode from
-			// either a different mode or from power-on
-			if (!disabledInitialized) {
-				LiveWindow.setEnabled(false);
-				disabled.init();
-				disabledInitialized = true;
-				// reset the initialization flags for the other modes
-				autonomousInitialized = false;
-				teleopInitialized = false;
-				testInitialized = false;
-			}
-			disabled.update();
-		} else {
-			if(disabledFirstRun) {
-				logger.log(Level.SEVERE, "Disabled not registered!");
-			}
-		}
+	/**
+	 * Called when a mode is entered, before the {@link IUpdatable} of that mode is initialized.
+	 * 
+	 * @param mode the mode being entered
+	 */
+	protected void modeEntered(RobotMode mode) {
+		
 	}
 	
-	private boolean testFirstRun = true;
-	/**
-	 * Called while the "test" mode is running.
-	 */
-	private void testUpdate() {
-		HAL.observeUserProgramTest();
-		update();
-		if(test != null) {
-			// call test.init() if we are now just entering test mode from either
-			// a different mode or from power-on
-			if (!testInitialized) {
-				LiveWindow.setEnabled(true);
-				test.init();
-				testInitialized = true;
-				autonomousInitialized = false;
-				teleopInitialized = false;
-				disabledInitialized = false;
-			}
-			test.update();
-		} else {
-			if(testFirstRun) {
-				logger.log(Level.SEVERE, "Test not registered!");
-			}
-		}
+	/**
+	 * Called when a mode is exited, before the next mode is entered.
+	 * 
+	 * @param mode the mode being exited
+	 */
+	protected void modeExited(RobotMode mode) {
+		
 	}
 	
 	/**
-	 * Initializes an XML log file for all logged data to be stored within.
+	 * Returns the timing of the most recently completed cycle. The returned record is overwritten every cycle.
+	 * 
+	 * @return the timing of the most recently completed cycle
+	 */
+	public CycleRecord getLastCycle() {
+		return modes.getLastCycle();
+	}
+	
+	/**
+	 * Returns the profiler which records how long each stage of every cycle takes. It can be switched off with
+	 * {@link LoopProfiler#setEnabled(boolean)}.
+	 * 
+	 * @return the profiler which records how long each stage of every cycle takes
+	 */
+	public LoopProfiler getProfiler() {
+		return profiler;
+	}
+	
+	/**
+	 * Returns the watchdog which samples the stack of the loop thread when a cycle runs past its budget.
+	 * 
+	 * @return the loop watchdog, or null if it has not been enabled
+	 * @see #setWatchdogBudget(double)
+	 */
+	public LoopWatchdog getWatchdog() {
+		return watchdog;
+	}
+	
+	/**
+	 * Enables the loop watchdog, which samples the stack of the loop thread whenever a cycle takes longer than the
+	 * given budget. Should be called before the competition is started.
+	 * 
+	 * @param seconds the time a cycle may take in seconds, or 0 to leave the watchdog disabled
+	 */
+	public void setWatchdogBudget(double seconds) {
+		this.watchdogBudget = seconds;
+	}
+	
+	/**
+	 * Returns the recorder which is committed at the end of every cycle.
+	 * 
+	 * @return the recorder committed every cycle, or null if there is none
+	 */
+	public TelemetryRecorder getTelemetry() {
+		return modes.getTelemetry();
+	}
+	
+	/**
+	 * Sets the recorder which is committed at the end of every cycle, after every signal for the cycle has been set.
+	 * It should be started before the competition is started.
+	 * 
+	 * @param telemetry the recorder committed every cycle, or null for none
+	 */
+	public void setTelemetry(TelemetryRecorder telemetry) {
+		modes.setTelemetry(telemetry);
+	}
+	
+	/**
+	 * Returns the flight recorder which keeps a snapshot of the end of every cycle.
+	 * 
+	 * @return the flight recorder written every cycle, or null if there is none
+	 */
+	public FlightRecorder getFlightRecorder() {
+		return modes.getFlightRecorder();
+	}
+	
+	/**
+	 * Sets the flight recorder which keeps a snapshot of the end of every cycle in a file that survives the robot code
+	 * crashing. It should be opened before the competition is started.
+	 * 
+	 * @param flightRecorder the flight recorder written every cycle, or null for none
+	 */
+	public void setFlightRecorder(FlightRecorder flightRecorder) {
+		modes.setFlightRecorder(flightRecorder);
+	}
+	
+	/**
+	 * Returns the configuration whose reloaded settings are swapped in at the start of every cycle.
+	 * 
+	 * @return the configuration updated every cycle, or null if there is none
+	 */
+	public Configuration getConfiguration() {
+		return modes.getConfiguration();
+	}
+	
+	/**
+	 * Sets the configuration whose reloaded settings are swapped in at the start of every cycle. It should be
+	 * {@link Configuration#watch() watched} for its settings to follow edits to the file.
+	 * 
+	 * @param configuration the configuration updated every cycle, or null for none
+	 */
+	public void setConfiguration(Configuration configuration) {
+		modes.setConfiguration(configuration);
+	}
+	
+	/**
+	 * Initializes an XML log file for all logged data to be stored within. Records are written by a background thread
+	 * so logging from the main loop never waits on the file system.
 	 */
 	protected static void initLogger() {
-		OutputStream os = null;
 		try {
-			os = new FileOutputStream(new File(LOG_FILE_PATH + Util.dateAndTime() + ".xml"));
-		} catch (FileNotFoundException e) {
+			logHandler = new AsyncFileHandler(new File(LOG_FILE_PATH + Util.dateAndTime() + ".xml"), new XMLFormatter(),
+					AsyncFileHandler.DEFAULT_CAPACITY);
+			logger.addHandler(logHandler);
+		} catch (IOException e) {
 			e.printStackTrace();
 		}
-		Formatter formatter = new XMLFormatter();
-		Handler handler = new StreamHandler(os, formatter);
-		logger.addHandler(handler);
+	}
+	
+	/**
+	 * Returns the handler which writes the log file.
+	 * 
+	 * @return the handler which writes the log file, or null if the file could not be opened
+	 */
+	public static AsyncFileHandler getLogHandler() {
+		return logHandler;
 	}
 
 	/**
@@ -250,6 +355,82 @@ public class Robot extends RobotBase {
 		return instance;
 	}
 	
+	/**
+	 * Sets the clock all framework timing is read from, including {@link Time} and the loop timer. With a
+	 * {@link org.teamresistance.core.util.ManualClock} and {@link LoopMode#FIXED_RATE} the loop runs as fast as it can
+	 * while seeing the same timestamps it would in real time. The loop watchdog stays on real time, as it measures how
+	 * long the code takes to run. Should be called before the competition is started.
+	 * 
+	 * @param clock the clock all framework timing is read from
+	 */
+	public void setClock(Clock clock) {
+		Time.setClock(clock);
+		loopTimer.setClock(clock);
+	}
+	
+	/**
+	 * Returns what currently paces the main loop.
+	 * 
+	 * @return what currently paces the main loop
+	 */
+	public LoopMode getLoopMode() {
+		return loopMode;
+	}
+
+	/**
+	 * Sets what paces the main loop. Should be called before the competition is started.
+	 * 
+	 * @param loopMode what should pace the main loop
+	 */
+	public void setLoopMode(LoopMode loopMode) {
+		this.loopMode = loopMode;
+	}
+
+	/**
+	 * Sets the period of the main loop when running in {@link LoopMode#FIXED_RATE}. Should be called before the
+	 * competition is started.
+	 * 
+	 * @param seconds the period of the main loop in seconds
+	 */
+	public void setLoopPeriod(double seconds) {
+		LoopTimer.OverrunPolicy policy = loopTimer.getOverrunPolicy();
+		int maxCatchUp = loopTimer.getMaxCatchUp();
+		loopTimer = new LoopTimer((long) (seconds * Time.SECOND), loopTimer.getClock());
+		loopTimer.setOverrunPolicy(policy);
+		loopTimer.setMaxCatchUp(maxCatchUp);
+	}
+
+	/**
+	 * Returns the timer which paces the main loop and collects its overrun, jitter and utilization statistics.
+	 * 
+	 * <p>The statistics are collected in both loop modes so they can be compared.
+	 * 
+	 * @return the timer which paces the main loop
+	 */
+	public LoopTimer getLoopTimer() {
+		return loopTimer;
+	}
+
+	/**
+	 * Returns the user-defined {@link Scheduler} which updates {@link IUpdatable}s at their own rates in every mode.
+	 * 
+	 * @return the user-defined {@link Scheduler} which updates {@link IUpdatable}s at their own rates in every mode
+	 */
+	public Scheduler getScheduler() {
+		return scheduler;
+	}
+
+	/**
+	 * Sets the user-defined {@link Scheduler} which updates {@link IUpdatable}s at their own rates in every mode. Its
+	 * base frequency should match the rate of the main loop.
+	 * 
+	 * @param scheduler The user-defined {@link Scheduler} which updates {@link IUpdatable}s at their own rates
+	 */
+	public void setScheduler(Scheduler scheduler) {
+		this.scheduler = scheduler;
+		modes.setScheduler(scheduler);
+	}
+
 	/**
 	 * Returns the user-defined {@link IUpdatable} which handles robot specific global initialization and updating.
 	 * 
@@ -266,6 +447,7 @@ public class Robot extends RobotBase {
 	 */
 	public void setRobot(IUpdatable robot) {
 		this.robot = robot;
+		modes.setRobot(robot);
 	}
 
 	/**
@@ -284,6 +466,7 @@ public class Robot extends RobotBase {
 	 */
 	public void setAutonomous(IUpdatable autonomous) {
 		this.autonomous = autonomous;
+		modes.set(RobotMode.AUTONOMOUS, autonomous);
 	}
 	
 	/**
@@ -302,6 +485,7 @@ public class Robot extends RobotBase {
 	 */
 	public void setDisabled(IUpdatable disabled) {
 		this.disabled = disabled;
+		modes.set(RobotMode.DISABLED, disabled);
 	}
 
 	/**
@@ -320,6 +504,7 @@ public class Robot extends RobotBase {
 	 */
 	public void setTeleop(IUpdatable teleop) {
 		this.teleop = teleop;
+		modes.set(RobotMode.TELEOP, teleop);
 	}
 
 	/**
@@ -338,5 +523,6 @@ public class Robot extends RobotBase {
 	 */
 	public void setTest(IUpdatable test) {
 		this.test = test;
+		modes.set(RobotMode.TEST, test);
 	}
 }
@@ -0,0 +1,38 @@
+package org.teamresistance.core;
+
+/**
+ * The modes a robot can be running in during a match.
+ * 
+ */
+public enum RobotMode {
+	DISABLED("Disabled", false),
+	AUTONOMOUS("Autonomous", false),
+	TELEOP("Teleop", false),
+	TEST("Test", true);
+	
+	private final String displayName;
+	private final boolean liveWindowEnabled;
+	
+	private RobotMode(String displayName, boolean liveWindowEnabled) {
+		this.displayName = displayName;
+		this.liveWindowEnabled = liveWindowEnabled;
+	}
+	
+	/**
+	 * Returns the human readable name of this mode.
+	 * 
+	 * @return the human readable name of this mode
+	 */
+	public String getDisplayName() {
+		return displayName;
+	}
+	
+	/**
+	 * Returns whether LiveWindow should be enabled while in this mode.
+	 * 
+	 * @return whether LiveWindow should be enabled while in this mode
+	 */
+	public boolean isLiveWindowEnabled() {
+		return liveWindowEnabled;
+	}
+}
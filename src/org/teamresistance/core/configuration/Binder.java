@@ -0,0 +1,56 @@
+package org.teamresistance.core.configuration;
+
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.stream.JsonParser;
+
+/**
+ * Moves the configurable fields of one type to and from JSON.
+ *
+ * <p>A binder is created once per type by {@link Configuration} and reused for every object of that type, so anything
+ * which can be worked out from the type alone is done when the binder is created rather than for every object.
+ *
+ * @param <T> the type which is bound
+ */
+public interface Binder<T> {
+
+	/**
+	 * Creates an instance of the type and fills it out from a JSON object. Fields which are missing from the object are
+	 * left with the value given to them by the constructor.
+	 *
+	 * @param json the JSON object to be read
+	 * @return the new instance, or null if it could not be created
+	 */
+	T read(JsonObject json);
+
+	/**
+	 * Creates an instance of the type and fills it out from a JSON object while it is being parsed. The default builds
+	 * a tree for the object and passes it to {@link #read(JsonObject)}.
+	 *
+	 * @param parser the parser, just after the start of the object, which is left after its end
+	 * @return the new instance, or null if it could not be created
+	 */
+	default T read(JsonParser parser) {
+		return read((JsonObject) JsonEvents.readValue(parser, JsonParser.Event.START_OBJECT));
+	}
+
+	/**
+	 * Writes the fields of an instance which are marked {@link Configurable} into a new JSON object builder.
+	 *
+	 * @param instance the instance to be written
+	 * @return a builder holding the fields of the instance
+	 */
+	JsonObjectBuilder write(T instance);
+
+	/**
+	 * Writes every field which {@link #read(JsonObject)} fills out, including public fields which are not marked
+	 * {@link Configurable}, so the instance can be read back exactly. Used for snapshots of a configuration. The default
+	 * is {@link #write(Object)}, which is only correct for binders which read no other fields.
+	 *
+	 * @param instance the instance to be written
+	 * @return a builder holding the fields of the instance
+	 */
+	default JsonObjectBuilder writeAll(T instance) {
+		return write(instance);
+	}
+}
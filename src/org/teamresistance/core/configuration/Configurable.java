@@ -15,4 +15,9 @@ import java.lang.annotation.Target;
 @Target({ElementType.TYPE, ElementType.FIELD})
 public @interface Configurable {
 	
+	/**
+	 * The version of a configurable type, which only needs to be raised when a change to the type alters how it is
+	 * read without changing its fields, so that snapshots of the old version are not used. Ignored on fields.
+	 */
+	int version() default 0;
 }
\ No newline at end of file
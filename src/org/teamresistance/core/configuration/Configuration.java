@@ -1,251 +1,471 @@
 package org.teamresistance.core.configuration;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.lang.reflect.Array;
-import java.lang.reflect.Constructor;
-import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Modifier;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.json.Json;
-import javax.json.JsonArray;
 import javax.json.JsonObject;
 import javax.json.JsonObjectBuilder;
 import javax.json.JsonReader;
 import javax.json.JsonValue;
 import javax.json.JsonValue.ValueType;
+import javax.json.stream.JsonParser;
+import javax.json.stream.JsonParser.Event;
 
 
 /**
  * Loads a JSON configuration file and fills out data in classes with that information.
  * 
+ * <p>The fields of each class are found once, the first time the class is configured, and kept in a {@link Binder}
+ * which is shared by every configuration.
+ * 
+ * <p>A configuration can also be streamed, in which case the file is not read into memory when the configuration is
+ * created. Instead each call to {@link #get(Class, String)} parses the file up to the requested object, skipping
+ * everything before it, and fills out the instance as the object is parsed. This avoids building a tree of the whole
+ * file, which for large files with field maps or waypoint tables is most of the memory used while loading.
+ * 
+ * <p>Objects which should follow edits to the file while the robot runs are read with {@link #bind(Class, String)}
+ * instead, and the file is watched with {@link #watch()}. New instances are read on a background thread and swapped in
+ * by {@link #update()} at the start of a cycle, so the loop never waits on the file.
+ * 
+ * <p>To start faster, a configuration can keep a binary {@link Snapshot} of the objects read from it, which is used
+ * on later starts in place of parsing the file as long as the file and the configured classes are unchanged.
+ * 
  * @author Frank McCoy
  *
  */
 public class Configuration {
 
-	private JsonObject data;
+	private final String path;
+	private final boolean streaming;
+	private volatile JsonObject data;
+	
+	private final List<Setting<?>> settings = new CopyOnWriteArrayList<>();
+	private final AtomicReference<Generation> pending = new AtomicReference<>();
+	private ConfigurationWatcher watcher;
+	private Snapshot snapshot;
+	
+	private final Map<Key, Object> instances = new ConcurrentHashMap<>();
+	private volatile Interner interner = new Interner();
 	
 	private static Logger logger = Logger.getLogger(Configuration.class.getName());
 	
+	private static final Map<Class<?>, Binder<?>> binders = new ConcurrentHashMap<>();
+	
 	public Configuration(String path) {
-		data = read(path);
+		this(path, false);
+	}
+	
+	/**
+	 * Creates a configuration from a JSON file.
+	 * 
+	 * @param path the path of the file
+	 * @param streaming whether the file is parsed each time an object is read from it instead of once, here
+	 */
+	public Configuration(String path, boolean streaming) {
+		this(path, streaming, null);
+	}
+	
+	/**
+	 * Creates a configuration from a JSON file which keeps a binary snapshot of the objects read from it. While the
+	 * file is unchanged, objects are read from the snapshot and the file is never parsed. Objects which are not in the
+	 * snapshot yet are read from the file and added to it, and the snapshot is written by {@link #saveSnapshot()}.
+	 * 
+	 * @param path the path of the file
+	 * @param streaming whether the file is parsed each time an object is read from it instead of once, when first needed
+	 * @param snapshotPath the path of the snapshot, or null for none
+	 */
+	public Configuration(String path, boolean streaming, String snapshotPath) {
+		this.path = path;
+		this.streaming = streaming;
+		if(snapshotPath != null) {
+			snapshot = Snapshot.open(new File(path), new File(snapshotPath));
+		}
+		if(!streaming && snapshot == null) {
+			data = read(path);
+		}
 	}
 	
 	/**
-	 * Instantiates and fills out an instance of type with the information stored in the JSON Object named <code>token</code>.
+	 * Returns the instance of type filled out with the information stored in the JSON Object named <code>token</code>.
+	 * 
+	 * <p>The instance is read the first time it is asked for and shared with everything else asking for the same type
+	 * and token, until the configuration is {@link #invalidate() invalidated}. Equal vectors inside shared instances
+	 * are also shared, so shared instances must never be changed. Use {@link #create(Class, String)} for an instance
+	 * which may be changed.
 	 * 
 	 * @param <T> the type to be instantiated and filled out 
 	 * @param type the type to be instantiated and filled out
 	 * @param token the name of the JSON object which data should be read from
-	 * @return a new instance of Type <code>type</code> with the data from the JSON object named <code>token</code>
+	 * @return the shared instance of Type <code>type</code> with the data from the JSON object named <code>token</code>
 	 */
 	public <T> T get(Class<T> type, String token) {
+		Key key = new Key(type, token);
+		Object instance = instances.get(key);
+		if(instance != null) {
+			return type.cast(instance);
+		}
+		
+		T created;
+		Interner previous = Interner.enter(interner);
+		try {
+			created = create(type, token);
+		} finally {
+			Interner.exit(previous);
+		}
+		if(created == null) {
+			return null;
+		}
+		instance = instances.putIfAbsent(key, created);
+		return instance != null ? type.cast(instance) : created;
+	}
+	
+	/**
+	 * Instantiates and fills out a new instance of type with the information stored in the JSON Object named <code>token</code>.
+	 * 
+	 * @param <T> the type to be instantiated and filled out 
+	 * @param type the type to be instantiated and filled out
+	 * @param token the name of the JSON object which data should be read from
+	 * @return a new instance of Type <code>type</code> with the data from the JSON object named <code>token</code>
+	 */
+	public <T> T create(Class<T> type, String token) {
 		if(!type.isAnnotationPresent(Configurable.class)) {
 			logger.log(Level.SEVERE, "Attempted to configure class which is not Configurable");
 			return null;
 		} 
 		
-		T t = null;
-		if(!data.containsKey(token)) {
-			logger.log(Level.SEVERE, "\"" + token + "\" is not in configuration file");
-		} else {
-			try {
-				Constructor<T> ctor = type.getConstructor();
-				t = (T) ctor.newInstance();
-			} catch (InstantiationException | IllegalAccessException e) {
-				e.printStackTrace();
-			} catch (NoSuchMethodException e) {
-				e.printStackTrace();
-			} catch (SecurityException e) {
-				e.printStackTrace();
-			} catch (IllegalArgumentException e) {
-				e.printStackTrace();
-			} catch (InvocationTargetException e) {
-				e.printStackTrace();
-			}
-			
-			if(data.get(token).getValueType() == ValueType.NULL) {
-				return null;
-			} else {
-				parseJsonObject(type, t, data.getJsonObject(token));
+		if(snapshot != null) {
+			T instance = snapshot.get(type, token);
+			if(instance == null) {
+				instance = load(type, token);
+				if(instance != null) snapshot.put(type, token, instance);
 			}
+			return instance;
 		}
-		
-		return t;
+		return load(type, token);
 	}
 	
 	/**
-	 * Reads configuration data from JSON file
+	 * Forgets every shared instance, so each is read again the next time it is asked for. Done when the file is
+	 * reloaded.
 	 */
-	private JsonObject read(String path) {
-		FileInputStream stream = null;
+	public void invalidate() {
+		instances.clear();
+		interner = new Interner();
+	}
+	
+	/**
+	 * Forgets the shared instance of type for <code>token</code>, so it is read again the next time it is asked for.
+	 * 
+	 * @param type the type of the instance
+	 * @param token the name of the JSON object it was read from
+	 */
+	public void invalidate(Class<?> type, String token) {
+		instances.remove(new Key(type, token));
+	}
+	
+	/**
+	 * Reads an object from the file, or from the tree of the file if it is not streamed.
+	 */
+	private <T> T load(Class<T> type, String token) {
+		if(streaming) {
+			return stream(type, token);
+		}
+		
+		JsonObject tree = data;
+		if(tree == null) {
+			// Only left unread when there is a snapshot, which did not have this object
+			data = tree = read(path);
+		}
+		JsonValue value = tree.get(token);
+		if(value == null) {
+			logger.log(Level.SEVERE, "\"" + token + "\" is not in configuration file");
+			return null;
+		}
+		if(value.getValueType() == ValueType.NULL) {
+			return null;
+		}
 		try {
-			stream = new FileInputStream(new File(path));
-		} catch (FileNotFoundException e) {
+			return getBinder(type).read((JsonObject) value);
+		} catch (RuntimeException e) {
+			logger.log(Level.SEVERE, "Could not configure \"" + token + "\"", e);
+			return null;
+		}
+	}
+	
+	/**
+	 * Parses the file up to the object named <code>token</code> and fills out an instance of type from it as it is
+	 * parsed.
+	 */
+	private <T> T stream(Class<T> type, String token) {
+		try (InputStream stream = new FileInputStream(new File(path))) {
+			return parse(stream, type, token);
+		} catch (IOException e) {
 			e.printStackTrace();
+		} catch (NoSuchElementException e) {
+			logger.log(Level.SEVERE, e.getMessage());
+		} catch (RuntimeException e) {
+			logger.log(Level.SEVERE, "Could not configure \"" + token + "\"", e);
 		}
-		JsonReader reader = Json.createReader(stream);
-		JsonObject result = reader.readObject();
-		reader.close();
-		return result;
+		return null;
 	}
 	
 	/**
-	 * Recursively loads data into an Object from a given JsonObject.
+	 * Parses JSON up to the object named <code>token</code> and fills out an instance of type from it as it is parsed.
+	 * 
+	 * @return the instance, or null if the object is null
+	 * @throws NoSuchElementException if there is no object named <code>token</code>
 	 */
-	private <T> void parseJsonObject(Class<T> type, Object instance, JsonObject json) {
-		for(Field field : type.getDeclaredFields()) {
-			if(!field.isAnnotationPresent(Unconfigurable.class) && (field.isAnnotationPresent(Configurable.class) || Modifier.isPublic(field.getModifiers()))) {
-				field.setAccessible(true);
-				if(field.getType().isArray()) {
-					JsonArray jsonArray = json.getJsonArray(field.getName());
-					Object array = Array.newInstance(field.getType().getComponentType(), jsonArray.size());
-					fillArray(field.getType().getComponentType(), array, jsonArray);
-					try {
-						field.set(instance, array);
-					} catch (IllegalArgumentException | IllegalAccessException e) {
-						e.printStackTrace();
-					}
+	private <T> T parse(InputStream stream, Class<T> type, String token) {
+		try (JsonParser parser = Json.createParser(stream)) {
+			JsonEvents.expect(parser, parser.hasNext() ? parser.next() : null, Event.START_OBJECT);
+			while(parser.next() != Event.END_OBJECT) {
+				boolean found = parser.getString().equals(token);
+				Event event = parser.next();
+				if(!found) {
+					JsonEvents.skip(parser, event);
+				} else if(event == Event.VALUE_NULL) {
+					return null;
 				} else {
-					try {
-						field.set(instance, getValue(json, field.getType(), field.getName()));
-					} catch (IllegalArgumentException | IllegalAccessException e) {
-						e.printStackTrace();
-					}
+					JsonEvents.expect(parser, event, Event.START_OBJECT);
+					return getBinder(type).read(parser);
 				}
-				field.setAccessible(false);
 			}
 		}
+		throw new NoSuchElementException("\"" + token + "\" is not in configuration file");
 	}
 	
 	/**
-	 * Recursively loads data in an array from given JSON.
-	 */
-	private <T> void  fillArray(Class<T> componentType, Object array, JsonArray json) {
-		for(int i = 0; i < Array.getLength(array); i++) {
-			switch(componentType.getName()) {
-			case "double":
-				Array.set(array, i, json.getJsonNumber(i).doubleValue());
-				break;
-			case "int":
-				Array.set(array, i, json.getJsonNumber(i).intValue());
-				break;
-			case "java.lang.String":
-				Array.set(array, i, json.getString(i));
-				break;
-			case "boolean":
-				Array.set(array, i, json.getBoolean(i));
-				break;
-			default:
-				if(componentType.isArray()) {
-					JsonArray jsonArray = json.getJsonArray(i);
-					
-					Object tmpArray = Array.newInstance(componentType.getComponentType(), jsonArray.size());
-					fillArray(componentType.getComponentType(), tmpArray, json.getJsonArray(i));
-					Array.set(array, i, tmpArray);
-				} else {
-					Object tmpInstance = null;
-					
-					Constructor<?> ctor;
-					try {
-						ctor = componentType.getConstructor();
-						tmpInstance = ctor.newInstance();
-					} catch (NoSuchMethodException | SecurityException e) {
-						e.printStackTrace();
-					} catch (InstantiationException | InvocationTargetException e) {
-						e.printStackTrace();
-					} catch (IllegalAccessException e) {
-						e.printStackTrace();
-					} catch (IllegalArgumentException e) {
-						e.printStackTrace();
-					}
-					
-					parseJsonObject(componentType, tmpInstance, json.getJsonObject(i));
-					
-					Array.set(array, i, tmpInstance);
+	 * Reads the object named <code>token</code> like {@link #get(Class, String)}, and keeps reading it each time the
+	 * file changes while the configuration is {@link #watch() watched}.
+	 * 
+	 * @param <T> the type to be instantiated and filled out
+	 * @param type the type to be instantiated and filled out
+	 * @param token the name of the JSON object which data should be read from
+	 * @return a setting holding the latest instance
+	 */
+	public <T> Setting<T> bind(Class<T> type, String token) {
+		Setting<T> setting = new Setting<>(type, token, get(type, token));
+		settings.add(setting);
+		return setting;
+	}
+	
+	/**
+	 * Writes the snapshot if objects have been read from the file since it was opened or last written. Called by the
+	 * robot once it has been initialized, which is when most objects have been read.
+	 * 
+	 * @return whether the snapshot was written
+	 */
+	public boolean saveSnapshot() {
+		return snapshot != null && snapshot.save();
+	}
+	
+	/**
+	 * Starts watching the file for changes on a background thread. When the file changes it is read again there and
+	 * every {@link Setting} bound to this configuration is read from it, but nothing is replaced until the next
+	 * {@link #update()}. If the file cannot be read, or any of the settings cannot be read from it, nothing is replaced
+	 * and the last good values are kept.
+	 * 
+	 * @return whether the file is being watched
+	 */
+	public synchronized boolean watch() {
+		if(watcher != null) return true;
+		try {
+			watcher = new ConfigurationWatcher(this, Paths.get(path));
+		} catch (IOException e) {
+			logger.log(Level.WARNING, "Could not watch " + path, e);
+			return false;
+		}
+		watcher.start();
+		return true;
+	}
+	
+	/**
+	 * Stops watching the file. A reload which has already been read is still applied by the next {@link #update()}.
+	 */
+	public synchronized void stopWatching() {
+		if(watcher != null) {
+			watcher.close();
+			watcher = null;
+		}
+	}
+	
+	/**
+	 * Replaces the settings with those read since the last update, if the file has changed. Called by the robot at the
+	 * start of every cycle, so settings only change between cycles. This never waits for the file to be read.
+	 */
+	public void update() {
+		if(pending.get() == null) return;
+		Generation generation = pending.getAndSet(null);
+		if(generation == null) return;
+		
+		// The snapshot no longer matches the file, and is replaced on the next start
+		snapshot = null;
+		if(generation.data != null) {
+			data = generation.data;
+		}
+		instances.clear();
+		interner = generation.interner;
+		for(int i = 0; i < generation.settings.length; i++) {
+			Setting<?> setting = generation.settings[i];
+			setting.set(generation.values[i]);
+			instances.put(new Key(setting.getType(), setting.getToken()), generation.values[i]);
+		}
+		// Listeners are told once every setting has changed, so none of them sees a mix of old and new settings
+		for(Setting<?> setting : generation.settings) {
+			setting.fireChanged();
+		}
+	}
+	
+	/**
+	 * Reads every setting from the new contents of the file, all or nothing, and leaves them for the next
+	 * {@link #update()} as one generation, which replaces any generation still waiting. Called on the watcher thread.
+	 * 
+	 * @return whether the settings were read
+	 */
+	boolean reload(byte[] contents) {
+		long start = System.nanoTime();
+		List<Setting<?>> bound = new ArrayList<>(settings);
+		Object[] values = new Object[bound.size()];
+		JsonObject tree = null;
+		Interner generation = new Interner();
+		Interner previous = Interner.enter(generation);
+		try {
+			if(!streaming) {
+				try (JsonReader reader = Json.createReader(new ByteArrayInputStream(contents))) {
+					tree = reader.readObject();
 				}
-				break;
 			}
+			for(int i = 0; i < values.length; i++) {
+				Setting<?> setting = bound.get(i);
+				values[i] = parse(new ByteArrayInputStream(contents), setting.getType(), setting.getToken());
+				if(values[i] == null) {
+					throw new IllegalStateException("\"" + setting.getToken() + "\" could not be read");
+				}
+			}
+		} catch (RuntimeException e) {
+			logger.log(Level.WARNING, "Kept the last good configuration, " + path + " could not be reloaded", e);
+			return false;
+		} finally {
+			Interner.exit(previous);
 		}
-
+		
+		pending.set(new Generation(bound.toArray(new Setting<?>[bound.size()]), values, tree, generation));
+		logger.log(Level.INFO, "Reloaded " + path + " in " + (System.nanoTime() - start) / 1000000 + " ms");
+		return true;
+	}
+	
+	/**
+	 * Returns the binder for a type, creating it the first time the type is configured. The binder generated for the
+	 * type at compile time is used if there is one, and a {@link ReflectiveBinder} otherwise.
+	 * 
+	 * @param <T> the type to be bound
+	 * @param type the type to be bound
+	 * @return the binder for the type
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> Binder<T> getBinder(Class<T> type) {
+		Binder<?> binder = binders.get(type);
+		if(binder == null) {
+			// Created outside of the map so binders of nested types can be created while this one is
+			binder = createBinder(type);
+			Binder<?> existing = binders.putIfAbsent(type, binder);
+			if(existing != null) {
+				binder = existing;
+			}
+		}
+		return (Binder<T>) binder;
 	}
 	
-	private Object getValue(JsonObject json, Class<?> type, String token) {
-		if(json.isNull(token)) return null;
+	private static <T> Binder<T> createBinder(Class<T> type) {
 		try {
-			switch(type.getName()) {
-			case "double":
-				return json.getJsonNumber(token).doubleValue();
-			case "int":
-				return json.getInt(token);
-			case "java.lang.String":
-				return json.getString(token);
-			case "boolean":
-				return json.getBoolean(token);
-			default:
-				Object tmpInstance = null;
-				
-				Constructor<?> ctor;
-				try {
-					ctor = type.getConstructor();
-					tmpInstance = ctor.newInstance();
-				} catch (NoSuchMethodException | SecurityException e) {
-					e.printStackTrace();
-				} catch (InstantiationException | InvocationTargetException e) {
-					e.printStackTrace();
-				}
-				
-				parseJsonObject(type, tmpInstance, json.getJsonObject(token));
-				
-				return tmpInstance;
+			Class<?> generated = Class.forName(GeneratedBinder.getBinderName(type), true, type.getClassLoader());
+			if(Binder.class.isAssignableFrom(generated)) {
+				@SuppressWarnings("unchecked")
+				Binder<T> binder = (Binder<T>) generated.getDeclaredConstructor().newInstance();
+				return binder;
 			}
-		} catch (IllegalArgumentException | IllegalAccessException e) {
+		} catch (ClassNotFoundException e) {
+			// Not generated, so the fields are found by reflection
+		} catch (ReflectiveOperationException | LinkageError e) {
+			logger.log(Level.WARNING, "Could not use the generated binder for " + type.getName(), e);
+		}
+		return new ReflectiveBinder<>(type);
+	}
+	
+	/**
+	 * Reads configuration data from JSON file
+	 */
+	private JsonObject read(String path) {
+		FileInputStream stream = null;
+		try {
+			stream = new FileInputStream(new File(path));
+		} catch (FileNotFoundException e) {
 			e.printStackTrace();
 		}
-		return null;
+		JsonReader reader = Json.createReader(stream);
+		JsonObject result = reader.readObject();
+		reader.close();
+		return result;
 	}
 	
+	@SuppressWarnings("unchecked")
 	public <T> JsonObjectBuilder getJsonObjectBuilder(Class<T> type, Object instance) {
-		JsonObjectBuilder objBuilder = Json.createObjectBuilder();
-		//objBuilder.add("TypeName", this.getClass().getTypeName());
-		for(Field field : type.getDeclaredFields()) {
-			if(field.isAnnotationPresent(Configurable.class)) {
-				String typeName = field.getGenericType().getTypeName();
-				try {
-					field.setAccessible(true);
-					if(field.get(instance) == null) {
-						objBuilder.add(field.getName(), JsonValue.NULL);
-					} else {
-						switch(typeName) {
-						case "double":
-							objBuilder.add(field.getName(), field.getDouble(instance));
-							break;
-						case "int":
-							objBuilder.add(field.getName(), field.getInt(instance));
-							break;
-						case "java.lang.String":
-							objBuilder.add(field.getName(), (String)field.get(instance));
-							break;
-						case "boolean":
-							objBuilder.add(field.getName(), field.getBoolean(instance));
-							break;
-						default:
-							objBuilder.add(field.getName(), getJsonObjectBuilder(field.getType(), field.get(instance)));
-						}
-					}
-				} catch (IllegalArgumentException | IllegalAccessException e) {
-					e.printStackTrace();
-				} finally {
-					field.setAccessible(false);
-				}
-			}
+		return ((Binder<Object>) getBinder(type)).write(instance);
+	}
+	
+	/**
+	 * Everything read by one reload, which {@link #update()} swaps in at once so settings from two reloads are never
+	 * mixed.
+	 */
+	private static final class Generation {
+		private final Setting<?>[] settings;
+		private final Object[] values;
+		private final JsonObject data;
+		private final Interner interner;
+		
+		Generation(Setting<?>[] settings, Object[] values, JsonObject data, Interner interner) {
+			this.settings = settings;
+			this.values = values;
+			this.data = data;
+			this.interner = interner;
+		}
+	}
+	
+	private static final class Key {
+		private final Class<?> type;
+		private final String token;
+		
+		Key(Class<?> type, String token) {
+			this.type = type;
+			this.token = token;
+		}
+		
+		@Override
+		public int hashCode() {
+			return 31 * type.hashCode() + token.hashCode();
+		}
+		
+		@Override
+		public boolean equals(Object o) {
+			if(!(o instanceof Key)) return false;
+			Key other = (Key) o;
+			return type == other.type && token.equals(other.token);
 		}
-		return objBuilder;
 	}
 	
 }
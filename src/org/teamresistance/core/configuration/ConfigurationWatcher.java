@@ -0,0 +1,101 @@
+package org.teamresistance.core.configuration;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Watches the file of a {@link Configuration} on a background thread and reloads the configuration when it changes.
+ */
+class ConfigurationWatcher implements Runnable {
+
+	private static Logger logger = Logger.getLogger(ConfigurationWatcher.class.getName());
+
+	/**
+	 * How long the file must be left alone before it is read, in milliseconds. Editors often save a file in more than
+	 * one step.
+	 */
+	static final long SETTLE_TIME = 100;
+
+	private final Configuration configuration;
+	private final Path file;
+	private final WatchService service;
+	private final Thread thread;
+	private byte[] contents;
+
+	ConfigurationWatcher(Configuration configuration, Path file) throws IOException {
+		this.configuration = configuration;
+		this.file = file.toAbsolutePath();
+		this.service = file.getFileSystem().newWatchService();
+		this.file.getParent().register(service, StandardWatchEventKinds.ENTRY_CREATE,
+				StandardWatchEventKinds.ENTRY_MODIFY);
+		this.contents = Files.readAllBytes(this.file);
+
+		thread = new Thread(this, "Configuration watcher");
+		thread.setDaemon(true);
+		thread.setPriority(Thread.MIN_PRIORITY);
+	}
+
+	void start() {
+		thread.start();
+	}
+
+	void close() {
+		try {
+			service.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	@Override
+	public void run() {
+		try {
+			while(true) {
+				boolean changed = drain(service.take());
+				WatchKey key;
+				while((key = service.poll(SETTLE_TIME, TimeUnit.MILLISECONDS)) != null) {
+					changed |= drain(key);
+				}
+				if(!changed) continue;
+
+				byte[] latest;
+				try {
+					latest = Files.readAllBytes(file);
+				} catch (IOException e) {
+					logger.log(Level.WARNING, "Could not read " + file, e);
+					continue;
+				}
+				// Saving without changes or touching the file does not cause a reload
+				if(Arrays.equals(latest, contents)) continue;
+				contents = latest;
+				configuration.reload(latest);
+			}
+		} catch (InterruptedException | ClosedWatchServiceException e) {
+			// Stopped
+		}
+	}
+
+	/**
+	 * Returns whether any of the events of a key are for the file.
+	 */
+	private boolean drain(WatchKey key) {
+		boolean changed = false;
+		for(WatchEvent<?> event : key.pollEvents()) {
+			if(event.kind() == StandardWatchEventKinds.OVERFLOW || file.getFileName().equals(event.context())) {
+				changed = true;
+			}
+		}
+		key.reset();
+		return changed;
+	}
+}
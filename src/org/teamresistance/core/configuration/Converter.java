@@ -0,0 +1,54 @@
+package org.teamresistance.core.configuration;
+
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonValue;
+import javax.json.stream.JsonParser;
+
+/**
+ * Converts values of one type to and from JSON. Converters are found with {@link Converters#get(java.lang.reflect.Type)}
+ * and new ones are added with {@link Converters#register(Class, Converter)}.
+ *
+ * <p>Null is handled by the caller, so a converter is never given a JSON null or a null value.
+ *
+ * @param <T> the type which is converted
+ */
+public interface Converter<T> {
+
+	/**
+	 * Converts a JSON value.
+	 *
+	 * @param value the JSON value, which is not null
+	 * @return the converted value
+	 */
+	T read(JsonValue value);
+
+	/**
+	 * Converts a value while it is being parsed, so no tree is built for it. The default builds a tree for just this
+	 * value and passes it to {@link #read(JsonValue)}.
+	 *
+	 * @param parser the parser, which is left after the end of the value
+	 * @param event the event which started the value, which is not {@link JsonParser.Event#VALUE_NULL}
+	 * @return the converted value
+	 */
+	default T read(JsonParser parser, JsonParser.Event event) {
+		return read(JsonEvents.readValue(parser, event));
+	}
+
+	/**
+	 * Adds a value to a JSON object.
+	 *
+	 * @param value the value, which is not null
+	 * @param builder the JSON object
+	 * @param name the name of the value in the object
+	 */
+	void write(T value, JsonObjectBuilder builder, String name);
+
+	/**
+	 * Adds a value to the end of a JSON array.
+	 *
+	 * @param value the value, which is not null
+	 * @param builder the JSON array
+	 */
+	void write(T value, JsonArrayBuilder builder);
+}
@@ -0,0 +1,1002 @@
+package org.teamresistance.core.configuration;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonNumber;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+import javax.json.stream.JsonParser;
+import javax.json.stream.JsonParser.Event;
+
+import org.teamresistance.core.mathd.Quaterniond;
+import org.teamresistance.core.mathd.Vector2d;
+import org.teamresistance.core.mathd.Vector3d;
+import org.teamresistance.core.mathd.Vector4d;
+import org.teamresistance.core.mathf.Quaternionf;
+import org.teamresistance.core.mathf.Vector2f;
+import org.teamresistance.core.mathf.Vector3f;
+import org.teamresistance.core.mathf.Vector4f;
+import org.teamresistance.core.mathi.Vector2i;
+import org.teamresistance.core.mathi.Vector3i;
+
+/**
+ * The {@link Converter} of every type which can be configured.
+ *
+ * <p>A converter is created the first time its type is asked for and kept, so binders look up the converter of each
+ * field once. There are converters for:
+ * <ul>
+ * <li>{@code double}, {@code float}, {@code long}, {@code int} and {@code boolean}, boxed or not, and {@code String}</li>
+ * <li>enums, which are written by name</li>
+ * <li>arrays, with arrays of primitives filled without boxing</li>
+ * <li>{@code List}, {@code Set} and {@code Collection} of any type which can be configured, read from JSON arrays</li>
+ * <li>{@code Map} with {@code String} keys, read from JSON objects</li>
+ * <li>the vectors and quaternions in {@code mathd}, {@code mathf} and {@code mathi}, read from either an object such as
+ * <code>{"x": 1, "y": 2}</code> or an array such as {@code [1, 2]}</li>
+ * <li>any other type, as a nested object filled by its {@link Binder}</li>
+ * </ul>
+ *
+ * <p>Every one of them can read a value either from a tree or while it is being parsed.
+ *
+ */
+public final class Converters {
+
+	private static final Map<Type, Converter<?>> converters = new ConcurrentHashMap<>();
+
+	private Converters() {
+	}
+
+	/**
+	 * Registers the converter for a type, replacing any existing one. Binders keep the converters of their fields, so
+	 * converters must be registered before the first configuration which uses them is loaded.
+	 *
+	 * @param <T> the type which is converted
+	 * @param type the type which is converted
+	 * @param converter the converter
+	 */
+	public static <T> void register(Class<T> type, Converter<T> converter) {
+		converters.put(type, converter);
+	}
+
+	/**
+	 * Returns the converter for a class.
+	 *
+	 * @param <T> the class which is converted
+	 * @param type the class which is converted
+	 * @return the converter
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> Converter<T> get(Class<T> type) {
+		return (Converter<T>) get((Type) type);
+	}
+
+	/**
+	 * Returns the converter for a type, which may be generic such as the type of a {@code List<Vector2d>} field.
+	 *
+	 * @param type the type which is converted
+	 * @return the converter
+	 * @throws IllegalArgumentException if values of the type cannot be configured
+	 */
+	public static Converter<?> get(Type type) {
+		Converter<?> converter = converters.get(type);
+		if(converter == null) {
+			// Created outside of the map so converters of element types can be created while this one is
+			converter = create(type);
+			Converter<?> existing = converters.putIfAbsent(type, converter);
+			if(existing != null) {
+				converter = existing;
+			}
+		}
+		return converter;
+	}
+
+	/**
+	 * Returns a converter for lists of a type.
+	 *
+	 * @param <E> the type of the elements
+	 * @param element the converter of the elements
+	 * @return the converter
+	 */
+	public static <E> Converter<List<E>> list(Converter<E> element) {
+		return new CollectionConverter<List<E>, E>(element) {
+			@Override
+			protected List<E> create(int size) {
+				return new ArrayList<>(size);
+			}
+		};
+	}
+
+	/**
+	 * Returns a converter for sets of a type, which keep the order of the JSON array.
+	 *
+	 * @param <E> the type of the elements
+	 * @param element the converter of the elements
+	 * @return the converter
+	 */
+	public static <E> Converter<Set<E>> set(Converter<E> element) {
+		return new CollectionConverter<Set<E>, E>(element) {
+			@Override
+			protected Set<E> create(int size) {
+				return new LinkedHashSet<>();
+			}
+		};
+	}
+
+	/**
+	 * Returns a converter for maps from strings to a type, which keep the order of the JSON object.
+	 *
+	 * @param <V> the type of the values
+	 * @param value the converter of the values
+	 * @return the converter
+	 */
+	public static <V> Converter<Map<String, V>> map(Converter<V> value) {
+		return new MapConverter<>(value);
+	}
+
+	private static Converter<?> create(Type type) {
+		if(type instanceof Class) {
+			Class<?> cls = (Class<?>) type;
+			if(cls.isEnum()) {
+				return enumConverter(cls);
+			}
+			if(cls.isPrimitive()) {
+				throw new IllegalArgumentException("No converter is registered for " + cls.getName());
+			}
+			if(cls.isArray()) {
+				return new ArrayConverter(cls.getComponentType(), get(cls.getComponentType()));
+			}
+			if(Collection.class.isAssignableFrom(cls) || Map.class.isAssignableFrom(cls)) {
+				throw new IllegalArgumentException("The type of the elements of " + cls.getName() + " is not known");
+			}
+			return new ObjectConverter(cls);
+		}
+		if(type instanceof GenericArrayType) {
+			Type component = ((GenericArrayType) type).getGenericComponentType();
+			return new ArrayConverter(rawType(component), get(component));
+		}
+		if(type instanceof ParameterizedType) {
+			ParameterizedType parameterized = (ParameterizedType) type;
+			Class<?> raw = rawType(parameterized);
+			Type[] arguments = parameterized.getActualTypeArguments();
+			if(raw == List.class || raw == Collection.class || raw == ArrayList.class) {
+				return list(get(arguments[0]));
+			}
+			if(raw == Set.class || raw == HashSet.class || raw == LinkedHashSet.class) {
+				return set(get(arguments[0]));
+			}
+			if((raw == Map.class || raw == HashMap.class || raw == LinkedHashMap.class) && arguments[0] == String.class) {
+				return map(get(arguments[1]));
+			}
+			if(raw.getTypeParameters().length == 0 || Collection.class.isAssignableFrom(raw)
+					|| Map.class.isAssignableFrom(raw)) {
+				throw new IllegalArgumentException(type.getTypeName() + " cannot be configured");
+			}
+			return get(raw);
+		}
+		throw new IllegalArgumentException(type.getTypeName() + " cannot be configured");
+	}
+
+	private static Class<?> rawType(Type type) {
+		if(type instanceof Class) return (Class<?>) type;
+		if(type instanceof ParameterizedType) return (Class<?>) ((ParameterizedType) type).getRawType();
+		if(type instanceof GenericArrayType) {
+			return Array.newInstance(rawType(((GenericArrayType) type).getGenericComponentType()), 0).getClass();
+		}
+		throw new IllegalArgumentException(type.getTypeName() + " cannot be configured");
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static Converter<?> enumConverter(Class<?> type) {
+		return new EnumConverter(type);
+	}
+
+	static boolean toBoolean(JsonValue value) {
+		switch(value.getValueType()) {
+		case TRUE:
+			return true;
+		case FALSE:
+			return false;
+		default:
+			throw new ClassCastException("Expected a boolean but found " + value.getValueType());
+		}
+	}
+
+	private static final Converter<Double> DOUBLE = new Converter<Double>() {
+		@Override
+		public Double read(JsonValue value) {
+			return ((JsonNumber) value).doubleValue();
+		}
+
+		@Override
+		public Double read(JsonParser parser, Event event) {
+			return JsonEvents.toDouble(parser, event);
+		}
+
+		@Override
+		public void write(Double value, JsonObjectBuilder builder, String name) {
+			builder.add(name, value);
+		}
+
+		@Override
+		public void write(Double value, JsonArrayBuilder builder) {
+			builder.add(value);
+		}
+	};
+
+	private static final Converter<Float> FLOAT = new Converter<Float>() {
+		@Override
+		public Float read(JsonValue value) {
+			return (float) ((JsonNumber) value).doubleValue();
+		}
+
+		@Override
+		public Float read(JsonParser parser, Event event) {
+			return (float) JsonEvents.toDouble(parser, event);
+		}
+
+		@Override
+		public void write(Float value, JsonObjectBuilder builder, String name) {
+			builder.add(name, value);
+		}
+
+		@Override
+		public void write(Float value, JsonArrayBuilder builder) {
+			builder.add(value);
+		}
+	};
+
+	private static final Converter<Long> LONG = new Converter<Long>() {
+		@Override
+		public Long read(JsonValue value) {
+			return ((JsonNumber) value).longValue();
+		}
+
+		@Override
+		public Long read(JsonParser parser, Event event) {
+			return JsonEvents.toLong(parser, event);
+		}
+
+		@Override
+		public void write(Long value, JsonObjectBuilder builder, String name) {
+			builder.add(name, value);
+		}
+
+		@Override
+		public void write(Long value, JsonArrayBuilder builder) {
+			builder.add(value);
+		}
+	};
+
+	private static final Converter<Integer> INT = new Converter<Integer>() {
+		@Override
+		public Integer read(JsonValue value) {
+			return ((JsonNumber) value).intValue();
+		}
+
+		@Override
+		public Integer read(JsonParser parser, Event event) {
+			return JsonEvents.toInt(parser, event);
+		}
+
+		@Override
+		public void write(Integer value, JsonObjectBuilder builder, String name) {
+			builder.add(name, value);
+		}
+
+		@Override
+		public void write(Integer value, JsonArrayBuilder builder) {
+			builder.add(value);
+		}
+	};
+
+	private static final Converter<Boolean> BOOLEAN = new Converter<Boolean>() {
+		@Override
+		public Boolean read(JsonValue value) {
+			return toBoolean(value);
+		}
+
+		@Override
+		public Boolean read(JsonParser parser, Event event) {
+			return JsonEvents.toBoolean(parser, event);
+		}
+
+		@Override
+		public void write(Boolean value, JsonObjectBuilder builder, String name) {
+			builder.add(name, value);
+		}
+
+		@Override
+		public void write(Boolean value, JsonArrayBuilder builder) {
+			builder.add(value);
+		}
+	};
+
+	private static final Converter<String> STRING = new Converter<String>() {
+		@Override
+		public String read(JsonValue value) {
+			return ((JsonString) value).getString();
+		}
+
+		@Override
+		public String read(JsonParser parser, Event event) {
+			return JsonEvents.toString(parser, event);
+		}
+
+		@Override
+		public void write(String value, JsonObjectBuilder builder, String name) {
+			builder.add(name, value);
+		}
+
+		@Override
+		public void write(String value, JsonArrayBuilder builder) {
+			builder.add(value);
+		}
+	};
+
+	private static class EnumConverter<E extends Enum<E>> implements Converter<E> {
+		private final Class<E> type;
+
+		private EnumConverter(Class<E> type) {
+			this.type = type;
+		}
+
+		@Override
+		public E read(JsonValue value) {
+			return Enum.valueOf(type, ((JsonString) value).getString());
+		}
+
+		@Override
+		public E read(JsonParser parser, Event event) {
+			return Enum.valueOf(type, JsonEvents.toString(parser, event));
+		}
+
+		@Override
+		public void write(E value, JsonObjectBuilder builder, String name) {
+			builder.add(name, value.name());
+		}
+
+		@Override
+		public void write(E value, JsonArrayBuilder builder) {
+			builder.add(value.name());
+		}
+	}
+
+	/**
+	 * Base of converters which write a JSON array.
+	 */
+	private static abstract class AbstractArrayConverter<T> implements Converter<T> {
+		protected abstract void fill(T value, JsonArrayBuilder builder);
+
+		@Override
+		public void write(T value, JsonObjectBuilder builder, String name) {
+			JsonArrayBuilder array = Json.createArrayBuilder();
+			fill(value, array);
+			builder.add(name, array);
+		}
+
+		@Override
+		public void write(T value, JsonArrayBuilder builder) {
+			JsonArrayBuilder array = Json.createArrayBuilder();
+			fill(value, array);
+			builder.add(array);
+		}
+	}
+
+	// Arrays of primitives are filled directly so no element is boxed
+
+	private static final Converter<double[]> DOUBLE_ARRAY = new AbstractArrayConverter<double[]>() {
+		@Override
+		public double[] read(JsonValue value) {
+			JsonArray json = (JsonArray) value;
+			double[] array = new double[json.size()];
+			for(int i = 0; i < array.length; i++) {
+				array[i] = json.getJsonNumber(i).doubleValue();
+			}
+			return array;
+		}
+
+		@Override
+		public double[] read(JsonParser parser, Event event) {
+			JsonEvents.expect(parser, event, Event.START_ARRAY);
+			double[] array = new double[16];
+			int size = 0;
+			while((event = parser.next()) != Event.END_ARRAY) {
+				if(size == array.length) {
+					array = Arrays.copyOf(array, size * 2);
+				}
+				array[size++] = JsonEvents.toDouble(parser, event);
+			}
+			return size == array.length ? array : Arrays.copyOf(array, size);
+		}
+
+		@Override
+		protected void fill(double[] array, JsonArrayBuilder builder) {
+			for(double element : array) {
+				builder.add(element);
+			}
+		}
+	};
+
+	private static final Converter<float[]> FLOAT_ARRAY = new AbstractArrayConverter<float[]>() {
+		@Override
+		public float[] read(JsonValue value) {
+			JsonArray json = (JsonArray) value;
+			float[] array = new float[json.size()];
+			for(int i = 0; i < array.length; i++) {
+				array[i] = (float) json.getJsonNumber(i).doubleValue();
+			}
+			return array;
+		}
+
+		@Override
+		public float[] read(JsonParser parser, Event event) {
+			JsonEvents.expect(parser, event, Event.START_ARRAY);
+			float[] array = new float[16];
+			int size = 0;
+			while((event = parser.next()) != Event.END_ARRAY) {
+				if(size == array.length) {
+					array = Arrays.copyOf(array, size * 2);
+				}
+				array[size++] = (float) JsonEvents.toDouble(parser, event);
+			}
+			return size == array.length ? array : Arrays.copyOf(array, size);
+		}
+
+		@Override
+		protected void fill(float[] array, JsonArrayBuilder builder) {
+			for(float element : array) {
+				builder.add(element);
+			}
+		}
+	};
+
+	private static final Converter<long[]> LONG_ARRAY = new AbstractArrayConverter<long[]>() {
+		@Override
+		public long[] read(JsonValue value) {
+			JsonArray json = (JsonArray) value;
+			long[] array = new long[json.size()];
+			for(int i = 0; i < array.length; i++) {
+				array[i] = json.getJsonNumber(i).longValue();
+			}
+			return array;
+		}
+
+		@Override
+		public long[] read(JsonParser parser, Event event) {
+			JsonEvents.expect(parser, event, Event.START_ARRAY);
+			long[] array = new long[16];
+			int size = 0;
+			while((event = parser.next()) != Event.END_ARRAY) {
+				if(size == array.length) {
+					array = Arrays.copyOf(array, size * 2);
+				}
+				array[size++] = JsonEvents.toLong(parser, event);
+			}
+			return size == array.length ? array : Arrays.copyOf(array, size);
+		}
+
+		@Override
+		protected void fill(long[] array, JsonArrayBuilder builder) {
+			for(long element : array) {
+				builder.add(element);
+			}
+		}
+	};
+
+	private static final Converter<int[]> INT_ARRAY = new AbstractArrayConverter<int[]>() {
+		@Override
+		public int[] read(JsonValue value) {
+			JsonArray json = (JsonArray) value;
+			int[] array = new int[json.size()];
+			for(int i = 0; i < array.length; i++) {
+				array[i] = json.getJsonNumber(i).intValue();
+			}
+			return array;
+		}
+
+		@Override
+		public int[] read(JsonParser parser, Event event) {
+			JsonEvents.expect(parser, event, Event.START_ARRAY);
+			int[] array = new int[16];
+			int size = 0;
+			while((event = parser.next()) != Event.END_ARRAY) {
+				if(size == array.length) {
+					array = Arrays.copyOf(array, size * 2);
+				}
+				array[size++] = JsonEvents.toInt(parser, event);
+			}
+			return size == array.length ? array : Arrays.copyOf(array, size);
+		}
+
+		@Override
+		protected void fill(int[] array, JsonArrayBuilder builder) {
+			for(int element : array) {
+				builder.add(element);
+			}
+		}
+	};
+
+	private static final Converter<boolean[]> BOOLEAN_ARRAY = new AbstractArrayConverter<boolean[]>() {
+		@Override
+		public boolean[] read(JsonValue value) {
+			JsonArray json = (JsonArray) value;
+			boolean[] array = new boolean[json.size()];
+			for(int i = 0; i < array.length; i++) {
+				array[i] = toBoolean(json.get(i));
+			}
+			return array;
+		}
+
+		@Override
+		public boolean[] read(JsonParser parser, Event event) {
+			JsonEvents.expect(parser, event, Event.START_ARRAY);
+			boolean[] array = new boolean[16];
+			int size = 0;
+			while((event = parser.next()) != Event.END_ARRAY) {
+				if(size == array.length) {
+					array = Arrays.copyOf(array, size * 2);
+				}
+				array[size++] = JsonEvents.toBoolean(parser, event);
+			}
+			return size == array.length ? array : Arrays.copyOf(array, size);
+		}
+
+		@Override
+		protected void fill(boolean[] array, JsonArrayBuilder builder) {
+			for(boolean element : array) {
+				builder.add(element);
+			}
+		}
+	};
+
+	/**
+	 * Converts arrays of objects, including arrays of arrays such as {@code float[][]}, one element at a time.
+	 */
+	private static class ArrayConverter extends AbstractArrayConverter<Object[]> {
+		private final Class<?> componentType;
+		private final Converter<Object> component;
+
+		@SuppressWarnings("unchecked")
+		private ArrayConverter(Class<?> componentType, Converter<?> component) {
+			this.componentType = componentType;
+			this.component = (Converter<Object>) component;
+		}
+
+		@Override
+		public Object[] read(JsonValue value) {
+			JsonArray json = (JsonArray) value;
+			Object[] array = (Object[]) Array.newInstance(componentType, json.size());
+			for(int i = 0; i < array.length; i++) {
+				JsonValue element = json.get(i);
+				array[i] = element.getValueType() == JsonValue.ValueType.NULL ? null : component.read(element);
+			}
+			return array;
+		}
+
+		@Override
+		public Object[] read(JsonParser parser, Event event) {
+			JsonEvents.expect(parser, event, Event.START_ARRAY);
+			List<Object> elements = new ArrayList<>();
+			while((event = parser.next()) != Event.END_ARRAY) {
+				elements.add(event == Event.VALUE_NULL ? null : component.read(parser, event));
+			}
+			return elements.toArray((Object[]) Array.newInstance(componentType, elements.size()));
+		}
+
+		@Override
+		protected void fill(Object[] array, JsonArrayBuilder builder) {
+			for(Object element : array) {
+				if(element == null) {
+					builder.addNull();
+				} else {
+					component.write(element, builder);
+				}
+			}
+		}
+	}
+
+	private static abstract class CollectionConverter<C extends Collection<E>, E> extends AbstractArrayConverter<C> {
+		private final Converter<E> element;
+
+		private CollectionConverter(Converter<E> element) {
+			this.element = element;
+		}
+
+		protected abstract C create(int size);
+
+		@Override
+		public C read(JsonValue value) {
+			JsonArray json = (JsonArray) value;
+			C collection = create(json.size());
+			for(JsonValue item : json) {
+				collection.add(item.getValueType() == JsonValue.ValueType.NULL ? null : element.read(item));
+			}
+			return collection;
+		}
+
+		@Override
+		public C read(JsonParser parser, Event event) {
+			JsonEvents.expect(parser, event, Event.START_ARRAY);
+			C collection = create(10);
+			while((event = parser.next()) != Event.END_ARRAY) {
+				collection.add(event == Event.VALUE_NULL ? null : element.read(parser, event));
+			}
+			return collection;
+		}
+
+		@Override
+		protected void fill(C collection, JsonArrayBuilder builder) {
+			for(E item : collection) {
+				if(item == null) {
+					builder.addNull();
+				} else {
+					element.write(item, builder);
+				}
+			}
+		}
+	}
+
+	private static class MapConverter<V> implements Converter<Map<String, V>> {
+		private final Converter<V> value;
+
+		private MapConverter(Converter<V> value) {
+			this.value = value;
+		}
+
+		@Override
+		public Map<String, V> read(JsonValue json) {
+			Map<String, V> map = new LinkedHashMap<>();
+			for(Map.Entry<String, JsonValue> entry : ((JsonObject) json).entrySet()) {
+				JsonValue item = entry.getValue();
+				map.put(entry.getKey(), item.getValueType() == JsonValue.ValueType.NULL ? null : value.read(item));
+			}
+			return map;
+		}
+
+		@Override
+		public Map<String, V> read(JsonParser parser, Event event) {
+			JsonEvents.expect(parser, event, Event.START_OBJECT);
+			Map<String, V> map = new LinkedHashMap<>();
+			while(parser.next() != Event.END_OBJECT) {
+				String name = parser.getString();
+				event = parser.next();
+				map.put(name, event == Event.VALUE_NULL ? null : value.read(parser, event));
+			}
+			return map;
+		}
+
+		private JsonObjectBuilder build(Map<String, V> map) {
+			JsonObjectBuilder builder = Json.createObjectBuilder();
+			for(Map.Entry<String, V> entry : map.entrySet()) {
+				if(entry.getValue() == null) {
+					builder.add(entry.getKey(), JsonValue.NULL);
+				} else {
+					value.write(entry.getValue(), builder, entry.getKey());
+				}
+			}
+			return builder;
+		}
+
+		@Override
+		public void write(Map<String, V> map, JsonObjectBuilder builder, String name) {
+			builder.add(name, build(map));
+		}
+
+		@Override
+		public void write(Map<String, V> map, JsonArrayBuilder builder) {
+			builder.add(build(map));
+		}
+	}
+
+	/**
+	 * Converts nested objects with the binder of their type, which is looked up the first time it is needed so types
+	 * can contain themselves.
+	 */
+	private static class ObjectConverter implements Converter<Object> {
+		private final Class<?> type;
+		private Binder<Object> binder;
+
+		private ObjectConverter(Class<?> type) {
+			this.type = type;
+		}
+
+		@SuppressWarnings("unchecked")
+		private Binder<Object> binder() {
+			if(binder == null) {
+				binder = (Binder<Object>) Configuration.getBinder(type);
+			}
+			return binder;
+		}
+
+		@Override
+		public Object read(JsonValue value) {
+			return binder().read((JsonObject) value);
+		}
+
+		@Override
+		public Object read(JsonParser parser, Event event) {
+			JsonEvents.expect(parser, event, Event.START_OBJECT);
+			return binder().read(parser);
+		}
+
+		@Override
+		public void write(Object value, JsonObjectBuilder builder, String name) {
+			builder.add(name, build(value));
+		}
+
+		@Override
+		public void write(Object value, JsonArrayBuilder builder) {
+			builder.add(build(value));
+		}
+
+		private JsonObjectBuilder build(Object value) {
+			// A snapshot needs every field which is read, not just those written to configuration files
+			return Snapshot.isWriting() ? binder().writeAll(value) : binder().write(value);
+		}
+	}
+
+	/**
+	 * Converts a vector or quaternion from its named components without going through its binder. Components are
+	 * passed as doubles, which hold every float and int exactly, and are written as an object so the JSON looks the
+	 * same as when it is written by a binder.
+	 */
+	private static abstract class VectorConverter<T> implements Converter<T> {
+		private final String[] names;
+		private final boolean integral;
+
+		private VectorConverter(boolean integral, String... names) {
+			this.names = names;
+			this.integral = integral;
+		}
+
+		protected abstract T create(double[] components);
+
+		protected abstract void get(T value, double[] components);
+
+		@Override
+		public T read(JsonValue value) {
+			double[] components = new double[names.length];
+			if(value.getValueType() == JsonValue.ValueType.ARRAY) {
+				JsonArray array = (JsonArray) value;
+				for(int i = 0; i < components.length && i < array.size(); i++) {
+					components[i] = array.getJsonNumber(i).doubleValue();
+				}
+			} else {
+				JsonObject object = (JsonObject) value;
+				for(int i = 0; i < components.length; i++) {
+					JsonNumber component = object.getJsonNumber(names[i]);
+					if(component != null) {
+						components[i] = component.doubleValue();
+					}
+				}
+			}
+			return Interner.intern(this, components, this::create);
+		}
+
+		@Override
+		public T read(JsonParser parser, Event event) {
+			double[] components = new double[names.length];
+			if(event == Event.START_ARRAY) {
+				for(int i = 0; (event = parser.next()) != Event.END_ARRAY; i++) {
+					double component = JsonEvents.toDouble(parser, event);
+					if(i < components.length) {
+						components[i] = component;
+					}
+				}
+			} else {
+				JsonEvents.expect(parser, event, Event.START_OBJECT);
+				while(parser.next() != Event.END_OBJECT) {
+					String name = parser.getString();
+					event = parser.next();
+					int index = indexOf(name);
+					if(index < 0 || event == Event.VALUE_NULL) {
+						JsonEvents.skip(parser, event);
+					} else {
+						components[index] = JsonEvents.toDouble(parser, event);
+					}
+				}
+			}
+			return Interner.intern(this, components, this::create);
+		}
+
+		private int indexOf(String name) {
+			for(int i = 0; i < names.length; i++) {
+				if(names[i].equals(name)) return i;
+			}
+			return -1;
+		}
+
+		private JsonObjectBuilder build(T value) {
+			double[] components = new double[names.length];
+			get(value, components);
+			JsonObjectBuilder builder = Json.createObjectBuilder();
+			for(int i = 0; i < components.length; i++) {
+				if(integral) {
+					builder.add(names[i], (long) components[i]);
+				} else {
+					builder.add(names[i], components[i]);
+				}
+			}
+			return builder;
+		}
+
+		@Override
+		public void write(T value, JsonObjectBuilder builder, String name) {
+			builder.add(name, build(value));
+		}
+
+		@Override
+		public void write(T value, JsonArrayBuilder builder) {
+			builder.add(build(value));
+		}
+	}
+
+	static {
+		converters.put(double.class, DOUBLE);
+		converters.put(Double.class, DOUBLE);
+		converters.put(float.class, FLOAT);
+		converters.put(Float.class, FLOAT);
+		converters.put(long.class, LONG);
+		converters.put(Long.class, LONG);
+		converters.put(int.class, INT);
+		converters.put(Integer.class, INT);
+		converters.put(boolean.class, BOOLEAN);
+		converters.put(Boolean.class, BOOLEAN);
+		converters.put(String.class, STRING);
+		converters.put(double[].class, DOUBLE_ARRAY);
+		converters.put(float[].class, FLOAT_ARRAY);
+		converters.put(long[].class, LONG_ARRAY);
+		converters.put(int[].class, INT_ARRAY);
+		converters.put(boolean[].class, BOOLEAN_ARRAY);
+
+		register(Vector2d.class, new VectorConverter<Vector2d>(false, "x", "y") {
+			@Override
+			protected Vector2d create(double[] c) {
+				return new Vector2d(c[0], c[1]);
+			}
+
+			@Override
+			protected void get(Vector2d v, double[] c) {
+				c[0] = v.getX();
+				c[1] = v.getY();
+			}
+		});
+		register(Vector3d.class, new VectorConverter<Vector3d>(false, "x", "y", "z") {
+			@Override
+			protected Vector3d create(double[] c) {
+				return new Vector3d(c[0], c[1], c[2]);
+			}
+
+			@Override
+			protected void get(Vector3d v, double[] c) {
+				c[0] = v.getX();
+				c[1] = v.getY();
+				c[2] = v.getZ();
+			}
+		});
+		register(Vector4d.class, new VectorConverter<Vector4d>(false, "x", "y", "z", "w") {
+			@Override
+			protected Vector4d create(double[] c) {
+				return new Vector4d(c[0], c[1], c[2], c[3]);
+			}
+
+			@Override
+			protected void get(Vector4d v, double[] c) {
+				c[0] = v.getX();
+				c[1] = v.getY();
+				c[2] = v.getZ();
+				c[3] = v.getW();
+			}
+		});
+		register(Quaterniond.class, new VectorConverter<Quaterniond>(false, "x", "y", "z", "w") {
+			@Override
+			protected Quaterniond create(double[] c) {
+				return new Quaterniond(c[0], c[1], c[2], c[3]);
+			}
+
+			@Override
+			protected void get(Quaterniond v, double[] c) {
+				c[0] = v.getX();
+				c[1] = v.getY();
+				c[2] = v.getZ();
+				c[3] = v.getW();
+			}
+		});
+		register(Vector2f.class, new VectorConverter<Vector2f>(false, "x", "y") {
+			@Override
+			protected Vector2f create(double[] c) {
+				return new Vector2f((float) c[0], (float) c[1]);
+			}
+
+			@Override
+			protected void get(Vector2f v, double[] c) {
+				c[0] = v.getX();
+				c[1] = v.getY();
+			}
+		});
+		register(Vector3f.class, new VectorConverter<Vector3f>(false, "x", "y", "z") {
+			@Override
+			protected Vector3f create(double[] c) {
+				return new Vector3f((float) c[0], (float) c[1], (float) c[2]);
+			}
+
+			@Override
+			protected void get(Vector3f v, double[] c) {
+				c[0] = v.getX();
+				c[1] = v.getY();
+				c[2] = v.getZ();
+			}
+		});
+		register(Vector4f.class, new VectorConverter<Vector4f>(false, "x", "y", "z", "w") {
+			@Override
+			protected Vector4f create(double[] c) {
+				return new Vector4f((float) c[0], (float) c[1], (float) c[2], (float) c[3]);
+			}
+
+			@Override
+			protected void get(Vector4f v, double[] c) {
+				c[0] = v.getX();
+				c[1] = v.getY();
+				c[2] = v.getZ();
+				c[3] = v.getW();
+			}
+		});
+		register(Quaternionf.class, new VectorConverter<Quaternionf>(false, "x", "y", "z", "w") {
+			@Override
+			protected Quaternionf create(double[] c) {
+				return new Quaternionf((float) c[0], (float) c[1], (float) c[2], (float) c[3]);
+			}
+
+			@Override
+			protected void get(Quaternionf v, double[] c) {
+				c[0] = v.getX();
+				c[1] = v.getY();
+				c[2] = v.getZ();
+				c[3] = v.getW();
+			}
+		});
+		register(Vector2i.class, new VectorConverter<Vector2i>(true, "x", "y") {
+			@Override
+			protected Vector2i create(double[] c) {
+				return new Vector2i((int) c[0], (int) c[1]);
+			}
+
+			@Override
+			protected void get(Vector2i v, double[] c) {
+				c[0] = v.getX();
+				c[1] = v.getY();
+			}
+		});
+		register(Vector3i.class, new VectorConverter<Vector3i>(true, "x", "y", "z") {
+			@Override
+			protected Vector3i create(double[] c) {
+				return new Vector3i((int) c[0], (int) c[1], (int) c[2]);
+			}
+
+			@Override
+			protected void get(Vector3i v, double[] c) {
+				c[0] = v.getX();
+				c[1] = v.getY();
+				c[2] = v.getZ();
+			}
+		});
+	}
+}
@@ -0,0 +1,133 @@
+package org.teamresistance.core.configuration;
+
+import javax.json.JsonNumber;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+import javax.json.stream.JsonParser;
+import javax.json.stream.JsonParser.Event;
+
+/**
+ * Base of the binders written by {@link org.teamresistance.core.configuration.processor.BinderProcessor} at compile
+ * time. A generated binder reads and writes fields with plain Java, so no reflection is done when it is used.
+ *
+ * <p>Generated binders are named after the type they bind with {@code _Binder} added, such as
+ * {@code org.teamresistance.core.mathd.Vector2d_Binder}, and are found by {@link Configuration#getBinder(Class)}.
+ *
+ * @param <T> the type which is bound
+ */
+public abstract class GeneratedBinder<T> implements Binder<T> {
+
+	/**
+	 * Returns the name of the generated binder for a type.
+	 *
+	 * @param type the type which is bound
+	 * @return the fully qualified name of its generated binder
+	 */
+	public static String getBinderName(Class<?> type) {
+		return type.getName().replace('$', '_') + "_Binder";
+	}
+
+	protected static boolean isSet(JsonValue value) {
+		return value != null && value.getValueType() != JsonValue.ValueType.NULL;
+	}
+
+	protected static double toDouble(JsonValue value) {
+		return ((JsonNumber) value).doubleValue();
+	}
+
+	protected static float toFloat(JsonValue value) {
+		return (float) ((JsonNumber) value).doubleValue();
+	}
+
+	protected static long toLong(JsonValue value) {
+		return ((JsonNumber) value).longValue();
+	}
+
+	protected static int toInt(JsonValue value) {
+		return ((JsonNumber) value).intValue();
+	}
+
+	protected static boolean toBoolean(JsonValue value) {
+		return Converters.toBoolean(value);
+	}
+
+	protected static String toString(JsonValue value) {
+		return value.getValueType() == JsonValue.ValueType.NULL ? null : ((JsonString) value).getString();
+	}
+
+	protected static void add(JsonObjectBuilder builder, String name, String value) {
+		if(value == null) {
+			builder.add(name, JsonValue.NULL);
+		} else {
+			builder.add(name, value);
+		}
+	}
+
+	/**
+	 * Converts a value which may be null with the converter of its type.
+	 *
+	 * @param <V> the type of the value
+	 * @param converter the converter of the type
+	 * @param value the JSON value
+	 * @return the converted value, or null if the JSON value was null
+	 */
+	protected static <V> V read(Converter<V> converter, JsonValue value) {
+		return value.getValueType() == JsonValue.ValueType.NULL ? null : converter.read(value);
+	}
+
+	protected static <V> void write(Converter<V> converter, V value, JsonObjectBuilder builder, String name) {
+		if(value == null) {
+			builder.add(name, JsonValue.NULL);
+		} else {
+			converter.write(value, builder, name);
+		}
+	}
+
+	protected static double toDouble(JsonParser parser, Event event) {
+		return JsonEvents.toDouble(parser, event);
+	}
+
+	protected static float toFloat(JsonParser parser, Event event) {
+		return (float) JsonEvents.toDouble(parser, event);
+	}
+
+	protected static long toLong(JsonParser parser, Event event) {
+		return JsonEvents.toLong(parser, event);
+	}
+
+	protected static int toInt(JsonParser parser, Event event) {
+		return JsonEvents.toInt(parser, event);
+	}
+
+	protected static boolean toBoolean(JsonParser parser, Event event) {
+		return JsonEvents.toBoolean(parser, event);
+	}
+
+	protected static String toString(JsonParser parser, Event event) {
+		return event == Event.VALUE_NULL ? null : JsonEvents.toString(parser, event);
+	}
+
+	/**
+	 * Converts a value which may be null with the converter of its type while it is parsed.
+	 *
+	 * @param <V> the type of the value
+	 * @param converter the converter of the type
+	 * @param parser the parser
+	 * @param event the event which started the value
+	 * @return the converted value, or null if the JSON value was null
+	 */
+	protected static <V> V read(Converter<V> converter, JsonParser parser, Event event) {
+		return event == Event.VALUE_NULL ? null : converter.read(parser, event);
+	}
+
+	/**
+	 * Skips a value which is not bound to a field.
+	 *
+	 * @param parser the parser
+	 * @param event the event which started the value
+	 */
+	protected static void skip(JsonParser parser, Event event) {
+		JsonEvents.skip(parser, event);
+	}
+}
@@ -0,0 +1,89 @@
+package org.teamresistance.core.configuration;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Shares one instance between equal vectors read for the shared instances of a {@link Configuration}, so a constant
+ * repeated throughout the file is only held once. It is only used while the thread reading an object has entered it,
+ * as objects read for other uses may be changed by their owners.
+ */
+final class Interner {
+
+	private static final ThreadLocal<Interner> active = new ThreadLocal<>();
+
+	private final Map<Key, Object> values = new ConcurrentHashMap<>();
+
+	/**
+	 * Makes an interner the one used by the current thread.
+	 *
+	 * @param interner the interner, or null for none
+	 * @return the interner used before, to be passed to {@link #exit(Interner)}
+	 */
+	static Interner enter(Interner interner) {
+		Interner previous = active.get();
+		active.set(interner);
+		return previous;
+	}
+
+	static void exit(Interner previous) {
+		if(previous == null) {
+			active.remove();
+		} else {
+			active.set(previous);
+		}
+	}
+
+	/**
+	 * Returns the instance for the components of a vector, created by the converter the first time they are seen, or a
+	 * new instance if the current thread has not entered an interner.
+	 *
+	 * @param converter the converter reading the vector, which only shares instances with itself
+	 * @param components the components of the vector, which are not changed afterwards
+	 * @param create creates a vector from its components
+	 */
+	static <T> T intern(Converter<T> converter, double[] components, Function<double[], T> create) {
+		Interner interner = active.get();
+		if(interner == null) {
+			return create.apply(components);
+		}
+		Key key = new Key(converter, components);
+		@SuppressWarnings("unchecked")
+		T value = (T) interner.values.get(key);
+		if(value == null) {
+			value = create.apply(components);
+			@SuppressWarnings("unchecked")
+			T existing = (T) interner.values.putIfAbsent(key, value);
+			if(existing != null) {
+				value = existing;
+			}
+		}
+		return value;
+	}
+
+	private static final class Key {
+		private final Converter<?> converter;
+		private final double[] components;
+		private final int hash;
+
+		Key(Converter<?> converter, double[] components) {
+			this.converter = converter;
+			this.components = components;
+			this.hash = 31 * System.identityHashCode(converter) + Arrays.hashCode(components);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if(!(o instanceof Key)) return false;
+			Key other = (Key) o;
+			return converter == other.converter && Arrays.equals(components, other.components);
+		}
+	}
+}
@@ -0,0 +1,156 @@
+package org.teamresistance.core.configuration;
+
+import javax.json.Json;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonValue;
+import javax.json.stream.JsonParser;
+import javax.json.stream.JsonParser.Event;
+import javax.json.stream.JsonParsingException;
+
+/**
+ * Helpers for reading values from a {@link JsonParser}, which are passed the event that started the value.
+ */
+final class JsonEvents {
+
+	private JsonEvents() {
+	}
+
+	/**
+	 * Skips the value started by an event, including everything inside it if it is an object or array.
+	 */
+	static void skip(JsonParser parser, Event event) {
+		if(event != Event.START_OBJECT && event != Event.START_ARRAY) return;
+		int depth = 1;
+		while(depth > 0) {
+			switch(parser.next()) {
+			case START_OBJECT:
+			case START_ARRAY:
+				depth++;
+				break;
+			case END_OBJECT:
+			case END_ARRAY:
+				depth--;
+				break;
+			default:
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Builds the value started by an event as a tree, for converters which only read trees.
+	 */
+	static JsonValue readValue(JsonParser parser, Event event) {
+		switch(event) {
+		case START_OBJECT:
+			return readObject(parser).build();
+		case START_ARRAY:
+			return readArray(parser).build();
+		case VALUE_TRUE:
+			return JsonValue.TRUE;
+		case VALUE_FALSE:
+			return JsonValue.FALSE;
+		case VALUE_NULL:
+			return JsonValue.NULL;
+		default:
+			// Scalars only exist inside a structure, so one is made to hold the value
+			return add(Json.createArrayBuilder(), parser, event).build().get(0);
+		}
+	}
+
+	private static JsonObjectBuilder readObject(JsonParser parser) {
+		JsonObjectBuilder builder = Json.createObjectBuilder();
+		Event event;
+		while((event = parser.next()) != Event.END_OBJECT) {
+			String name = parser.getString();
+			event = parser.next();
+			switch(event) {
+			case START_OBJECT:
+				builder.add(name, readObject(parser));
+				break;
+			case START_ARRAY:
+				builder.add(name, readArray(parser));
+				break;
+			case VALUE_STRING:
+				builder.add(name, parser.getString());
+				break;
+			case VALUE_NUMBER:
+				if(parser.isIntegralNumber()) {
+					builder.add(name, parser.getLong());
+				} else {
+					builder.add(name, toDouble(parser, event));
+				}
+				break;
+			default:
+				builder.add(name, readValue(parser, event));
+				break;
+			}
+		}
+		return builder;
+	}
+
+	private static JsonArrayBuilder readArray(JsonParser parser) {
+		JsonArrayBuilder builder = Json.createArrayBuilder();
+		Event event;
+		while((event = parser.next()) != Event.END_ARRAY) {
+			add(builder, parser, event);
+		}
+		return builder;
+	}
+
+	private static JsonArrayBuilder add(JsonArrayBuilder builder, JsonParser parser, Event event) {
+		switch(event) {
+		case START_OBJECT:
+			return builder.add(readObject(parser));
+		case START_ARRAY:
+			return builder.add(readArray(parser));
+		case VALUE_STRING:
+			return builder.add(parser.getString());
+		case VALUE_NUMBER:
+			return parser.isIntegralNumber() ? builder.add(parser.getLong()) : builder.add(toDouble(parser, event));
+		default:
+			return builder.add(readValue(parser, event));
+		}
+	}
+
+	static double toDouble(JsonParser parser, Event event) {
+		expect(parser, event, Event.VALUE_NUMBER);
+		if(parser instanceof SnapshotParser) {
+			return ((SnapshotParser) parser).getDouble();
+		}
+		return Double.parseDouble(parser.getString());
+	}
+
+	static long toLong(JsonParser parser, Event event) {
+		expect(parser, event, Event.VALUE_NUMBER);
+		return parser.isIntegralNumber() ? parser.getLong() : (long) toDouble(parser, event);
+	}
+
+	static int toInt(JsonParser parser, Event event) {
+		expect(parser, event, Event.VALUE_NUMBER);
+		return parser.isIntegralNumber() ? parser.getInt() : (int) toDouble(parser, event);
+	}
+
+	static boolean toBoolean(JsonParser parser, Event event) {
+		switch(event) {
+		case VALUE_TRUE:
+			return true;
+		case VALUE_FALSE:
+			return false;
+		default:
+			throw new JsonParsingException("Expected a boolean but found " + event, parser.getLocation());
+		}
+	}
+
+	static String toString(JsonParser parser, Event event) {
+		expect(parser, event, Event.VALUE_STRING);
+		return parser.getString();
+	}
+
+	static void expect(JsonParser parser, Event event, Event expected) {
+		if(event != expected) {
+			throw new JsonParsingException("Expected " + expected + " but found " + event, parser.getLocation());
+		}
+	}
+}
@@ -0,0 +1,387 @@
+package org.teamresistance.core.configuration;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.json.Json;
+import javax.json.JsonNumber;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonValue;
+import javax.json.stream.JsonParser;
+import javax.json.stream.JsonParser.Event;
+
+/**
+ * A {@link Binder} which finds the configurable fields of a type by reflection.
+ *
+ * <p>Reflection is only used while the binder is created. Every field is turned into a {@link MethodHandle} getter and
+ * setter, the no-argument constructor into a {@link MethodHandle}, and the conversion from JSON into the
+ * {@link Converter} of the field's type from {@link Converters}, so reading an object is a straight walk over its
+ * properties with no annotation checks, access changes or comparisons of type names.
+ *
+ * @param <T> the type which is bound
+ */
+class ReflectiveBinder<T> implements Binder<T> {
+
+	private static Logger logger = Logger.getLogger(ReflectiveBinder.class.getName());
+
+	private static final MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+	private final Class<T> type;
+	private final MethodHandle constructor;
+	private final Property[] readable;
+	private final Property[] writable;
+	private final Map<String, Property> byName = new HashMap<>();
+
+	/**
+	 * Resolves the constructor and every configurable field of a type.
+	 *
+	 * @param type the type to be bound
+	 */
+	ReflectiveBinder(Class<T> type) {
+		this.type = type;
+		this.constructor = findConstructor(type);
+
+		List<Property> readable = new ArrayList<>();
+		List<Property> writable = new ArrayList<>();
+		for(Field field : type.getDeclaredFields()) {
+			if(Modifier.isStatic(field.getModifiers()) || field.isAnnotationPresent(Unconfigurable.class)) continue;
+			boolean configurable = field.isAnnotationPresent(Configurable.class);
+			if(!configurable && !Modifier.isPublic(field.getModifiers())) continue;
+
+			Property property = createProperty(field);
+			if(property == null) continue;
+			readable.add(property);
+			byName.put(property.name, property);
+			if(configurable) {
+				writable.add(property);
+			}
+		}
+		this.readable = readable.toArray(new Property[readable.size()]);
+		this.writable = writable.toArray(new Property[writable.size()]);
+	}
+
+	private static MethodHandle findConstructor(Class<?> type) {
+		try {
+			Constructor<?> ctor = type.getDeclaredConstructor();
+			ctor.setAccessible(true);
+			return lookup.unreflectConstructor(ctor).asType(MethodType.methodType(Object.class));
+		} catch (NoSuchMethodException e) {
+			logger.log(Level.SEVERE, type.getName() + " has no constructor without arguments and cannot be configured");
+		} catch (IllegalAccessException | SecurityException e) {
+			e.printStackTrace();
+		}
+		return null;
+	}
+
+	private static Property createProperty(Field field) {
+		try {
+			field.setAccessible(true);
+			MethodHandle getter = lookup.unreflectGetter(field);
+			MethodHandle setter = lookup.unreflectSetter(field);
+			String name = field.getName();
+			switch(field.getType().getName()) {
+			case "double":
+				return new DoubleProperty(name, getter, setter);
+			case "float":
+				return new FloatProperty(name, getter, setter);
+			case "long":
+				return new LongProperty(name, getter, setter);
+			case "int":
+				return new IntProperty(name, getter, setter);
+			case "boolean":
+				return new BooleanProperty(name, getter, setter);
+			default:
+				return new ObjectProperty(name, getter, setter, Converters.get(field.getGenericType()));
+			}
+		} catch (IllegalAccessException | IllegalArgumentException | SecurityException e) {
+			logger.log(Level.SEVERE, "Cannot configure " + field, e);
+			return null;
+		}
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public T read(JsonObject json) {
+		if(constructor == null) return null;
+		T instance;
+		try {
+			instance = (T) (Object) constructor.invokeExact();
+		} catch (Throwable e) {
+			logger.log(Level.SEVERE, "Could not create " + type.getName(), e);
+			return null;
+		}
+		for(Property property : readable) {
+			JsonValue value = json.get(property.name);
+			if(value == null) continue;
+			try {
+				property.read(instance, value);
+			} catch (Throwable e) {
+				logger.log(Level.SEVERE, "Could not configure " + type.getName() + "." + property.name, e);
+			}
+		}
+		return instance;
+	}
+
+	/**
+	 * Reads an object while it is parsed. Unlike {@link #read(JsonObject)}, a value which cannot be converted stops
+	 * the whole object being read, as the parser cannot be moved past it.
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public T read(JsonParser parser) {
+		if(constructor == null) {
+			JsonEvents.skip(parser, Event.START_OBJECT);
+			return null;
+		}
+		T instance;
+		try {
+			instance = (T) (Object) constructor.invokeExact();
+		} catch (Throwable e) {
+			logger.log(Level.SEVERE, "Could not create " + type.getName(), e);
+			JsonEvents.skip(parser, Event.START_OBJECT);
+			return null;
+		}
+		while(parser.next() != Event.END_OBJECT) {
+			Property property = byName.get(parser.getString());
+			Event event = parser.next();
+			if(property == null) {
+				JsonEvents.skip(parser, event);
+				continue;
+			}
+			try {
+				property.read(instance, parser, event);
+			} catch (RuntimeException e) {
+				throw e;
+			} catch (Throwable e) {
+				throw new IllegalStateException("Could not configure " + type.getName() + "." + property.name, e);
+			}
+		}
+		return instance;
+	}
+
+	@Override
+	public JsonObjectBuilder write(T instance) {
+		return write(instance, writable);
+	}
+
+	@Override
+	public JsonObjectBuilder writeAll(T instance) {
+		return write(instance, readable);
+	}
+
+	private JsonObjectBuilder write(T instance, Property[] properties) {
+		JsonObjectBuilder builder = Json.createObjectBuilder();
+		for(Property property : properties) {
+			try {
+				property.write(instance, builder);
+			} catch (Throwable e) {
+				logger.log(Level.SEVERE, "Could not write " + type.getName() + "." + property.name, e);
+			}
+		}
+		return builder;
+	}
+
+	/**
+	 * A single configurable field.
+	 */
+	private static abstract class Property {
+		protected final String name;
+
+		protected Property(String name) {
+			this.name = name;
+		}
+
+		abstract void read(Object instance, JsonValue value) throws Throwable;
+
+		abstract void read(Object instance, JsonParser parser, Event event) throws Throwable;
+
+		abstract void write(Object instance, JsonObjectBuilder builder) throws Throwable;
+	}
+
+	// Primitive fields have their own properties so values are never boxed
+
+	private static class DoubleProperty extends Property {
+		private final MethodHandle getter;
+		private final MethodHandle setter;
+
+		private DoubleProperty(String name, MethodHandle getter, MethodHandle setter) {
+			super(name);
+			this.getter = getter.asType(MethodType.methodType(double.class, Object.class));
+			this.setter = setter.asType(MethodType.methodType(void.class, Object.class, double.class));
+		}
+
+		@Override
+		void read(Object instance, JsonValue value) throws Throwable {
+			if(value.getValueType() == JsonValue.ValueType.NULL) return;
+			setter.invokeExact(instance, ((JsonNumber) value).doubleValue());
+		}
+
+		@Override
+		void read(Object instance, JsonParser parser, Event event) throws Throwable {
+			if(event == Event.VALUE_NULL) return;
+			setter.invokeExact(instance, JsonEvents.toDouble(parser, event));
+		}
+
+		@Override
+		void write(Object instance, JsonObjectBuilder builder) throws Throwable {
+			builder.add(name, (double) getter.invokeExact(instance));
+		}
+	}
+
+	private static class FloatProperty extends Property {
+		private final MethodHandle getter;
+		private final MethodHandle setter;
+
+		private FloatProperty(String name, MethodHandle getter, MethodHandle setter) {
+			super(name);
+			this.getter = getter.asType(MethodType.methodType(float.class, Object.class));
+			this.setter = setter.asType(MethodType.methodType(void.class, Object.class, float.class));
+		}
+
+		@Override
+		void read(Object instance, JsonValue value) throws Throwable {
+			if(value.getValueType() == JsonValue.ValueType.NULL) return;
+			setter.invokeExact(instance, (float) ((JsonNumber) value).doubleValue());
+		}
+
+		@Override
+		void read(Object instance, JsonParser parser, Event event) throws Throwable {
+			if(event == Event.VALUE_NULL) return;
+			setter.invokeExact(instance, (float) JsonEvents.toDouble(parser, event));
+		}
+
+		@Override
+		void write(Object instance, JsonObjectBuilder builder) throws Throwable {
+			builder.add(name, (float) getter.invokeExact(instance));
+		}
+	}
+
+	private static class LongProperty extends Property {
+		private final MethodHandle getter;
+		private final MethodHandle setter;
+
+		private LongProperty(String name, MethodHandle getter, MethodHandle setter) {
+			super(name);
+			this.getter = getter.asType(MethodType.methodType(long.class, Object.class));
+			this.setter = setter.asType(MethodType.methodType(void.class, Object.class, long.class));
+		}
+
+		@Override
+		void read(Object instance, JsonValue value) throws Throwable {
+			if(value.getValueType() == JsonValue.ValueType.NULL) return;
+			setter.invokeExact(instance, ((JsonNumber) value).longValue());
+		}
+
+		@Override
+		void read(Object instance, JsonParser parser, Event event) throws Throwable {
+			if(event == Event.VALUE_NULL) return;
+			setter.invokeExact(instance, JsonEvents.toLong(parser, event));
+		}
+
+		@Override
+		void write(Object instance, JsonObjectBuilder builder) throws Throwable {
+			builder.add(name, (long) getter.invokeExact(instance));
+		}
+	}
+
+	private static class IntProperty extends Property {
+		private final MethodHandle getter;
+		private final MethodHandle setter;
+
+		private IntProperty(String name, MethodHandle getter, MethodHandle setter) {
+			super(name);
+			this.getter = getter.asType(MethodType.methodType(int.class, Object.class));
+			this.setter = setter.asType(MethodType.methodType(void.class, Object.class, int.class));
+		}
+
+		@Override
+		void read(Object instance, JsonValue value) throws Throwable {
+			if(value.getValueType() == JsonValue.ValueType.NULL) return;
+			setter.invokeExact(instance, ((JsonNumber) value).intValue());
+		}
+
+		@Override
+		void read(Object instance, JsonParser parser, Event event) throws Throwable {
+			if(event == Event.VALUE_NULL) return;
+			setter.invokeExact(instance, JsonEvents.toInt(parser, event));
+		}
+
+		@Override
+		void write(Object instance, JsonObjectBuilder builder) throws Throwable {
+			builder.add(name, (int) getter.invokeExact(instance));
+		}
+	}
+
+	private static class BooleanProperty extends Property {
+		private final MethodHandle getter;
+		private final MethodHandle setter;
+
+		private BooleanProperty(String name, MethodHandle getter, MethodHandle setter) {
+			super(name);
+			this.getter = getter.asType(MethodType.methodType(boolean.class, Object.class));
+			this.setter = setter.asType(MethodType.methodType(void.class, Object.class, boolean.class));
+		}
+
+		@Override
+		void read(Object instance, JsonValue value) throws Throwable {
+			if(value.getValueType() == JsonValue.ValueType.NULL) return;
+			setter.invokeExact(instance, Converters.toBoolean(value));
+		}
+
+		@Override
+		void read(Object instance, JsonParser parser, Event event) throws Throwable {
+			if(event == Event.VALUE_NULL) return;
+			setter.invokeExact(instance, JsonEvents.toBoolean(parser, event));
+		}
+
+		@Override
+		void write(Object instance, JsonObjectBuilder builder) throws Throwable {
+			builder.add(name, (boolean) getter.invokeExact(instance));
+		}
+	}
+
+	private static class ObjectProperty extends Property {
+		private final MethodHandle getter;
+		private final MethodHandle setter;
+		private final Converter<Object> converter;
+
+		@SuppressWarnings("unchecked")
+		private ObjectProperty(String name, MethodHandle getter, MethodHandle setter, Converter<?> converter) {
+			super(name);
+			this.getter = getter.asType(MethodType.methodType(Object.class, Object.class));
+			this.setter = setter.asType(MethodType.methodType(void.class, Object.class, Object.class));
+			this.converter = (Converter<Object>) converter;
+		}
+
+		@Override
+		void read(Object instance, JsonValue value) throws Throwable {
+			setter.invokeExact(instance, value.getValueType() == JsonValue.ValueType.NULL ? null : converter.read(value));
+		}
+
+		@Override
+		void read(Object instance, JsonParser parser, Event event) throws Throwable {
+			setter.invokeExact(instance, event == Event.VALUE_NULL ? null : converter.read(parser, event));
+		}
+
+		@Override
+		void write(Object instance, JsonObjectBuilder builder) throws Throwable {
+			Object value = (Object) getter.invokeExact(instance);
+			if(value == null) {
+				builder.add(name, JsonValue.NULL);
+			} else {
+				converter.write(value, builder, name);
+			}
+		}
+	}
+}
@@ -0,0 +1,89 @@
+package org.teamresistance.core.configuration;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * An object read from a {@link Configuration} which is replaced when the configuration file changes.
+ *
+ * <p>When a watched configuration file is edited, a new instance is read on a background thread and waits until
+ * the next call to {@link Configuration#update()}, which the robot makes at the start of a cycle. Only then does
+ * {@link #get()} return it and are the listeners told, so the value never changes part way through a cycle. Instances
+ * are never changed after they have been read, and should be treated as immutable by everything using them.
+ *
+ * @param <T> the type of the object
+ */
+public class Setting<T> {
+
+	private final Class<T> type;
+	private final String token;
+	private final List<Listener<? super T>> listeners = new CopyOnWriteArrayList<>();
+	private volatile T value;
+
+	Setting(Class<T> type, String token, T value) {
+		this.type = type;
+		this.token = token;
+		this.value = value;
+	}
+
+	/**
+	 * Returns the latest instance read from the configuration.
+	 *
+	 * @return the latest instance, or null if it could not be read
+	 */
+	public T get() {
+		return value;
+	}
+
+	public Class<T> getType() {
+		return type;
+	}
+
+	public String getToken() {
+		return token;
+	}
+
+	/**
+	 * Adds a listener which is told about every new instance, on the thread which calls {@link Configuration#update()}.
+	 *
+	 * @param listener the listener
+	 */
+	public void addListener(Listener<? super T> listener) {
+		listeners.add(listener);
+	}
+
+	public void removeListener(Listener<? super T> listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Makes a new instance the current one, without telling the listeners yet.
+	 */
+	void set(Object next) {
+		value = type.cast(next);
+	}
+
+	/**
+	 * Tells the listeners about the current instance.
+	 */
+	void fireChanged() {
+		T current = value;
+		for(Listener<? super T> listener : listeners) {
+			listener.changed(current);
+		}
+	}
+
+	/**
+	 * Told when a setting is replaced because its configuration file changed.
+	 *
+	 * @param <T> the type of the object
+	 */
+	public interface Listener<T> {
+		/**
+		 * Called at the start of a cycle with the new instance.
+		 *
+		 * @param value the new instance
+		 */
+		void changed(T value);
+	}
+}
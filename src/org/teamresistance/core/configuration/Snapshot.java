@@ -0,0 +1,350 @@
+package org.teamresistance.core.configuration;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.json.JsonArray;
+import javax.json.JsonNumber;
+import javax.json.JsonObject;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+import javax.json.stream.JsonParser.Event;
+
+/**
+ * A binary copy of the objects read from a configuration file, which is read in place of the file on later starts
+ * while the file is unchanged.
+ *
+ * <p>The snapshot holds the hash of the file it was written from, and is ignored as a whole once the file changes.
+ * Each object in it is kept with a fingerprint of the fields of its type and of every configurable type inside it,
+ * so an object is read from the file again after its class changes. Changes the fields do not show, such as a setter
+ * which now converts its value, are marked by raising {@link Configurable#version()}.
+ */
+class Snapshot {
+
+	private static Logger logger = Logger.getLogger(Snapshot.class.getName());
+
+	private static final int MAGIC = 0x54524353;
+	private static final byte FORMAT = 2;
+
+	private static final ThreadLocal<Boolean> writing = new ThreadLocal<>();
+
+	private static final Map<Class<?>, Long> fingerprints = new ConcurrentHashMap<>();
+
+	private final File file;
+	private final byte[] hash;
+	private final Map<String, Entry> entries = new HashMap<>();
+	private boolean changed;
+
+	private Snapshot(File file, byte[] hash) {
+		this.file = file;
+		this.hash = hash;
+	}
+
+	/**
+	 * Opens the snapshot of a configuration file. Its objects are only kept if it was written from the same contents
+	 * as the file has now.
+	 *
+	 * @param source the configuration file
+	 * @param file the snapshot file, which does not have to exist
+	 * @return the snapshot, or null if the configuration file could not be read
+	 */
+	static Snapshot open(File source, File file) {
+		Snapshot snapshot;
+		try (InputStream in = new FileInputStream(source)) {
+			MessageDigest digest = digest();
+			byte[] buffer = new byte[8192];
+			int read;
+			while((read = in.read(buffer)) > 0) {
+				digest.update(buffer, 0, read);
+			}
+			snapshot = new Snapshot(file, digest.digest());
+		} catch (IOException e) {
+			logger.log(Level.WARNING, "Could not read " + source, e);
+			return null;
+		}
+
+		if(file.isFile()) {
+			try {
+				snapshot.load();
+			} catch (IOException | RuntimeException e) {
+				logger.log(Level.WARNING, "Ignoring unreadable snapshot " + file, e);
+				snapshot.entries.clear();
+			}
+		}
+		return snapshot;
+	}
+
+	private void load() throws IOException {
+		ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+		if(in.getInt() != MAGIC || in.get() != FORMAT) {
+			logger.log(Level.INFO, file + " is not a snapshot this version can read");
+			return;
+		}
+		byte[] written = new byte[in.getShort()];
+		in.get(written);
+		if(!Arrays.equals(written, hash)) {
+			logger.log(Level.INFO, file + " was written from an older configuration file");
+			return;
+		}
+		for(int count = in.getInt(); count > 0; count--) {
+			String token = SnapshotParser.readString(in);
+			String type = SnapshotParser.readString(in);
+			long fingerprint = in.getLong();
+			int length = in.getInt();
+			entries.put(token, new Entry(type, fingerprint, in.array(), in.position(), length));
+			in.position(in.position() + length);
+		}
+	}
+
+	/**
+	 * Reads an object from the snapshot.
+	 *
+	 * @return the object, or null if the snapshot does not hold it for the current version of its type
+	 */
+	<T> T get(Class<T> type, String token) {
+		Entry entry = entries.get(token);
+		if(entry == null || !entry.type.equals(type.getName()) || entry.fingerprint != fingerprint(type)) {
+			return null;
+		}
+		try {
+			SnapshotParser parser = new SnapshotParser(ByteBuffer.wrap(entry.data, entry.offset, entry.length));
+			JsonEvents.expect(parser, parser.next(), Event.START_OBJECT);
+			return Configuration.getBinder(type).read(parser);
+		} catch (RuntimeException e) {
+			logger.log(Level.WARNING, "Could not read \"" + token + "\" from " + file, e);
+			entries.remove(token);
+			return null;
+		}
+	}
+
+	/**
+	 * Adds an object read from the configuration file to the snapshot, which is written by the next {@link #save()}.
+	 */
+	@SuppressWarnings("unchecked")
+	void put(Class<?> type, String token, Object instance) {
+		writing.set(Boolean.TRUE);
+		try {
+			JsonObject json = ((Binder<Object>) Configuration.getBinder(type)).writeAll(instance).build();
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			write(new DataOutputStream(bytes), json);
+			byte[] data = bytes.toByteArray();
+			entries.put(token, new Entry(type.getName(), fingerprint(type), data, 0, data.length));
+			changed = true;
+		} catch (IOException | RuntimeException e) {
+			logger.log(Level.WARNING, "Could not snapshot \"" + token + "\"", e);
+		} finally {
+			writing.remove();
+		}
+	}
+
+	/**
+	 * Returns whether the current thread is writing an object into a snapshot, in which case nested objects are written
+	 * with {@link Binder#writeAll(Object)}.
+	 */
+	static boolean isWriting() {
+		return writing.get() != null;
+	}
+
+	/**
+	 * Writes the snapshot if objects have been added to it. It is written next to the snapshot file and then moved over
+	 * it, so the robot stopping part way through never leaves a broken snapshot behind.
+	 *
+	 * @return whether the snapshot was written
+	 */
+	boolean save() {
+		if(!changed) return false;
+		File temp = new File(file.getPath() + ".tmp");
+		try {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+				out.writeInt(MAGIC);
+				out.writeByte(FORMAT);
+				out.writeShort(hash.length);
+				out.write(hash);
+				out.writeInt(entries.size());
+				for(Map.Entry<String, Entry> member : entries.entrySet()) {
+					Entry entry = member.getValue();
+					writeString(out, member.getKey());
+					writeString(out, entry.type);
+					out.writeLong(entry.fingerprint);
+					out.writeInt(entry.length);
+					out.write(entry.data, entry.offset, entry.length);
+				}
+			}
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			logger.log(Level.WARNING, "Could not write snapshot " + file, e);
+			return false;
+		}
+		changed = false;
+		return true;
+	}
+
+	private static void write(DataOutputStream out, JsonValue value) throws IOException {
+		switch(value.getValueType()) {
+		case OBJECT:
+			out.writeByte(SnapshotParser.START_OBJECT);
+			for(Map.Entry<String, JsonValue> member : ((JsonObject) value).entrySet()) {
+				out.writeByte(SnapshotParser.KEY_NAME);
+				writeString(out, member.getKey());
+				write(out, member.getValue());
+			}
+			out.writeByte(SnapshotParser.END_OBJECT);
+			break;
+		case ARRAY:
+			out.writeByte(SnapshotParser.START_ARRAY);
+			for(JsonValue element : (JsonArray) value) {
+				write(out, element);
+			}
+			out.writeByte(SnapshotParser.END_ARRAY);
+			break;
+		case STRING:
+			out.writeByte(SnapshotParser.STRING);
+			writeString(out, ((JsonString) value).getString());
+			break;
+		case NUMBER:
+			writeNumber(out, ((JsonNumber) value).bigDecimalValue());
+			break;
+		case TRUE:
+			out.writeByte(SnapshotParser.TRUE);
+			break;
+		case FALSE:
+			out.writeByte(SnapshotParser.FALSE);
+			break;
+		default:
+			out.writeByte(SnapshotParser.NULL);
+			break;
+		}
+	}
+
+	/**
+	 * Writes a number as a long or double when that keeps its exact value, and as text otherwise.
+	 */
+	private static void writeNumber(DataOutputStream out, BigDecimal number) throws IOException {
+		if(number.scale() == 0 && number.unscaledValue().bitLength() < 64) {
+			out.writeByte(SnapshotParser.LONG);
+			out.writeLong(number.longValue());
+		} else if(number.scale() != 0 && BigDecimal.valueOf(number.doubleValue()).compareTo(number) == 0) {
+			out.writeByte(SnapshotParser.DOUBLE);
+			out.writeDouble(number.doubleValue());
+		} else {
+			out.writeByte(SnapshotParser.DECIMAL);
+			writeString(out, number.toString());
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String string) throws IOException {
+		byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * Returns a fingerprint of the configurable fields of a type and of every type they hold.
+	 */
+	static long fingerprint(Class<?> type) {
+		Long fingerprint = fingerprints.get(type);
+		if(fingerprint == null) {
+			StringBuilder schema = new StringBuilder();
+			describe(type, schema, new HashSet<>());
+			fingerprint = ByteBuffer.wrap(digest().digest(schema.toString().getBytes(StandardCharsets.UTF_8))).getLong();
+			fingerprints.put(type, fingerprint);
+		}
+		return fingerprint;
+	}
+
+	private static void describe(Type type, StringBuilder schema, Set<Class<?>> seen) {
+		if(type instanceof ParameterizedType) {
+			describe(((ParameterizedType) type).getRawType(), schema, seen);
+			for(Type argument : ((ParameterizedType) type).getActualTypeArguments()) {
+				describe(argument, schema, seen);
+			}
+			return;
+		}
+		if(type instanceof GenericArrayType) {
+			describe(((GenericArrayType) type).getGenericComponentType(), schema, seen);
+			return;
+		}
+		if(!(type instanceof Class)) return;
+
+		Class<?> c = (Class<?>) type;
+		if(c.isArray()) {
+			describe(c.getComponentType(), schema, seen);
+			return;
+		}
+		if(c.isPrimitive() || !seen.add(c)) return;
+
+		schema.append(c.getName());
+		Configurable configurable = c.getAnnotation(Configurable.class);
+		if(configurable != null) {
+			schema.append('#').append(configurable.version()).append('{');
+			Field[] fields = c.getDeclaredFields();
+			Arrays.sort(fields, Comparator.comparing(Field::getName));
+			for(Field field : fields) {
+				int modifiers = field.getModifiers();
+				if(Modifier.isStatic(modifiers) || field.isAnnotationPresent(Unconfigurable.class)) continue;
+				boolean writable = field.isAnnotationPresent(Configurable.class);
+				if(!writable && !Modifier.isPublic(modifiers)) continue;
+				schema.append(writable ? '+' : '-').append(field.getName()).append(':')
+						.append(field.getGenericType().getTypeName()).append(';');
+				describe(field.getGenericType(), schema, seen);
+			}
+			schema.append('}');
+		} else if(c.isEnum()) {
+			schema.append(Arrays.toString(c.getEnumConstants()));
+		}
+		schema.append(';');
+	}
+
+	private static MessageDigest digest() {
+		try {
+			return MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			// Every Java platform has SHA-1
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static class Entry {
+		final String type;
+		final long fingerprint;
+		final byte[] data;
+		final int offset;
+		final int length;
+
+		Entry(String type, long fingerprint, byte[] data, int offset, int length) {
+			this.type = type;
+			this.fingerprint = fingerprint;
+			this.data = data;
+			this.offset = offset;
+			this.length = length;
+		}
+	}
+}
@@ -0,0 +1,176 @@
+package org.teamresistance.core.configuration;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.NoSuchElementException;
+
+import javax.json.stream.JsonLocation;
+import javax.json.stream.JsonParser;
+import javax.json.stream.JsonParsingException;
+
+/**
+ * Reads a value written by {@link Snapshot} as parser events, so binders read snapshots the same way they stream JSON.
+ * Every event is one tag byte, followed by the name or value it carries. Numbers are stored as the primitive they were
+ * written from and read back directly, without being formatted or parsed as text.
+ */
+class SnapshotParser implements JsonParser {
+
+	static final byte START_OBJECT = 1;
+	static final byte END_OBJECT = 2;
+	static final byte START_ARRAY = 3;
+	static final byte END_ARRAY = 4;
+	static final byte KEY_NAME = 5;
+	static final byte STRING = 6;
+	static final byte LONG = 7;
+	static final byte DOUBLE = 8;
+	static final byte DECIMAL = 9;
+	static final byte TRUE = 10;
+	static final byte FALSE = 11;
+	static final byte NULL = 12;
+
+	private final ByteBuffer in;
+	private Event event;
+	private int depth;
+	private byte number;
+	private String string;
+	private long integral;
+	private double real;
+	private BigDecimal decimal;
+
+	SnapshotParser(ByteBuffer in) {
+		this.in = in;
+	}
+
+	@Override
+	public boolean hasNext() {
+		return (event == null || depth > 0) && in.hasRemaining();
+	}
+
+	@Override
+	public Event next() {
+		if(!hasNext()) throw new NoSuchElementException();
+		byte tag = in.get();
+		switch(tag) {
+		case START_OBJECT:
+			depth++;
+			return event = Event.START_OBJECT;
+		case END_OBJECT:
+			depth--;
+			return event = Event.END_OBJECT;
+		case START_ARRAY:
+			depth++;
+			return event = Event.START_ARRAY;
+		case END_ARRAY:
+			depth--;
+			return event = Event.END_ARRAY;
+		case KEY_NAME:
+			string = readString(in);
+			return event = Event.KEY_NAME;
+		case STRING:
+			string = readString(in);
+			return event = Event.VALUE_STRING;
+		case LONG:
+			integral = in.getLong();
+			break;
+		case DOUBLE:
+			real = in.getDouble();
+			break;
+		case DECIMAL:
+			decimal = new BigDecimal(readString(in));
+			break;
+		case TRUE:
+			return event = Event.VALUE_TRUE;
+		case FALSE:
+			return event = Event.VALUE_FALSE;
+		case NULL:
+			return event = Event.VALUE_NULL;
+		default:
+			throw new JsonParsingException("Unknown snapshot tag " + tag, getLocation());
+		}
+		number = tag;
+		return event = Event.VALUE_NUMBER;
+	}
+
+	@Override
+	public String getString() {
+		switch(event) {
+		case KEY_NAME:
+		case VALUE_STRING:
+			return string;
+		case VALUE_NUMBER:
+			return number == LONG ? Long.toString(integral) : number == DOUBLE ? Double.toString(real) : decimal.toString();
+		default:
+			throw new IllegalStateException("No string for " + event);
+		}
+	}
+
+	@Override
+	public boolean isIntegralNumber() {
+		expectNumber();
+		return number == LONG || (number == DECIMAL && decimal.scale() == 0);
+	}
+
+	@Override
+	public int getInt() {
+		expectNumber();
+		return number == LONG ? (int) integral : number == DOUBLE ? (int) real : decimal.intValue();
+	}
+
+	@Override
+	public long getLong() {
+		expectNumber();
+		return number == LONG ? integral : number == DOUBLE ? (long) real : decimal.longValue();
+	}
+
+	/**
+	 * Returns the current number as a double without going through its text, which {@link JsonEvents} uses in place of
+	 * parsing {@link #getString()}.
+	 */
+	double getDouble() {
+		expectNumber();
+		return number == LONG ? integral : number == DOUBLE ? real : decimal.doubleValue();
+	}
+
+	@Override
+	public BigDecimal getBigDecimal() {
+		expectNumber();
+		return number == LONG ? BigDecimal.valueOf(integral) : number == DOUBLE ? BigDecimal.valueOf(real) : decimal;
+	}
+
+	private void expectNumber() {
+		if(event != Event.VALUE_NUMBER) throw new IllegalStateException("No number for " + event);
+	}
+
+	@Override
+	public JsonLocation getLocation() {
+		final long offset = in.position();
+		return new JsonLocation() {
+			@Override
+			public long getLineNumber() {
+				return -1;
+			}
+
+			@Override
+			public long getColumnNumber() {
+				return -1;
+			}
+
+			@Override
+			public long getStreamOffset() {
+				return offset;
+			}
+		};
+	}
+
+	@Override
+	public void close() {
+	}
+
+	static String readString(ByteBuffer in) {
+		int length = in.getInt();
+		String string = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+		in.position(in.position() + length);
+		return string;
+	}
+}
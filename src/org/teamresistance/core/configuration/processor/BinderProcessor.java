@@ -0,0 +1,486 @@
+package org.teamresistance.core.configuration.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+
+/**
+ * Writes a {@link org.teamresistance.core.configuration.GeneratedBinder} for every type marked
+ * {@link org.teamresistance.core.configuration.Configurable} while the code is compiled, so the robot does not have to
+ * find the fields of configured types by reflection when it starts.
+ *
+ * <p>A generated binder sets fields directly when it can, and otherwise through a setter such as {@code setX}. Types
+ * without a constructor which takes no arguments are created with the constructor whose parameters are named after
+ * their configurable fields, such as {@code Vector2d(double x, double y)}, with zero or null passed for a field which
+ * is missing from the JSON. A type which cannot be bound without reflection is reported with a note and left to
+ * {@link org.teamresistance.core.configuration.Configuration}'s reflective binder, as is any type compiled without the
+ * processor.
+ *
+ * <p>The processor is run by the {@code binders} target of the Ant build, which writes the binders next to the types
+ * they bind.
+ *
+ */
+public class BinderProcessor extends AbstractProcessor {
+
+	private static final String CONFIGURABLE = "org.teamresistance.core.configuration.Configurable";
+	private static final String UNCONFIGURABLE = "org.teamresistance.core.configuration.Unconfigurable";
+
+	@Override
+	public Set<String> getSupportedAnnotationTypes() {
+		return Collections.singleton(CONFIGURABLE);
+	}
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment round) {
+		TypeElement configurable = processingEnv.getElementUtils().getTypeElement(CONFIGURABLE);
+		if(configurable == null) return false;
+		for(Element element : round.getElementsAnnotatedWith(configurable)) {
+			if(element.getKind() != ElementKind.CLASS) continue;
+			TypeElement type = (TypeElement) element;
+			String reason = generate(type);
+			if(reason != null) {
+				processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+						"No binder generated for " + type.getQualifiedName() + ": " + reason + "; reflection will be used",
+						type);
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Writes the binder for a type.
+	 *
+	 * @return why no binder could be written, or null if it was
+	 */
+	private String generate(TypeElement type) {
+		if(type.getModifiers().contains(Modifier.ABSTRACT)) return "it is abstract";
+		if(!type.getTypeParameters().isEmpty()) return "it is generic";
+		for(Element outer = type; outer.getKind() == ElementKind.CLASS; outer = outer.getEnclosingElement()) {
+			if(outer.getModifiers().contains(Modifier.PRIVATE)) return "it is private";
+			TypeElement element = (TypeElement) outer;
+			if(element.getNestingKind() == NestingKind.MEMBER && !element.getModifiers().contains(Modifier.STATIC)) {
+				return "it is an inner class";
+			}
+			if(element.getNestingKind() != NestingKind.MEMBER) break;
+		}
+
+		List<Property> properties = new ArrayList<>();
+		for(VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+			Set<Modifier> modifiers = field.getModifiers();
+			if(modifiers.contains(Modifier.STATIC) || hasAnnotation(field, UNCONFIGURABLE)) continue;
+			boolean writable = hasAnnotation(field, CONFIGURABLE);
+			if(!writable && !modifiers.contains(Modifier.PUBLIC)) continue;
+
+			Property property = new Property(field, writable);
+			if(property.kind == null) return "field " + property.name + " has a type which is not supported";
+			properties.add(property);
+		}
+
+		// Uses the constructor without arguments, or else the one with the most parameters named after fields
+		ExecutableElement constructor = null;
+		List<Property> arguments = null;
+		for(ExecutableElement candidate : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+			if(candidate.getModifiers().contains(Modifier.PRIVATE)) continue;
+			List<Property> matched = match(candidate, properties);
+			if(matched == null) continue;
+			if(matched.isEmpty()) {
+				constructor = candidate;
+				arguments = matched;
+				break;
+			}
+			if(arguments == null || matched.size() > arguments.size()) {
+				constructor = candidate;
+				arguments = matched;
+			}
+		}
+		if(constructor == null) return "no constructor takes no arguments or only configurable fields";
+
+		for(Property property : properties) {
+			if(!arguments.contains(property) && property.setter == null) {
+				return "field " + property.name + " cannot be set";
+			}
+			if(property.getter == null) {
+				return "field " + property.name + " cannot be read";
+			}
+		}
+
+		String name = getBinderName(type);
+		String pkg = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+		String simpleName = name.substring(name.lastIndexOf('.') + 1);
+		String typeName = type.getQualifiedName().toString();
+		try {
+			Filer filer = processingEnv.getFiler();
+			try (Writer writer = filer.createSourceFile(name, type).openWriter()) {
+				writer.write(write(pkg, simpleName, typeName, properties, arguments));
+			}
+		} catch (IOException e) {
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Could not write " + name + ": " + e, type);
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the properties passed to each parameter of a constructor, or null if a parameter is not a property.
+	 */
+	private List<Property> match(ExecutableElement constructor, List<Property> properties) {
+		List<Property> matched = new ArrayList<>();
+		Types types = processingEnv.getTypeUtils();
+		for(VariableElement parameter : constructor.getParameters()) {
+			Property found = null;
+			for(Property property : properties) {
+				if(property.name.equals(parameter.getSimpleName().toString())
+						&& types.isSameType(property.type, parameter.asType())) {
+					found = property;
+				}
+			}
+			if(found == null || matched.contains(found)) return null;
+			matched.add(found);
+		}
+		return matched;
+	}
+
+	private String write(String pkg, String simpleName, String typeName, List<Property> properties,
+			List<Property> arguments) {
+		StringBuilder out = new StringBuilder();
+		if(!pkg.isEmpty()) {
+			out.append("package ").append(pkg).append(";\n\n");
+		}
+		out.append("import javax.json.Json;\n");
+		out.append("import javax.json.JsonObject;\n");
+		out.append("import javax.json.JsonObjectBuilder;\n");
+		out.append("import javax.json.JsonValue;\n");
+		out.append("import javax.json.stream.JsonParser;\n");
+		out.append("import javax.json.stream.JsonParser.Event;\n\n");
+		boolean converters = false;
+		for(Property property : properties) {
+			converters |= property.kind == Kind.OBJECT;
+		}
+		if(converters) {
+			out.append("import org.teamresistance.core.configuration.Converter;\n");
+			out.append("import org.teamresistance.core.configuration.Converters;\n");
+		}
+		out.append("import org.teamresistance.core.configuration.GeneratedBinder;\n\n");
+		out.append("/**\n * Binds {@link ").append(typeName).append("}. Written by ")
+				.append(BinderProcessor.class.getSimpleName()).append(", do not edit.\n */\n");
+		out.append("public final class ").append(simpleName).append(" extends GeneratedBinder<").append(typeName)
+				.append("> {\n");
+
+		if(converters) {
+			out.append("\n");
+		}
+		for(int i = 0; i < properties.size(); i++) {
+			Property property = properties.get(i);
+			if(property.kind == Kind.OBJECT) {
+				out.append("\tprivate final Converter<").append(property.typeName).append("> value").append(i)
+						.append(" = ").append(property.converter).append(";\n");
+			}
+		}
+
+		out.append("\n\t@Override\n\tpublic ").append(typeName).append(" read(JsonObject json) {\n");
+		out.append("\t\tJsonValue value;\n");
+		for(Property property : arguments) {
+			int index = properties.indexOf(property);
+			out.append("\t\t").append(property.typeName).append(" _").append(property.name).append(" = ")
+					.append(property.kind.defaultValue).append(";\n");
+			out.append("\t\tvalue = json.get(\"").append(property.name).append("\");\n");
+			out.append("\t\tif(").append(property.condition()).append(") _").append(property.name).append(" = ")
+					.append(property.convert(index)).append(";\n");
+		}
+		out.append("\t\t").append(typeName).append(" instance = new ").append(typeName).append("(");
+		for(int i = 0; i < arguments.size(); i++) {
+			if(i > 0) out.append(", ");
+			out.append("_").append(arguments.get(i).name);
+		}
+		out.append(");\n");
+		for(int i = 0; i < properties.size(); i++) {
+			Property property = properties.get(i);
+			if(arguments.contains(property)) continue;
+			out.append("\t\tvalue = json.get(\"").append(property.name).append("\");\n");
+			out.append("\t\tif(").append(property.condition()).append(") ")
+					.append(String.format(property.setter, property.convert(i))).append(";\n");
+		}
+		out.append("\t\treturn instance;\n\t}\n");
+
+		// Values are kept in locals until the end of the object when the constructor takes them
+		boolean locals = !arguments.isEmpty();
+		out.append("\n\t@Override\n\tpublic ").append(typeName).append(" read(JsonParser parser) {\n");
+		if(locals) {
+			for(Property property : properties) {
+				out.append("\t\t").append(property.typeName).append(" _").append(property.name).append(" = ")
+						.append(property.kind.defaultValue).append(";\n");
+				if(!arguments.contains(property)) {
+					out.append("\t\tboolean _").append(property.name).append("Set = false;\n");
+				}
+			}
+		} else {
+			out.append("\t\t").append(typeName).append(" instance = new ").append(typeName).append("();\n");
+		}
+		out.append("\t\twhile(parser.next() != Event.END_OBJECT) {\n");
+		out.append("\t\t\tString name = parser.getString();\n");
+		out.append("\t\t\tEvent event = parser.next();\n");
+		out.append("\t\t\tswitch(name) {\n");
+		for(int i = 0; i < properties.size(); i++) {
+			Property property = properties.get(i);
+			out.append("\t\t\tcase \"").append(property.name).append("\":\n");
+			String condition = property.streamCondition();
+			String indent = "\t\t\t\t";
+			if(condition != null) {
+				out.append(indent).append("if(").append(condition).append(") {\n");
+				indent += "\t";
+			}
+			if(!locals) {
+				out.append(indent).append(String.format(property.setter, property.streamConvert(i))).append(";\n");
+			} else {
+				out.append(indent).append("_").append(property.name).append(" = ").append(property.streamConvert(i))
+						.append(";\n");
+				if(!arguments.contains(property)) {
+					out.append(indent).append("_").append(property.name).append("Set = true;\n");
+				}
+			}
+			if(condition != null) {
+				out.append("\t\t\t\t}\n");
+			}
+			out.append("\t\t\t\tbreak;\n");
+		}
+		out.append("\t\t\tdefault:\n\t\t\t\tskip(parser, event);\n\t\t\t\tbreak;\n\t\t\t}\n\t\t}\n");
+		if(locals) {
+			out.append("\t\t").append(typeName).append(" instance = new ").append(typeName).append("(");
+			for(int i = 0; i < arguments.size(); i++) {
+				if(i > 0) out.append(", ");
+				out.append("_").append(arguments.get(i).name);
+			}
+			out.append(");\n");
+			for(Property property : properties) {
+				if(arguments.contains(property)) continue;
+				out.append("\t\tif(_").append(property.name).append("Set) ")
+						.append(String.format(property.setter, "_" + property.name)).append(";\n");
+			}
+		}
+		out.append("\t\treturn instance;\n\t}\n");
+
+		writeMethod(out, "write", typeName, properties, false);
+		// Public fields which are read but not marked configurable are only left out of configuration files
+		for(Property property : properties) {
+			if(!property.writable) {
+				writeMethod(out, "writeAll", typeName, properties, true);
+				break;
+			}
+		}
+		out.append("}\n");
+		return out.toString();
+	}
+
+	private void writeMethod(StringBuilder out, String method, String typeName, List<Property> properties,
+			boolean all) {
+		out.append("\n\t@Override\n\tpublic JsonObjectBuilder ").append(method).append("(").append(typeName)
+				.append(" instance) {\n");
+		out.append("\t\tJsonObjectBuilder builder = Json.createObjectBuilder();\n");
+		for(int i = 0; i < properties.size(); i++) {
+			Property property = properties.get(i);
+			if(!all && !property.writable) continue;
+			out.append("\t\t");
+			switch(property.kind) {
+			case STRING:
+				out.append("add(builder, \"").append(property.name).append("\", ").append(property.getter).append(")");
+				break;
+			case OBJECT:
+				out.append("write(value").append(i).append(", ").append(property.getter).append(", builder, \"")
+						.append(property.name).append("\")");
+				break;
+			default:
+				out.append("builder.add(\"").append(property.name).append("\", ").append(property.getter).append(")");
+				break;
+			}
+			out.append(";\n");
+		}
+		out.append("\t\treturn builder;\n\t}\n");
+	}
+
+	/**
+	 * Returns the name of the binder for a type, matching
+	 * {@link org.teamresistance.core.configuration.GeneratedBinder#getBinderName(Class)}.
+	 */
+	private String getBinderName(TypeElement type) {
+		String binary = processingEnv.getElementUtils().getBinaryName(type).toString();
+		return binary.replace('$', '_') + "_Binder";
+	}
+
+	private static boolean hasAnnotation(Element element, String annotation) {
+		for(AnnotationMirror mirror : element.getAnnotationMirrors()) {
+			if(((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(annotation)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * How the value of a field is converted from JSON.
+	 */
+	private enum Kind {
+		DOUBLE("0", "toDouble(value)"),
+		FLOAT("0", "toFloat(value)"),
+		LONG("0", "toLong(value)"),
+		INT("0", "toInt(value)"),
+		BOOLEAN("false", "toBoolean(value)"),
+		STRING("null", "toString(value)"),
+		OBJECT("null", null);
+
+		private final String defaultValue;
+		private final String conversion;
+
+		private Kind(String defaultValue, String conversion) {
+			this.defaultValue = defaultValue;
+			this.conversion = conversion;
+		}
+	}
+
+	/**
+	 * A configurable field and how the generated binder gets and sets it.
+	 */
+	private class Property {
+		private final String name;
+		private final TypeMirror type;
+		private final String typeName;
+		// Expression for the converter of an object
+		private String converter;
+		private final Kind kind;
+		private final boolean writable;
+		// Expressions with the value as %s for the setter
+		private String setter;
+		private String getter;
+
+		private Property(VariableElement field, boolean writable) {
+			this.name = field.getSimpleName().toString();
+			this.type = field.asType();
+			this.typeName = type.toString();
+			this.kind = kind(type);
+			this.writable = writable;
+
+			Set<Modifier> modifiers = field.getModifiers();
+			if(!modifiers.contains(Modifier.PRIVATE)) {
+				getter = "instance." + name;
+				if(!modifiers.contains(Modifier.FINAL)) {
+					setter = "instance." + name + " = %s";
+				}
+			}
+			String suffix = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+			Types types = processingEnv.getTypeUtils();
+			for(ExecutableElement method : ElementFilter.methodsIn(field.getEnclosingElement().getEnclosedElements())) {
+				if(method.getModifiers().contains(Modifier.PRIVATE) || method.getModifiers().contains(Modifier.STATIC)) {
+					continue;
+				}
+				String methodName = method.getSimpleName().toString();
+				List<? extends VariableElement> parameters = method.getParameters();
+				if(setter == null && methodName.equals("set" + suffix) && parameters.size() == 1
+						&& types.isSameType(parameters.get(0).asType(), type)) {
+					setter = "instance." + methodName + "(%s)";
+				}
+				if(getter == null && parameters.isEmpty() && types.isSameType(method.getReturnType(), type)
+						&& (methodName.equals("get" + suffix) || kind == Kind.BOOLEAN && methodName.equals("is" + suffix))) {
+					getter = "instance." + methodName + "()";
+				}
+			}
+		}
+
+		private Kind kind(TypeMirror type) {
+			switch(type.getKind()) {
+			case DOUBLE:
+				return Kind.DOUBLE;
+			case FLOAT:
+				return Kind.FLOAT;
+			case LONG:
+				return Kind.LONG;
+			case INT:
+				return Kind.INT;
+			case BOOLEAN:
+				return Kind.BOOLEAN;
+			case ARRAY:
+			case DECLARED:
+				if(type.toString().equals("java.lang.String")) return Kind.STRING;
+				converter = converter(type);
+				return converter == null ? null : Kind.OBJECT;
+			default:
+				return null;
+			}
+		}
+
+		/**
+		 * Returns the expression for the converter of a type from {@code Converters}, or null if there is none.
+		 */
+		private String converter(TypeMirror type) {
+			Types types = processingEnv.getTypeUtils();
+			if(type.getKind() == TypeKind.ARRAY) {
+				return "Converters.get(" + types.erasure(type) + ".class)";
+			}
+			if(type.getKind() != TypeKind.DECLARED) return null;
+			List<? extends TypeMirror> arguments = ((DeclaredType) type).getTypeArguments();
+			if(arguments.isEmpty()) {
+				return "Converters.get(" + type + ".class)";
+			}
+			String raw = types.erasure(type).toString();
+			String element = converter(arguments.get(arguments.size() - 1));
+			if(element == null) return null;
+			if(raw.equals("java.util.List")) {
+				return "Converters.list(" + element + ")";
+			}
+			if(raw.equals("java.util.Set")) {
+				return "Converters.set(" + element + ")";
+			}
+			if(raw.equals("java.util.Map") && arguments.get(0).toString().equals("java.lang.String")) {
+				return "Converters.map(" + element + ")";
+			}
+			return null;
+		}
+
+		/**
+		 * Returns the condition under which a JSON value is set. Primitives keep their value when given null.
+		 */
+		private String condition() {
+			return kind == Kind.OBJECT || kind == Kind.STRING ? "value != null" : "isSet(value)";
+		}
+
+		private String convert(int index) {
+			return kind == Kind.OBJECT ? "read(value" + index + ", value)" : kind.conversion;
+		}
+
+		/**
+		 * Returns the condition under which a parsed value is set, or null if it always is.
+		 */
+		private String streamCondition() {
+			return kind == Kind.OBJECT || kind == Kind.STRING ? null : "event != Event.VALUE_NULL";
+		}
+
+		private String streamConvert(int index) {
+			return kind == Kind.OBJECT ? "read(value" + index + ", parser, event)"
+					: kind.conversion.replace("(value)", "(parser, event)");
+		}
+	}
+}
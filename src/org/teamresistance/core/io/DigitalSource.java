@@ -0,0 +1,13 @@
+package org.teamresistance.core.io;
+
+/**
+ * Source of a single digital signal, such as a limit switch.
+ */
+public interface DigitalSource {
+  /**
+   * Returns the current value of the signal.
+   * 
+   * @return the current value of the signal
+   */
+  boolean get();
+}
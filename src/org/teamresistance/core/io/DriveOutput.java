@@ -0,0 +1,22 @@
+package org.teamresistance.core.io;
+
+/**
+ * Mecanum drive train which accepts field or robot oriented drive commands.
+ */
+public interface DriveOutput {
+	/**
+	 * Drives the robot, following the conventions of
+	 * {@link edu.wpi.first.wpilibj.RobotDrive#mecanumDrive_Cartesian(double, double, double, double)}.
+	 * 
+	 * @param x the speed along the x axis, between -1 and 1
+	 * @param y the speed along the y axis, between -1 and 1
+	 * @param rotation the rate of rotation, between -1 and 1
+	 * @param gyroAngle the current heading in degrees, used for field oriented driving
+	 */
+	void mecanumDrive(double x, double y, double rotation, double gyroAngle);
+	
+	/**
+	 * Stops every motor.
+	 */
+	void stop();
+}
@@ -0,0 +1,18 @@
+package org.teamresistance.core.io;
+
+/**
+ * Source of the robot's heading, such as the navX.
+ */
+public interface GyroSource {
+	/**
+	 * Returns the accumulated heading in degrees, which is not limited to a single rotation.
+	 * 
+	 * @return the accumulated heading in degrees
+	 */
+	double getAngle();
+	
+	/**
+	 * Sets the current heading to zero.
+	 */
+	void reset();
+}
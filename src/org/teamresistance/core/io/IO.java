@@ -0,0 +1,32 @@
+package org.teamresistance.core.io;
+
+/**
+ * Holds the {@link IOBackend} used to create hardware devices.
+ * 
+ * <p>The backend must be chosen before any devices are created. By default real hardware is used.
+ */
+public class IO {
+	
+	private static IOBackend backend;
+	
+	/**
+	 * Returns the backend used to create hardware devices, defaulting to {@link WPILibBackend}.
+	 * 
+	 * @return the backend used to create hardware devices
+	 */
+	public static synchronized IOBackend getBackend() {
+		if(backend == null) {
+			backend = new WPILibBackend();
+		}
+		return backend;
+	}
+	
+	/**
+	 * Sets the backend used to create hardware devices. Devices which have already been created are not affected.
+	 * 
+	 * @param backend the backend used to create hardware devices
+	 */
+	public static synchronized void setBackend(IOBackend backend) {
+		IO.backend = backend;
+	}
+}
@@ -0,0 +1,57 @@
+package org.teamresistance.core.io;
+
+import edu.wpi.first.wpilibj.SPI.Port;
+
+/**
+ * Creates the hardware devices used by the classes in this package.
+ * 
+ * <p>{@link WPILibBackend} talks to real hardware through WPILib and the navX library. A simulated backend such as
+ * {@link org.teamresistance.core.io.sim.SimBackend} lets the same code run on a workstation.
+ * 
+ * @see IO
+ */
+public interface IOBackend {
+	/**
+	 * Creates the source of the robot's heading.
+	 * 
+	 * @return the source of the robot's heading
+	 */
+	GyroSource createGyro();
+	
+	/**
+	 * Opens an SPI port with an active low chip select and an active high clock.
+	 * 
+	 * @param port the port the device is connected to
+	 * @param clockRate the clock rate in hertz
+	 * @return a transport for the device on the port
+	 */
+	SpiTransport createSpi(Port port, int clockRate);
+	
+	/**
+	 * Opens a digital input channel.
+	 * 
+	 * @param channel the DIO channel
+	 * @return the digital input
+	 */
+	DigitalSource createDigitalInput(int channel);
+	
+	/**
+	 * Opens a solenoid channel.
+	 * 
+	 * @param module the PCM module
+	 * @param channel the channel on the module
+	 * @return the solenoid
+	 */
+	SolenoidOutput createSolenoid(int module, int channel);
+	
+	/**
+	 * Creates a mecanum drive train from four PWM motor controllers.
+	 * 
+	 * @param frontLeft the PWM channel of the front left motor
+	 * @param rearLeft the PWM channel of the rear left motor
+	 * @param frontRight the PWM channel of the front right motor
+	 * @param rearRight the PWM channel of the rear right motor
+	 * @return the drive train
+	 */
+	DriveOutput createMecanumDrive(int frontLeft, int rearLeft, int frontRight, int rearRight);
+}
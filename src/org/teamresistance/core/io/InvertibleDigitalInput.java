@@ -1,17 +1,19 @@
 package org.teamresistance.core.io;
 
-import edu.wpi.first.wpilibj.DigitalInput;
-
 /**
  * @author Shreya Ravi
  */
 public class InvertibleDigitalInput {
-  private final DigitalInput limitSwitch;
+  private final DigitalSource limitSwitch;
   private final boolean isInverted;
 
   public InvertibleDigitalInput(int channel, boolean isInverted) {
+    this(IO.getBackend().createDigitalInput(channel), isInverted);
+  }
+
+  public InvertibleDigitalInput(DigitalSource limitSwitch, boolean isInverted) {
     this.isInverted = isInverted;
-    limitSwitch = new DigitalInput(channel);
+    this.limitSwitch = limitSwitch;
   }
 
   public boolean get() {
@@ -1,13 +1,11 @@
 package org.teamresistance.core.io;
 
-import edu.wpi.first.wpilibj.Solenoid;
-
 /**
  * @author Shreya Ravi
  */
 public class InvertibleSolenoid implements SingleSolenoid {
 
-  private final Solenoid solenoid;
+  private final SolenoidOutput solenoid;
   private final boolean isInverted;
 
   public InvertibleSolenoid(int module, int channel) {
@@ -15,7 +13,11 @@ public class InvertibleSolenoid implements SingleSolenoid {
   }
 
   public InvertibleSolenoid(int module, int channel, boolean isInverted) {
-    solenoid = new Solenoid(module, channel);
+    this(IO.getBackend().createSolenoid(module, channel), isInverted);
+  }
+
+  public InvertibleSolenoid(SolenoidOutput solenoid, boolean isInverted) {
+    this.solenoid = solenoid;
     this.isInverted = isInverted;
   }
 
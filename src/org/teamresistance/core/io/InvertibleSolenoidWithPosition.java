@@ -16,6 +16,14 @@ public class InvertibleSolenoidWithPosition extends InvertibleSolenoid {
     this.retractedLimit = retractedLimit;
   }
 
+  public InvertibleSolenoidWithPosition(
+      SolenoidOutput solenoid,
+      boolean isSolenoidInverted,
+      InvertibleDigitalInput retractedLimit) {
+    super(solenoid, isSolenoidInverted);
+    this.retractedLimit = retractedLimit;
+  }
+
   @Override
   public boolean isRetracted() {
     return retractedLimit.get();
@@ -1,27 +1,90 @@
 package org.teamresistance.core.io;
 
-import com.kauailabs.navx.frc.AHRS;
+import org.teamresistance.core.util.HeadingHistory;
+import org.teamresistance.core.util.Time;
 
-import edu.wpi.first.wpilibj.SPI;
+import com.kauailabs.navx.frc.AHRS;
 
 public class NavX {
 	
-	private AHRS ahrs = new AHRS(SPI.Port.kMXP);
+	private final GyroSource gyro;
+	private HeadingHistory history;
+	
+	public NavX() {
+		this(IO.getBackend().createGyro());
+	}
+	
+	/**
+	 * Creates a NavX which reads its heading from the given source, such as a simulated gyro.
+	 * 
+	 * @param gyro the source of the robot's heading
+	 */
+	public NavX(GyroSource gyro) {
+		this.gyro = gyro;
+	}
 	
 	public double getNormalizedAngle() {
-		return ((ahrs.getAngle() % 360) + 360) % 360;
+		return ((gyro.getAngle() % 360) + 360) % 360;
 	}
 	
 	public double getRawAngle() {
-		return ahrs.getAngle();
+		return gyro.getAngle();
 	}
 	
 	public void reset() {
-		ahrs.reset();
+		gyro.reset();
+		if(history != null) history.clear();
+	}
+	
+	/**
+	 * Records the current heading in the history, if there is one, stamped with {@link Time#getCycleTime()}. Should be
+	 * called once per cycle.
+	 */
+	public void update() {
+		if(history != null) {
+			history.add(Time.getCycleTime(), gyro.getAngle());
+		}
 	}
 	
+	/**
+	 * Returns the raw heading as of a time in the past, interpolated from the history.
+	 * 
+	 * @param time the time in nanoseconds, as given by {@link Time}
+	 * @return the raw heading at the time, or the current heading if no history is kept
+	 */
+	public double getRawAngleAt(long time) {
+		if(history == null || history.isEmpty()) return getRawAngle();
+		return history.get(time);
+	}
+	
+	public HeadingHistory getHistory() {
+		return history;
+	}
+	
+	/**
+	 * Keeps the heading of the last few cycles so it can be looked up as of a time in the past, such as when a camera
+	 * frame was taken.
+	 * 
+	 * @param capacity the number of cycles to keep, or 0 to keep none
+	 */
+	public void setHistory(int capacity) {
+		history = capacity > 0 ? new HeadingHistory(capacity) : null;
+	}
+	
+	/**
+	 * Returns the navX this heading is read from.
+	 * 
+	 * @return the navX this heading is read from, or null if the heading does not come from real hardware
+	 */
 	public AHRS getAHRS() {
-		return ahrs;
+		if(gyro instanceof WPILibBackend.NavXGyro) {
+			return ((WPILibBackend.NavXGyro) gyro).getAHRS();
+		}
+		return null;
+	}
+	
+	public GyroSource getGyroSource() {
+		return gyro;
 	}
 
 }
@@ -1,8 +1,12 @@
 package org.teamresistance.core.io;
 
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
 import org.teamresistance.core.mathd.Vector2d;
+import org.teamresistance.core.util.Time;
+import org.teamresistance.core.util.Vector2dHistory;
 
-import edu.wpi.first.wpilibj.SPI;
 import edu.wpi.first.wpilibj.SPI.Port;
 
 /**
@@ -15,13 +19,26 @@ import edu.wpi.first.wpilibj.SPI.Port;
  * 0x03  -   Delta x
  * 0x04  -   Delta y
  * 0x05  -   Squall
+ * 0x50  -   Motion burst, reads motion, delta x and delta y in one transfer
  *
  */
 public class OFS {
 
-  private  final SPI spi;
+  public static final byte MOTION_BURST = 0x50;
+
+  private  final SpiTransport spi;
   private  final byte[] dataReceived;
   private  final byte[] register = new byte[] {0};
+  private  final byte[] burstSend = new byte[] {MOTION_BURST, 0, 0, 0};
+  private  final byte[] burstReceived = new byte[4];
+
+  //Read motion, delta x and delta y in a single transaction instead of three register reads
+  private boolean burstMode = false;
+
+  //Transfer statistics
+  private long transfers = 0;
+  private int lastSampleTransfers = 0;
+  private long lastSampleTime = 0;
 
   //Amount of change since last read
   private double raw_dx = 0;
@@ -38,11 +55,26 @@ public class OFS {
   private double xLinear = 0;
   private double yLinear = 0;
 
+  //Background sampling, see startSampling()
+  private volatile Thread sampler;
+  private volatile Position latest = new Position(0, 0, 0);
+  private final AtomicReference<Vector2d> pendingPosition = new AtomicReference<>();
+
+  // Position over the last few cycles, written by update()
+  private Vector2dHistory history;
+
   public OFS() {
-    spi = new SPI(Port.kOnboardCS0);    //Finds the OF on the SPI ports
-    spi.setChipSelectActiveLow();
-    spi.setClockActiveHigh();
-    spi.setClockRate(500000);
+    this(IO.getBackend().createSpi(Port.kOnboardCS0, 500000));    //Finds the OF on the SPI ports
+  }
+
+  /**
+   * Creates an optical flow sensor which communicates over the given transport, such as an in-memory model of the
+   * sensor.
+   *
+   * @param spi the transport connected to the sensor
+   */
+  public OFS(SpiTransport spi) {
+    this.spi = spi;
 
     dataReceived = new byte[1];
     for(int i = 0; i < dataReceived.length; i++) {
@@ -51,6 +83,11 @@ public class OFS {
   }
 
   public void init() {
+    if (sampler != null) {
+      // The sampling thread owns the SPI bus, let it clear the motion registers
+      pendingPosition.set(new Vector2d(0, 0));
+      return;
+    }
     readRegister((byte)2);
 
     xLinear = 0;
@@ -60,23 +97,169 @@ public class OFS {
     raw_dy = 0;
   }
 
+  /**
+   * Reads the motion registers and integrates the position. Does nothing while the sensor is being sampled on its own
+   * thread, see {@link #startSampling(double)}.
+   */
   public void update() {
+    if (sampler == null) {
+      sample();
+      if (history != null) {
+        history.add(Time.getCycleTime(), xLinear, yLinear);
+      }
+    } else if (history != null) {
+      // Read once so x and y come from the same sample
+      Position position = latest;
+      history.add(Time.getCycleTime(), position.x, position.y);
+    }
+  }
+
+  /**
+   * Returns the position as of a time in the past, interpolated from the history.
+   *
+   * @param time the time in nanoseconds, as given by {@link Time}
+   * @return the position at the time, or the current position if no history is kept
+   */
+  public Vector2d getPosAt(long time) {
+    if (history == null || history.isEmpty()) {
+      return getPos();
+    }
+    return history.get(time);
+  }
+
+  public Vector2dHistory getHistory() {
+    return history;
+  }
+
+  /**
+   * Keeps the position recorded by each {@link #update()} so it can be looked up as of a time in the past, such as
+   * when a camera frame was taken.
+   *
+   * @param capacity the number of updates to keep, or 0 to keep none
+   */
+  public void setHistory(int capacity) {
+    history = capacity > 0 ? new Vector2dHistory(capacity) : null;
+  }
+
+  /**
+   * Starts polling the sensor on its own thread at the given rate, accumulating motion there instead of in
+   * {@link #update()}. This takes the SPI reads off the control loop and integrates position at the sensor's rate
+   * rather than the loop's.
+   *
+   * <p>While sampling, {@link #getPos()}, {@link #getX()} and {@link #getY()} return the most recently published
+   * position, which is always a consistent pair of coordinates.
+   *
+   * @param frequency the rate at which the sensor is polled, in hertz
+   */
+  public synchronized void startSampling(double frequency) {
+    if (sampler != null) {
+      return;
+    }
+    final long period = (long) (1000000000L / frequency);
+    latest = new Position(xLinear, yLinear, 0);
+    Thread thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        long next = System.nanoTime();
+        long samples = 0;
+        while (!Thread.currentThread().isInterrupted()) {
+          Vector2d reset = pendingPosition.getAndSet(null);
+          if (reset != null) {
+            readRegister((byte) 2);
+            xLinear = reset.getX();
+            yLinear = reset.getY();
+          }
+          sample();
+          latest = new Position(xLinear, yLinear, ++samples);
+
+          next += period;
+          long now = System.nanoTime();
+          if (next > now) {
+            LockSupport.parkNanos(next - now);
+          } else {
+            next = now; // Fell behind, don't try to catch up
+          }
+        }
+      }
+    }, "OFS Sampler");
+    thread.setDaemon(true);
+    thread.setPriority(Thread.MAX_PRIORITY - 1);
+    sampler = thread;
+    thread.start();
+  }
+
+  /**
+   * Stops the sampling thread started by {@link #startSampling(double)}. The position continues to be integrated by
+   * {@link #update()}.
+   */
+  public synchronized void stopSampling() {
+    Thread thread = sampler;
+    if (thread == null) {
+      return;
+    }
+    thread.interrupt();
+    try {
+      thread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    sampler = null;
+    Vector2d reset = pendingPosition.getAndSet(null);
+    if (reset != null) {
+      xLinear = reset.getX();
+      yLinear = reset.getY();
+    }
+  }
+
+  /**
+   * Returns whether the sensor is being polled on its own thread.
+   *
+   * @return whether the sensor is being polled on its own thread
+   */
+  public boolean isSampling() {
+    return sampler != null;
+  }
+
+  /**
+   * Returns the number of samples taken by the sampling thread since it was started.
+   *
+   * @return the number of samples taken by the sampling thread
+   */
+  public long getSampleCount() {
+    return latest.samples;
+  }
+
+  private void sample() {
 //    SmartDashboard.putNumber("Product ID", readRegister((byte) 0));
 //    SmartDashboard.putNumber("Squall:", readRegister((byte) 5));
 
-    int motionRegister = readRegister((byte) 2);
-//    SmartDashboard.putNumber("Motion Register:", motionRegister);
+    long start = System.nanoTime();
+    long startTransfers = transfers;
 
     //Refresh raw values after register
     raw_dx = 0;
     raw_dy = 0;
 
-    // Update the raw_dx/y var
-    if ((motionRegister & 0x80) != 0) {
-      raw_dx = readRegister((byte) 3);   //use registry to update the change in position
-      raw_dy = readRegister((byte) 4);
+    if (burstMode) {
+      readBurst();
+      if ((burstReceived[1] & 0x80) != 0) {
+        raw_dx = burstReceived[2];
+        raw_dy = burstReceived[3];
+      }
+    } else {
+      int motionRegister = readRegister((byte) 2);
+//      SmartDashboard.putNumber("Motion Register:", motionRegister);
+
+      // Update the raw_dx/y var
+      if ((motionRegister & 0x80) != 0) {
+        raw_dx = readRegister((byte) 3);   //use registry to update the change in position
+        raw_dy = readRegister((byte) 4);
+      }
     }
 
+    lastSampleTransfers = (int) (transfers - startTransfers);
+    lastSampleTime = System.nanoTime() - start;
+
     //---------------------------------------------- Linear ------------------------------------------------------------
     
     //Find Actual Distance Covered
@@ -109,24 +292,109 @@ public class OFS {
     spi.write(this.register, 1); // Writes the register to be read
     spi.read(true, dataReceived, 1); // Reads the garbage
     spi.read(false, dataReceived, 1); // Reads the real register value
+    transfers += 3;
     return dataReceived[0];
   }
 
+  /**
+   * Reads the motion, delta x and delta y registers with a single motion burst transaction. The first byte received
+   * is clocked in while the address is sent and is garbage.
+   */
+  private void readBurst() {
+    spi.transaction(burstSend, burstReceived, burstSend.length);
+    transfers++;
+  }
+
+  /**
+   * Returns whether motion is read with a single burst transaction rather than three separate register reads.
+   *
+   * @return whether motion is read with a single burst transaction
+   */
+  public boolean isBurstMode() {
+    return burstMode;
+  }
+
+  /**
+   * Sets whether motion is read with a single burst transaction rather than three separate register reads. Should be
+   * set before sampling is started.
+   *
+   * @param burstMode whether motion should be read with a single burst transaction
+   */
+  public void setBurstMode(boolean burstMode) {
+    this.burstMode = burstMode;
+  }
+
+  /**
+   * Returns the total number of SPI transfers made to the sensor.
+   *
+   * @return the total number of SPI transfers made
+   */
+  public long getTransferCount() {
+    return transfers;
+  }
+
+  /**
+   * Returns the number of SPI transfers made while reading the most recent sample.
+   *
+   * @return the number of SPI transfers in the most recent sample
+   */
+  public int getLastSampleTransfers() {
+    return lastSampleTransfers;
+  }
+
+  /**
+   * Returns the time in nanoseconds spent reading the most recent sample.
+   *
+   * @return the time in nanoseconds spent reading the most recent sample
+   */
+  public long getLastSampleTime() {
+    return lastSampleTime;
+  }
+
   public Vector2d getPos() {
+    if (sampler != null) {
+      Position position = latest;
+      return new Vector2d(position.x, position.y);
+    }
 	  return new Vector2d(getX(), getY());
   }
   
   public void setPos(Vector2d pos) {
+    if (sampler != null) {
+      pendingPosition.set(new Vector2d(pos.getX(), pos.getY()));
+      return;
+    }
 	  this.xLinear = pos.getX();
 	  this.yLinear = pos.getY();
   }
   
  public double getX() {
+   if (sampler != null) {
+     return latest.x;
+   }
    return xLinear; // make dxLinear Negative to go in negative X TODO: verify you want to return dx
  }
 
   public double getY() {
+    if (sampler != null) {
+      return latest.y;
+    }
     return yLinear; // TODO: verify you want to return dy
   }
+
+  /**
+   * Immutable position published by the sampling thread. Readers only ever see a complete instance.
+   */
+  private static final class Position {
+    private final double x;
+    private final double y;
+    private final long samples;
+
+    private Position(double x, double y, long samples) {
+      this.x = x;
+      this.y = y;
+      this.samples = samples;
+    }
+  }
 }
 
@@ -0,0 +1,20 @@
+package org.teamresistance.core.io;
+
+/**
+ * A single solenoid channel.
+ */
+public interface SolenoidOutput {
+  /**
+   * Turns the solenoid on or off.
+   * 
+   * @param on whether the solenoid should be on
+   */
+  void set(boolean on);
+
+  /**
+   * Returns whether the solenoid is on.
+   * 
+   * @return whether the solenoid is on
+   */
+  boolean get();
+}
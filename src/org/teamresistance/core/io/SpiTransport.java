@@ -0,0 +1,38 @@
+package org.teamresistance.core.io;
+
+/**
+ * Transfers bytes to and from a device on an SPI bus.
+ * 
+ * <p>Mirrors the transfer methods of {@link edu.wpi.first.wpilibj.SPI} so devices can be driven by real hardware
+ * through {@link WPILibSpiTransport} or by an in-memory model of the device.
+ */
+public interface SpiTransport {
+  /**
+   * Writes bytes to the device.
+   * 
+   * @param data the bytes to be written
+   * @param size the number of bytes to be written
+   * @return the number of bytes written
+   */
+  int write(byte[] data, int size);
+
+  /**
+   * Reads bytes from the device.
+   * 
+   * @param initiate whether to clock out zeros to start a new transfer, or to read bytes already received
+   * @param data the buffer to read into
+   * @param size the number of bytes to be read
+   * @return the number of bytes read
+   */
+  int read(boolean initiate, byte[] data, int size);
+
+  /**
+   * Writes and reads bytes in a single full duplex transfer.
+   * 
+   * @param send the bytes to be written
+   * @param receive the buffer to read into
+   * @param size the number of bytes to be transferred
+   * @return the number of bytes transferred
+   */
+  int transaction(byte[] send, byte[] receive, int size);
+}
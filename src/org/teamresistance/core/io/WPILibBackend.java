@@ -0,0 +1,107 @@
+package org.teamresistance.core.io;
+
+import com.kauailabs.navx.frc.AHRS;
+
+import edu.wpi.first.wpilibj.DigitalInput;
+import edu.wpi.first.wpilibj.RobotDrive;
+import edu.wpi.first.wpilibj.SPI;
+import edu.wpi.first.wpilibj.SPI.Port;
+import edu.wpi.first.wpilibj.Solenoid;
+
+/**
+ * {@link IOBackend} which creates real hardware devices through WPILib and the navX library.
+ */
+public class WPILibBackend implements IOBackend {
+
+	@Override
+	public GyroSource createGyro() {
+		return new NavXGyro(new AHRS(SPI.Port.kMXP));
+	}
+
+	@Override
+	public SpiTransport createSpi(Port port, int clockRate) {
+		return new WPILibSpiTransport(port, clockRate);
+	}
+
+	@Override
+	public DigitalSource createDigitalInput(int channel) {
+		final DigitalInput input = new DigitalInput(channel);
+		return new DigitalSource() {
+			@Override
+			public boolean get() {
+				return input.get();
+			}
+		};
+	}
+
+	@Override
+	public SolenoidOutput createSolenoid(int module, int channel) {
+		final Solenoid solenoid = new Solenoid(module, channel);
+		return new SolenoidOutput() {
+			@Override
+			public void set(boolean on) {
+				solenoid.set(on);
+			}
+
+			@Override
+			public boolean get() {
+				return solenoid.get();
+			}
+		};
+	}
+
+	@Override
+	public DriveOutput createMecanumDrive(int frontLeft, int rearLeft, int frontRight, int rearRight) {
+		return new RobotDriveOutput(new RobotDrive(frontLeft, rearLeft, frontRight, rearRight));
+	}
+	
+	/**
+	 * {@link GyroSource} backed by a navX.
+	 */
+	public static class NavXGyro implements GyroSource {
+		private final AHRS ahrs;
+		
+		public NavXGyro(AHRS ahrs) {
+			this.ahrs = ahrs;
+		}
+
+		@Override
+		public double getAngle() {
+			return ahrs.getAngle();
+		}
+
+		@Override
+		public void reset() {
+			ahrs.reset();
+		}
+		
+		public AHRS getAHRS() {
+			return ahrs;
+		}
+	}
+	
+	/**
+	 * {@link DriveOutput} backed by a WPILib {@link RobotDrive}.
+	 */
+	public static class RobotDriveOutput implements DriveOutput {
+		private final RobotDrive drive;
+		
+		public RobotDriveOutput(RobotDrive drive) {
+			this.drive = drive;
+		}
+
+		@Override
+		public void mecanumDrive(double x, double y, double rotation, double gyroAngle) {
+			drive.mecanumDrive_Cartesian(x, y, rotation, gyroAngle);
+		}
+
+		@Override
+		public void stop() {
+			drive.stopMotor();
+		}
+		
+		public RobotDrive getRobotDrive() {
+			return drive;
+		}
+	}
+}
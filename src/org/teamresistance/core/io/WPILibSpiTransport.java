@@ -0,0 +1,44 @@
+package org.teamresistance.core.io;
+
+import edu.wpi.first.wpilibj.SPI;
+import edu.wpi.first.wpilibj.SPI.Port;
+
+/**
+ * {@link SpiTransport} backed by a real SPI port on the roboRIO.
+ */
+public class WPILibSpiTransport implements SpiTransport {
+
+  private final SPI spi;
+
+  /**
+   * Opens an SPI port with an active low chip select and an active high clock.
+   * 
+   * @param port the port the device is connected to
+   * @param clockRate the clock rate in hertz
+   */
+  public WPILibSpiTransport(Port port, int clockRate) {
+    spi = new SPI(port);
+    spi.setChipSelectActiveLow();
+    spi.setClockActiveHigh();
+    spi.setClockRate(clockRate);
+  }
+
+  @Override
+  public int write(byte[] data, int size) {
+    return spi.write(data, size);
+  }
+
+  @Override
+  public int read(boolean initiate, byte[] data, int size) {
+    return spi.read(initiate, data, size);
+  }
+
+  @Override
+  public int transaction(byte[] send, byte[] receive, int size) {
+    return spi.transaction(send, receive, size);
+  }
+
+  public SPI getSPI() {
+    return spi;
+  }
+}
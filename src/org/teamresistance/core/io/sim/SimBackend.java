@@ -0,0 +1,126 @@
+package org.teamresistance.core.io.sim;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.teamresistance.core.io.DigitalSource;
+import org.teamresistance.core.io.DriveOutput;
+import org.teamresistance.core.io.GyroSource;
+import org.teamresistance.core.io.IOBackend;
+import org.teamresistance.core.io.SolenoidOutput;
+import org.teamresistance.core.io.SpiTransport;
+
+import edu.wpi.first.wpilibj.SPI.Port;
+
+/**
+ * {@link IOBackend} which creates in-process simulated devices so robot code can run on a workstation.
+ * 
+ * <p>The devices created are kept so a simulation can read the outputs robot code gives them and feed back sensor
+ * readings.
+ */
+public class SimBackend implements IOBackend {
+
+	private final SimGyro gyro = new SimGyro();
+	private final Map<Port, SimulatedOpticalFlowSensor> spiDevices = new EnumMap<>(Port.class);
+	private final Map<Integer, SimDigitalInput> digitalInputs = new HashMap<>();
+	private final Map<Integer, SimSolenoid> solenoids = new HashMap<>();
+	private final List<SimDrive> drives = new ArrayList<>();
+
+	@Override
+	public synchronized GyroSource createGyro() {
+		return gyro;
+	}
+
+	/**
+	 * Creates a simulated optical flow sensor on the port, since that is the only SPI device in this library.
+	 */
+	@Override
+	public synchronized SpiTransport createSpi(Port port, int clockRate) {
+		return getOpticalFlowSensor(port);
+	}
+
+	@Override
+	public synchronized DigitalSource createDigitalInput(int channel) {
+		return getDigitalInput(channel);
+	}
+
+	@Override
+	public synchronized SolenoidOutput createSolenoid(int module, int channel) {
+		int key = module * 100 + channel;
+		SimSolenoid solenoid = solenoids.get(key);
+		if(solenoid == null) {
+			solenoid = new SimSolenoid();
+			solenoids.put(key, solenoid);
+		}
+		return solenoid;
+	}
+
+	@Override
+	public synchronized DriveOutput createMecanumDrive(int frontLeft, int rearLeft, int frontRight, int rearRight) {
+		SimDrive drive = new SimDrive();
+		drives.add(drive);
+		return drive;
+	}
+	
+	/**
+	 * Returns the simulated gyro shared by every {@link org.teamresistance.core.io.NavX}.
+	 * 
+	 * @return the simulated gyro
+	 */
+	public SimGyro getGyro() {
+		return gyro;
+	}
+	
+	/**
+	 * Returns the simulated optical flow sensor on a port, creating it if needed.
+	 * 
+	 * @param port the SPI port
+	 * @return the simulated optical flow sensor on the port
+	 */
+	public synchronized SimulatedOpticalFlowSensor getOpticalFlowSensor(Port port) {
+		SimulatedOpticalFlowSensor sensor = spiDevices.get(port);
+		if(sensor == null) {
+			sensor = new SimulatedOpticalFlowSensor();
+			spiDevices.put(port, sensor);
+		}
+		return sensor;
+	}
+	
+	/**
+	 * Returns the simulated digital input on a channel, creating it if needed.
+	 * 
+	 * @param channel the DIO channel
+	 * @return the simulated digital input on the channel
+	 */
+	public synchronized SimDigitalInput getDigitalInput(int channel) {
+		SimDigitalInput input = digitalInputs.get(channel);
+		if(input == null) {
+			input = new SimDigitalInput();
+			digitalInputs.put(channel, input);
+		}
+		return input;
+	}
+	
+	/**
+	 * Returns the simulated solenoid on a channel.
+	 * 
+	 * @param module the PCM module
+	 * @param channel the channel on the module
+	 * @return the simulated solenoid on the channel
+	 */
+	public SimSolenoid getSolenoid(int module, int channel) {
+		return (SimSolenoid) createSolenoid(module, channel);
+	}
+	
+	/**
+	 * Returns every simulated drive train which has been created.
+	 * 
+	 * @return every simulated drive train which has been created
+	 */
+	public synchronized List<SimDrive> getDrives() {
+		return new ArrayList<>(drives);
+	}
+}
@@ -0,0 +1,20 @@
+package org.teamresistance.core.io.sim;
+
+import org.teamresistance.core.io.DigitalSource;
+
+/**
+ * {@link DigitalSource} whose value is set by a simulation.
+ */
+public class SimDigitalInput implements DigitalSource {
+
+  private volatile boolean value = false;
+
+  @Override
+  public boolean get() {
+    return value;
+  }
+
+  public void set(boolean value) {
+    this.value = value;
+  }
+}
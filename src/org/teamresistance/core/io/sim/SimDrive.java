@@ -0,0 +1,88 @@
+package org.teamresistance.core.io.sim;
+
+import org.teamresistance.core.io.DriveOutput;
+
+/**
+ * {@link DriveOutput} which works out the wheel outputs a mecanum drive would be given, the same way
+ * {@link edu.wpi.first.wpilibj.RobotDrive#mecanumDrive_Cartesian(double, double, double, double)} does, and holds them
+ * for a simulation to read.
+ * 
+ * <p>Wheel outputs are positive when the wheel drives the robot forward.
+ */
+public class SimDrive implements DriveOutput {
+	
+	public static final int FRONT_LEFT = 0;
+	public static final int FRONT_RIGHT = 1;
+	public static final int REAR_LEFT = 2;
+	public static final int REAR_RIGHT = 3;
+
+	private final double[] wheels = new double[4];
+	private long commands = 0;
+
+	@Override
+	public synchronized void mecanumDrive(double x, double y, double rotation, double gyroAngle) {
+		// Joysticks report forward as negative
+		double yIn = -y;
+		double xIn = x;
+		
+		// Compensate for gyro angle
+		double radians = Math.toRadians(gyroAngle);
+		double cos = Math.cos(radians);
+		double sin = Math.sin(radians);
+		double xOut = xIn * cos - yIn * sin;
+		double yOut = xIn * sin + yIn * cos;
+		
+		wheels[FRONT_LEFT] = xOut + yOut + rotation;
+		wheels[FRONT_RIGHT] = -xOut + yOut - rotation;
+		wheels[REAR_LEFT] = -xOut + yOut + rotation;
+		wheels[REAR_RIGHT] = xOut + yOut - rotation;
+		
+		// Normalize so no wheel is commanded past full output
+		double max = Math.abs(wheels[0]);
+		for(int i = 1; i < wheels.length; i++) {
+			max = Math.max(max, Math.abs(wheels[i]));
+		}
+		if(max > 1.0) {
+			for(int i = 0; i < wheels.length; i++) {
+				wheels[i] /= max;
+			}
+		}
+		commands++;
+	}
+
+	@Override
+	public synchronized void stop() {
+		for(int i = 0; i < wheels.length; i++) {
+			wheels[i] = 0;
+		}
+	}
+	
+	/**
+	 * Returns the output most recently given to a wheel.
+	 * 
+	 * @param wheel one of {@link #FRONT_LEFT}, {@link #FRONT_RIGHT}, {@link #REAR_LEFT} or {@link #REAR_RIGHT}
+	 * @return the output of the wheel, between -1 and 1
+	 */
+	public synchronized double getWheel(int wheel) {
+		return wheels[wheel];
+	}
+	
+	/**
+	 * Copies the most recent wheel outputs into an array indexed by {@link #FRONT_LEFT}, {@link #FRONT_RIGHT},
+	 * {@link #REAR_LEFT} and {@link #REAR_RIGHT}.
+	 * 
+	 * @param out the array to be filled, at least four long
+	 */
+	public synchronized void getWheels(double[] out) {
+		System.arraycopy(wheels, 0, out, 0, wheels.length);
+	}
+	
+	/**
+	 * Returns the number of drive commands received.
+	 * 
+	 * @return the number of drive commands received
+	 */
+	public synchronized long getCommandCount() {
+		return commands;
+	}
+}
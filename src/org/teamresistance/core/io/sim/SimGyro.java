@@ -0,0 +1,31 @@
+package org.teamresistance.core.io.sim;
+
+import org.teamresistance.core.io.GyroSource;
+
+/**
+ * {@link GyroSource} whose heading is set by a simulation.
+ */
+public class SimGyro implements GyroSource {
+
+	private volatile double angle = 0;
+	private volatile double offset = 0;
+
+	@Override
+	public double getAngle() {
+		return angle - offset;
+	}
+
+	@Override
+	public void reset() {
+		offset = angle;
+	}
+
+	/**
+	 * Sets the true accumulated heading of the simulated robot.
+	 * 
+	 * @param angle the accumulated heading in degrees
+	 */
+	public void setAngle(double angle) {
+		this.angle = angle;
+	}
+}
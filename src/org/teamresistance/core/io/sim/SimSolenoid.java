@@ -0,0 +1,21 @@
+package org.teamresistance.core.io.sim;
+
+import org.teamresistance.core.io.SolenoidOutput;
+
+/**
+ * {@link SolenoidOutput} which remembers the last state it was set to.
+ */
+public class SimSolenoid implements SolenoidOutput {
+
+  private volatile boolean on = false;
+
+  @Override
+  public void set(boolean on) {
+    this.on = on;
+  }
+
+  @Override
+  public boolean get() {
+    return on;
+  }
+}
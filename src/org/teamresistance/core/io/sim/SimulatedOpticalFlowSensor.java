@@ -0,0 +1,126 @@
+package org.teamresistance.core.io.sim;
+
+import org.teamresistance.core.io.OFS;
+import org.teamresistance.core.io.SpiTransport;
+
+/**
+ * In-memory model of the optical flow sensor read by {@link OFS}, for running and benchmarking it without hardware.
+ * 
+ * <p>Motion added with {@link #addMotion(int, int)} accumulates in the sensor until it is read. Reading the motion
+ * register latches the accumulated motion into the delta registers and sets bit 7 of the motion register if there was
+ * any. Reading a delta register clears it. A motion burst returns the motion and both deltas at once. Deltas larger
+ * than a byte are clamped, as on the real sensor.
+ */
+public class SimulatedOpticalFlowSensor implements SpiTransport {
+
+  public static final int PRODUCT_ID = 0x17;
+  public static final int REVISION_ID = 0x01;
+
+  private int accumulatedX = 0;
+  private int accumulatedY = 0;
+  private int deltaX = 0;
+  private int deltaY = 0;
+  private int squal = 64;
+
+  private int address = 0;
+  private long transfers = 0;
+
+  /**
+   * Adds motion, in sensor counts, to be reported the next time the sensor is read.
+   * 
+   * @param dx counts moved along the x axis
+   * @param dy counts moved along the y axis
+   */
+  public synchronized void addMotion(int dx, int dy) {
+    accumulatedX += dx;
+    accumulatedY += dy;
+  }
+
+  @Override
+  public synchronized int write(byte[] data, int size) {
+    transfers++;
+    if (size > 0) {
+      address = data[0] & 0x7F;
+    }
+    return size;
+  }
+
+  @Override
+  public synchronized int read(boolean initiate, byte[] data, int size) {
+    transfers++;
+    if (initiate) {
+      // Bytes clocked in while the address is being decoded are garbage
+      for (int i = 0; i < size; i++) {
+        data[i] = 0;
+      }
+    } else if (size > 0) {
+      data[0] = (byte) readRegister(address);
+    }
+    return size;
+  }
+
+  @Override
+  public synchronized int transaction(byte[] send, byte[] receive, int size) {
+    transfers++;
+    if (size == 0) {
+      return 0;
+    }
+    receive[0] = 0;
+    int register = send[0] & 0x7F;
+    if (register == OFS.MOTION_BURST) {
+      int[] burst = {readRegister(0x02), readRegister(0x03), readRegister(0x04), readRegister(0x05)};
+      for (int i = 1; i < size; i++) {
+        receive[i] = (byte) (i - 1 < burst.length ? burst[i - 1] : 0);
+      }
+    } else {
+      for (int i = 1; i < size; i++) {
+        receive[i] = (byte) readRegister(register);
+      }
+    }
+    return size;
+  }
+
+  private int readRegister(int register) {
+    switch (register) {
+      case 0x00:
+        return PRODUCT_ID;
+      case 0x01:
+        return REVISION_ID;
+      case 0x02:
+        deltaX = clamp(accumulatedX);
+        deltaY = clamp(accumulatedY);
+        accumulatedX -= deltaX;
+        accumulatedY -= deltaY;
+        return (deltaX != 0 || deltaY != 0) ? 0x80 : 0x00;
+      case 0x03:
+        int dx = deltaX;
+        deltaX = 0;
+        return dx;
+      case 0x04:
+        int dy = deltaY;
+        deltaY = 0;
+        return dy;
+      case 0x05:
+        return squal;
+      default:
+        return 0;
+    }
+  }
+
+  private static int clamp(int value) {
+    return Math.max(Byte.MIN_VALUE, Math.min(Byte.MAX_VALUE, value));
+  }
+
+  /**
+   * Returns the number of SPI transfers made to the sensor.
+   * 
+   * @return the number of SPI transfers made
+   */
+  public synchronized long getTransferCount() {
+    return transfers;
+  }
+
+  public synchronized void setSqual(int squal) {
+    this.squal = squal;
+  }
+}
@@ -0,0 +1,436 @@
+package org.teamresistance.core.sim;
+
+import java.io.FileNotFoundException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.teamresistance.core.io.NavX;
+import org.teamresistance.core.io.sim.SimDrive;
+import org.teamresistance.core.io.sim.SimGyro;
+import org.teamresistance.core.util.MecanumDrive;
+import org.teamresistance.core.util.MecanumDrive.DriveType;
+
+/**
+ * Searches for heading controller gains for {@link MecanumDrive} by running simulated heading changes on a
+ * {@link MecanumChassis}.
+ *
+ * <p>Every candidate set of {@link Gains} is run through every {@link Scenario} and scored on how quickly the heading
+ * settles, how far it overshoots and how much it oscillates. Candidates are evaluated in parallel on a
+ * {@link ForkJoinPool}. Each evaluation builds its own chassis, drive and {@link SimClock} so nothing is shared between
+ * threads and throughput scales with the number of cores.
+ *
+ */
+public class GainTuner {
+
+	private static Logger logger = Logger.getLogger(GainTuner.class.getName());
+
+	/**
+	 * Number of candidates evaluated by a single fork-join task before it stops splitting.
+	 */
+	private static final int LEAF_SIZE = 4;
+
+	private final DriveType driveType;
+	private final List<Scenario> scenarios = new ArrayList<>();
+	private double period = 0.02;
+	private double settleBand = 2.0;
+
+	// Score weights
+	private double settlingWeight = 1.0;
+	private double overshootWeight = 0.05;
+	private double oscillationWeight = 0.1;
+	private double unsettledPenalty = 10.0;
+
+	/**
+	 * Creates a tuner for one of the heading controlled drive types of {@link MecanumDrive}.
+	 *
+	 * @param driveType either {@link DriveType#ROTATE_PID} or {@link DriveType#KNOB_FIELD}
+	 */
+	public GainTuner(DriveType driveType) {
+		this.driveType = driveType;
+	}
+
+	/**
+	 * Adds a heading change to be run for every candidate.
+	 *
+	 * @param scenario the heading change
+	 */
+	public void addScenario(Scenario scenario) {
+		scenarios.add(scenario);
+	}
+
+	/**
+	 * Adds a set of turns from rest of 15, 45, 90, 180 and -120 degrees, three seconds each.
+	 */
+	public void addDefaultScenarios() {
+		for(double target : new double[] { 15, 45, 90, 180, -120 }) {
+			addScenario(new Scenario(0, target, 3.0));
+		}
+	}
+
+	/**
+	 * Evaluates every candidate on the common fork-join pool and ranks them from best to worst.
+	 *
+	 * @param candidates the gains to be evaluated
+	 * @return the results, best first
+	 */
+	public Result[] tune(List<Gains> candidates) {
+		return tune(candidates, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Evaluates every candidate on the given pool and ranks them from best to worst.
+	 *
+	 * @param candidates the gains to be evaluated
+	 * @param pool the pool to evaluate on
+	 * @return the results, best first
+	 */
+	public Result[] tune(List<Gains> candidates, ForkJoinPool pool) {
+		if(scenarios.isEmpty()) {
+			addDefaultScenarios();
+		}
+		Gains[] gains = candidates.toArray(new Gains[candidates.size()]);
+		Result[] results = new Result[gains.length];
+		long start = System.nanoTime();
+		pool.invoke(new EvaluateTask(gains, results, 0, gains.length));
+		long wall = System.nanoTime() - start;
+
+		Arrays.sort(results, new Comparator<Result>() {
+			@Override
+			public int compare(Result a, Result b) {
+				return Double.compare(a.score, b.score);
+			}
+		});
+		long runs = (long) gains.length * scenarios.size();
+		logger.log(Level.INFO, "Evaluated " + runs + " scenarios in " + (wall / 1e6) + " ms on " + pool.getParallelism()
+				+ " threads, " + (runs * 1e9 / Math.max(1, wall)) + " scenarios/s");
+		return results;
+	}
+
+	/**
+	 * Runs every scenario with a single set of gains.
+	 *
+	 * @param gains the gains to be evaluated
+	 * @return the score of the gains
+	 */
+	public Result evaluate(Gains gains) {
+		long periodNanos = (long) (period * 1e9);
+		Result result = new Result(gains);
+		for(Scenario scenario : scenarios) {
+			SimClock clock = new SimClock();
+			SimGyro gyro = new SimGyro();
+			SimDrive output = new SimDrive();
+			MecanumChassis chassis = new MecanumChassis(output, gyro, null);
+			chassis.reset(0, 0, scenario.start);
+			gyro.reset();
+
+			MecanumDrive drive = new MecanumDrive(output, new NavX(gyro));
+			drive.setClock(clock);
+			drive.setState(driveType);
+			drive.setMinToMove(gains.minToMove);
+			drive.init(0, gains.kP, gains.kI, gains.kD, gains.kF);
+
+			// The gyro is zeroed at the start heading, so the drive is given the turn rather than the target heading
+			double target = scenario.target - scenario.start;
+			double direction = Math.signum(target);
+			double overshoot = 0;
+			double settledAt = -1;
+			int crossings = 0;
+			double previousError = target;
+			long steps = Math.round(scenario.duration / period);
+			for(long i = 0; i < steps; i++) {
+				clock.advance(periodNanos);
+				drive.drive(0, 0, target);
+				chassis.step(periodNanos);
+
+				double error = scenario.target - chassis.getHeading();
+				double past = -error * direction;
+				if(past > overshoot) overshoot = past;
+				if(Math.abs(error) > settleBand) {
+					settledAt = -1;
+				} else if(settledAt < 0) {
+					settledAt = (i + 1) * period;
+				}
+				if(Math.abs(error) > settleBand && Math.signum(error) != Math.signum(previousError)
+						&& previousError != 0) {
+					crossings++;
+				}
+				if(Math.abs(error) > settleBand) previousError = error;
+			}
+			result.add(settledAt < 0 ? scenario.duration + unsettledPenalty : settledAt, overshoot, crossings,
+					settledAt >= 0);
+		}
+		result.score = (result.settlingTime * settlingWeight + result.overshoot * overshootWeight
+				+ result.oscillations * oscillationWeight) / scenarios.size();
+		return result;
+	}
+
+	/**
+	 * Builds every combination of the given values.
+	 *
+	 * @param kP proportional gains
+	 * @param kI integral gains
+	 * @param kD derivative gains
+	 * @param kF feed forward gains
+	 * @param minToMove minimum outputs
+	 * @return every combination of the given values
+	 */
+	public static List<Gains> grid(double[] kP, double[] kI, double[] kD, double[] kF, double[] minToMove) {
+		List<Gains> gains = new ArrayList<>(kP.length * kI.length * kD.length * kF.length * minToMove.length);
+		for(double p : kP)
+			for(double i : kI)
+				for(double d : kD)
+					for(double f : kF)
+						for(double m : minToMove)
+							gains.add(new Gains(p, i, d, f, m));
+		return gains;
+	}
+
+	/**
+	 * Samples gains uniformly between two bounds.
+	 *
+	 * @param count the number of samples
+	 * @param min the lower bound of every gain
+	 * @param max the upper bound of every gain
+	 * @param seed the seed of the random number generator
+	 * @return the sampled gains
+	 */
+	public static List<Gains> random(int count, Gains min, Gains max, long seed) {
+		Random random = new Random(seed);
+		List<Gains> gains = new ArrayList<>(count);
+		for(int n = 0; n < count; n++) {
+			gains.add(new Gains(lerp(min.kP, max.kP, random.nextDouble()), lerp(min.kI, max.kI, random.nextDouble()),
+					lerp(min.kD, max.kD, random.nextDouble()), lerp(min.kF, max.kF, random.nextDouble()),
+					lerp(min.minToMove, max.minToMove, random.nextDouble())));
+		}
+		return gains;
+	}
+
+	private static double lerp(double a, double b, double t) {
+		return a + (b - a) * t;
+	}
+
+	/**
+	 * Writes ranked results as comma separated values.
+	 *
+	 * @param results the results, best first
+	 * @param path the file to be written
+	 * @throws FileNotFoundException if the file cannot be created
+	 */
+	public static void write(Result[] results, String path) throws FileNotFoundException {
+		try (PrintWriter writer = new PrintWriter(path)) {
+			writer.println("rank,score,kP,kI,kD,kF,minToMove,settlingTime,overshoot,oscillations,settled");
+			for(int i = 0; i < results.length; i++) {
+				Result r = results[i];
+				writer.println((i + 1) + "," + r.score + "," + r.gains.kP + "," + r.gains.kI + "," + r.gains.kD + ","
+						+ r.gains.kF + "," + r.gains.minToMove + "," + r.settlingTime + "," + r.overshoot + ","
+						+ r.oscillations + "," + r.settled);
+			}
+		}
+	}
+
+	/**
+	 * Runs a random search over the rotate PID gains and writes the ranked results.
+	 *
+	 * @param args the output file, the number of samples and optionally the drive type
+	 * @throws FileNotFoundException if the output file cannot be created
+	 */
+	public static void main(String[] args) throws FileNotFoundException {
+		String path = args.length > 0 ? args[0] : "gains.csv";
+		int samples = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+		DriveType type = args.length > 2 ? DriveType.valueOf(args[2]) : DriveType.ROTATE_PID;
+
+		GainTuner tuner = new GainTuner(type);
+		tuner.addDefaultScenarios();
+		Result[] results = tuner.tune(random(samples, new Gains(0, 0, 0, 0, 0), new Gains(0.1, 0.01, 0.5, 0.2, 0.3), 86));
+		write(results, path);
+		logger.log(Level.INFO, "Best: " + results[0]);
+	}
+
+	public void setPeriod(double period) {
+		this.period = period;
+	}
+
+	/**
+	 * Sets how close to the target, in degrees, the heading must stay to be considered settled.
+	 *
+	 * @param settleBand the settling band in degrees
+	 */
+	public void setSettleBand(double settleBand) {
+		this.settleBand = settleBand;
+	}
+
+	/**
+	 * Sets how much each measurement counts towards the score. Lower scores are better.
+	 *
+	 * @param settling weight of the settling time in seconds
+	 * @param overshoot weight of the overshoot in degrees
+	 * @param oscillation weight of the number of times the heading crosses the target
+	 */
+	public void setWeights(double settling, double overshoot, double oscillation) {
+		this.settlingWeight = settling;
+		this.overshootWeight = overshoot;
+		this.oscillationWeight = oscillation;
+	}
+
+	/**
+	 * Evaluates a range of candidates, splitting until the range is small.
+	 */
+	private class EvaluateTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final Gains[] gains;
+		private final Result[] results;
+		private final int from;
+		private final int to;
+
+		private EvaluateTask(Gains[] gains, Result[] results, int from, int to) {
+			this.gains = gains;
+			this.results = results;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if(to - from <= LEAF_SIZE) {
+				for(int i = from; i < to; i++) {
+					results[i] = evaluate(gains[i]);
+				}
+			} else {
+				int middle = (from + to) >>> 1;
+				invokeAll(new EvaluateTask(gains, results, from, middle), new EvaluateTask(gains, results, middle, to));
+			}
+		}
+	}
+
+	/**
+	 * Gains of the heading controller in {@link MecanumDrive}.
+	 */
+	public static class Gains {
+		public final double kP;
+		public final double kI;
+		public final double kD;
+		public final double kF;
+		public final double minToMove;
+
+		public Gains(double kP, double kI, double kD, double kF, double minToMove) {
+			this.kP = kP;
+			this.kI = kI;
+			this.kD = kD;
+			this.kF = kF;
+			this.minToMove = minToMove;
+		}
+
+		@Override
+		public String toString() {
+			return "kP=" + kP + " kI=" + kI + " kD=" + kD + " kF=" + kF + " minToMove=" + minToMove;
+		}
+	}
+
+	/**
+	 * A turn from one heading to another, starting at rest.
+	 */
+	public static class Scenario {
+		private final double start;
+		private final double target;
+		private final double duration;
+
+		/**
+		 * @param start the starting heading in degrees
+		 * @param target the target heading in degrees
+		 * @param duration how long the turn is given in seconds
+		 */
+		public Scenario(double start, double target, double duration) {
+			this.start = start;
+			this.target = target;
+			this.duration = duration;
+		}
+	}
+
+	/**
+	 * The score of a set of gains over every scenario.
+	 */
+	public static class Result {
+		private final Gains gains;
+		private double score;
+		private double settlingTime;
+		private double overshoot;
+		private int oscillations;
+		private int settled;
+
+		private Result(Gains gains) {
+			this.gains = gains;
+		}
+
+		private void add(double settlingTime, double overshoot, int oscillations, boolean settled) {
+			this.settlingTime += settlingTime;
+			this.overshoot = Math.max(this.overshoot, overshoot);
+			this.oscillations += oscillations;
+			if(settled) this.settled++;
+		}
+
+		public Gains getGains() {
+			return gains;
+		}
+
+		/**
+		 * Returns the weighted score averaged over every scenario. Lower is better.
+		 *
+		 * @return the score of the gains
+		 */
+		public double getScore() {
+			return score;
+		}
+
+		/**
+		 * Returns the total settling time over every scenario in seconds, with a penalty for scenarios which never
+		 * settled.
+		 *
+		 * @return the total settling time in seconds
+		 */
+		public double getSettlingTime() {
+			return settlingTime;
+		}
+
+		/**
+		 * Returns the largest overshoot in any scenario in degrees.
+		 *
+		 * @return the largest overshoot in degrees
+		 */
+		public double getOvershoot() {
+			return overshoot;
+		}
+
+		/**
+		 * Returns the total number of times the heading crossed the target outside the settling band.
+		 *
+		 * @return the number of oscillations
+		 */
+		public int getOscillations() {
+			return oscillations;
+		}
+
+		/**
+		 * Returns the number of scenarios in which the heading settled.
+		 *
+		 * @return the number of scenarios which settled
+		 */
+		public int getSettled() {
+			return settled;
+		}
+
+		@Override
+		public String toString() {
+			return gains + " score=" + score + " settling=" + settlingTime + " s overshoot=" + overshoot
+					+ " oscillations=" + oscillations + " settled=" + settled;
+		}
+	}
+}
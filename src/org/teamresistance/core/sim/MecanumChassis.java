@@ -0,0 +1,368 @@
+package org.teamresistance.core.sim;
+
+import org.teamresistance.core.io.sim.SimDrive;
+import org.teamresistance.core.io.sim.SimGyro;
+import org.teamresistance.core.io.sim.SimulatedOpticalFlowSensor;
+
+/**
+ * Rigid body model of a mecanum chassis driven by the wheel outputs of a {@link SimDrive}, which feeds the simulated
+ * heading and optical flow readings back to a {@link SimGyro} and {@link SimulatedOpticalFlowSensor}.
+ *
+ * <p>Each wheel is driven by a DC motor with a linear torque-speed curve through a gearbox. A mecanum wheel can only
+ * push along the axis of the roller touching the ground, so each wheel applies a traction force along that axis which
+ * grows with the slip between the wheel and the ground and saturates at the friction limit. Those forces accelerate the
+ * chassis according to its mass and moment of inertia and push back on the wheels. The model is integrated at a fixed
+ * sub-step, 2 kHz by default, and allocates nothing while stepping.
+ *
+ * <p>Positions are in meters in the field frame with y pointing away from the driver, and the heading is in degrees
+ * increasing clockwise, matching the navX.
+ */
+public class MecanumChassis implements Simulation.Plant {
+
+	private static final double GRAVITY = 9.81;
+	private static final double METERS_PER_FOOT = 0.3048;
+	private static final double SQRT_HALF = Math.sqrt(0.5);
+
+	private static final int WHEELS = 4;
+	// Wheel positions relative to the center of the chassis, x to the right and y forward, in units of half width/length
+	private static final double[] WHEEL_X = new double[WHEELS];
+	private static final double[] WHEEL_Y = new double[WHEELS];
+	// Direction each wheel pushes the chassis when driven forward, roller axes at 45 degrees
+	private static final double[] FORCE_X = new double[WHEELS];
+	private static final double[] FORCE_Y = new double[WHEELS];
+	static {
+		setWheel(SimDrive.FRONT_LEFT, -1, 1, 1);
+		setWheel(SimDrive.FRONT_RIGHT, 1, 1, -1);
+		setWheel(SimDrive.REAR_LEFT, -1, -1, -1);
+		setWheel(SimDrive.REAR_RIGHT, 1, -1, 1);
+	}
+
+	private static void setWheel(int wheel, double x, double y, double forceX) {
+		WHEEL_X[wheel] = x;
+		WHEEL_Y[wheel] = y;
+		FORCE_X[wheel] = forceX * SQRT_HALF;
+		FORCE_Y[wheel] = SQRT_HALF;
+	}
+
+	private final SimDrive drive;
+	private final SimGyro gyro;
+	private final SimulatedOpticalFlowSensor opticalFlow;
+
+	// Physical parameters, defaults are a 120 lb robot on four CIMs through 10.71:1 gearboxes and 6 in wheels
+	private double mass = 54.0;
+	private double momentOfInertia = 5.0;
+	private double halfWidth = 0.30;
+	private double halfLength = 0.33;
+	private double wheelRadius = 0.0762;
+	private double gearRatio = 10.71;
+	private double stallTorque = 2.42;
+	private double freeSpeed = 5310 * 2 * Math.PI / 60;
+	private double wheelInertia = 0.01;
+	private double wheelDamping = 0.001;
+	private double frictionCoefficient = 0.9;
+	private double slipReference = 0.2;
+	private double batteryVoltage = 12.0;
+	private double countsPerFoot = -450;
+	private long substep = 500000L;
+
+	// State
+	private double x;
+	private double y;
+	private double heading;
+	private double velocityX;
+	private double velocityY;
+	private double angularVelocity;
+	private final double[] wheelSpeeds = new double[WHEELS];
+	private final double[] commands = new double[WHEELS];
+	private final double[] slip = new double[WHEELS];
+	private double pendingCountsX;
+	private double pendingCountsY;
+	private long substeps;
+
+	/**
+	 * Creates a chassis which reads its wheel outputs from a drive and writes its motion to the given sensors. Any of
+	 * them may be null.
+	 *
+	 * @param drive the drive whose wheel outputs are applied
+	 * @param gyro the gyro to be given the chassis heading
+	 * @param opticalFlow the optical flow sensor to be given the chassis motion
+	 */
+	public MecanumChassis(SimDrive drive, SimGyro gyro, SimulatedOpticalFlowSensor opticalFlow) {
+		this.drive = drive;
+		this.gyro = gyro;
+		this.opticalFlow = opticalFlow;
+	}
+
+	@Override
+	public void step(long nanos) {
+		if(drive != null) {
+			drive.getWheels(commands);
+		}
+		long remaining = nanos;
+		while(remaining > 0) {
+			long step = Math.min(substep, remaining);
+			integrate(step / 1e9);
+			remaining -= step;
+		}
+		publish();
+	}
+
+	/**
+	 * Advances the model by one sub-step using semi-implicit Euler integration.
+	 */
+	private void integrate(double dt) {
+		double cos = Math.cos(Math.toRadians(heading));
+		double sin = Math.sin(Math.toRadians(heading));
+		// Field velocity into the robot frame, heading is clockwise
+		double robotVX = velocityX * cos - velocityY * sin;
+		double robotVY = velocityX * sin + velocityY * cos;
+		// Clockwise angular velocity in radians
+		double omega = Math.toRadians(angularVelocity);
+
+		double normalForce = mass * GRAVITY / WHEELS;
+		double maxTraction = frictionCoefficient * normalForce;
+		double effectiveRadius = wheelRadius * SQRT_HALF;
+
+		double forceX = 0;
+		double forceY = 0;
+		double torque = 0;
+		for(int i = 0; i < WHEELS; i++) {
+			double px = WHEEL_X[i] * halfWidth;
+			double py = WHEEL_Y[i] * halfLength;
+			// Velocity of the contact patch, rotating clockwise by omega
+			double contactVX = robotVX + omega * py;
+			double contactVY = robotVY - omega * px;
+			double groundSpeed = contactVX * FORCE_X[i] + contactVY * FORCE_Y[i];
+			double surfaceSpeed = wheelSpeeds[i] * effectiveRadius;
+
+			// Traction grows linearly with slip and saturates at the friction limit
+			double s = surfaceSpeed - groundSpeed;
+			slip[i] = s;
+			double traction = maxTraction * s / slipReference;
+			if(traction > maxTraction) traction = maxTraction;
+			else if(traction < -maxTraction) traction = -maxTraction;
+
+			double fx = traction * FORCE_X[i];
+			double fy = traction * FORCE_Y[i];
+			forceX += fx;
+			forceY += fy;
+			// Clockwise torque about the center
+			torque += py * fx - px * fy;
+
+			// Motor torque at the wheel from a linear torque-speed curve
+			double voltage = clip(commands[i]) * batteryVoltage;
+			double motorSpeed = wheelSpeeds[i] * gearRatio;
+			double motorTorque = stallTorque * (voltage / 12.0) - stallTorque * motorSpeed / freeSpeed;
+			double wheelTorque = motorTorque * gearRatio - traction * effectiveRadius - wheelDamping * wheelSpeeds[i];
+			wheelSpeeds[i] += wheelTorque / wheelInertia * dt;
+		}
+
+		// Robot frame acceleration back into the field frame
+		double accelX = (forceX * cos + forceY * sin) / mass;
+		double accelY = (-forceX * sin + forceY * cos) / mass;
+		double angularAccel = Math.toDegrees(torque / momentOfInertia);
+
+		velocityX += accelX * dt;
+		velocityY += accelY * dt;
+		angularVelocity += angularAccel * dt;
+
+		double dx = velocityX * dt;
+		double dy = velocityY * dt;
+		x += dx;
+		y += dy;
+		heading += angularVelocity * dt;
+
+		// The optical flow sensor sees motion in the robot frame
+		double robotDX = dx * cos - dy * sin;
+		double robotDY = dx * sin + dy * cos;
+		pendingCountsX += robotDX / METERS_PER_FOOT * countsPerFoot;
+		pendingCountsY += robotDY / METERS_PER_FOOT * countsPerFoot;
+		substeps++;
+	}
+
+	private void publish() {
+		if(gyro != null) {
+			gyro.setAngle(heading);
+		}
+		if(opticalFlow != null) {
+			int countsX = (int) pendingCountsX;
+			int countsY = (int) pendingCountsY;
+			if(countsX != 0 || countsY != 0) {
+				opticalFlow.addMotion(countsX, countsY);
+				pendingCountsX -= countsX;
+				pendingCountsY -= countsY;
+			}
+		}
+	}
+
+	private static double clip(double value) {
+		return value > 1.0 ? 1.0 : (value < -1.0 ? -1.0 : value);
+	}
+
+	/**
+	 * Places the chassis at rest at a position and heading.
+	 *
+	 * @param x the x position in meters
+	 * @param y the y position in meters
+	 * @param heading the heading in degrees
+	 */
+	public void reset(double x, double y, double heading) {
+		this.x = x;
+		this.y = y;
+		this.heading = heading;
+		velocityX = 0;
+		velocityY = 0;
+		angularVelocity = 0;
+		for(int i = 0; i < WHEELS; i++) {
+			wheelSpeeds[i] = 0;
+			slip[i] = 0;
+		}
+		pendingCountsX = 0;
+		pendingCountsY = 0;
+		publish();
+	}
+
+	public double getX() {
+		return x;
+	}
+
+	public double getY() {
+		return y;
+	}
+
+	/**
+	 * Returns the accumulated heading in degrees, increasing clockwise.
+	 *
+	 * @return the accumulated heading in degrees
+	 */
+	public double getHeading() {
+		return heading;
+	}
+
+	public double getVelocityX() {
+		return velocityX;
+	}
+
+	public double getVelocityY() {
+		return velocityY;
+	}
+
+	/**
+	 * Returns the clockwise angular velocity in degrees per second.
+	 *
+	 * @return the angular velocity in degrees per second
+	 */
+	public double getAngularVelocity() {
+		return angularVelocity;
+	}
+
+	/**
+	 * Returns the speed in meters per second at which a wheel's surface slides over the ground along its roller axis.
+	 *
+	 * @param wheel one of the wheel indices of {@link SimDrive}
+	 * @return the slip speed of the wheel in meters per second
+	 */
+	public double getSlip(int wheel) {
+		return slip[wheel];
+	}
+
+	/**
+	 * Returns the number of sub-steps integrated.
+	 *
+	 * @return the number of sub-steps integrated
+	 */
+	public long getSubsteps() {
+		return substeps;
+	}
+
+	/**
+	 * Sets the mass of the robot.
+	 *
+	 * @param mass the mass in kilograms
+	 */
+	public void setMass(double mass) {
+		this.mass = mass;
+	}
+
+	/**
+	 * Sets the moment of inertia of the robot about its vertical axis.
+	 *
+	 * @param momentOfInertia the moment of inertia in kilogram square meters
+	 */
+	public void setMomentOfInertia(double momentOfInertia) {
+		this.momentOfInertia = momentOfInertia;
+	}
+
+	/**
+	 * Sets the distance from the center of the robot to the wheels.
+	 *
+	 * @param halfWidth the sideways distance in meters
+	 * @param halfLength the forward distance in meters
+	 */
+	public void setWheelBase(double halfWidth, double halfLength) {
+		this.halfWidth = halfWidth;
+		this.halfLength = halfLength;
+	}
+
+	public void setWheelRadius(double wheelRadius) {
+		this.wheelRadius = wheelRadius;
+	}
+
+	public void setGearRatio(double gearRatio) {
+		this.gearRatio = gearRatio;
+	}
+
+	/**
+	 * Sets the motor curve of each drive motor at 12 volts.
+	 *
+	 * @param stallTorque the stall torque in newton meters
+	 * @param freeSpeed the free speed in radians per second
+	 */
+	public void setMotor(double stallTorque, double freeSpeed) {
+		this.stallTorque = stallTorque;
+		this.freeSpeed = freeSpeed;
+	}
+
+	/**
+	 * Sets the inertia of each wheel together with the gearbox and motor reflected through it.
+	 *
+	 * @param wheelInertia the inertia in kilogram square meters
+	 */
+	public void setWheelInertia(double wheelInertia) {
+		this.wheelInertia = wheelInertia;
+	}
+
+	/**
+	 * Sets how the wheels grip the floor.
+	 *
+	 * @param frictionCoefficient the largest traction force as a fraction of the load on the wheel
+	 * @param slipReference the slip speed in meters per second at which traction saturates
+	 */
+	public void setTraction(double frictionCoefficient, double slipReference) {
+		this.frictionCoefficient = frictionCoefficient;
+		this.slipReference = slipReference;
+	}
+
+	public void setBatteryVoltage(double batteryVoltage) {
+		this.batteryVoltage = batteryVoltage;
+	}
+
+	/**
+	 * Sets the number of optical flow counts reported per foot of travel, matching the conversion factor in
+	 * {@link org.teamresistance.core.io.OFS}.
+	 *
+	 * @param countsPerFoot the number of counts reported per foot
+	 */
+	public void setCountsPerFoot(double countsPerFoot) {
+		this.countsPerFoot = countsPerFoot;
+	}
+
+	/**
+	 * Sets the rate at which the model is integrated.
+	 *
+	 * @param frequency the integration rate in hertz, at least 1 kHz is recommended
+	 */
+	public void setSubstepFrequency(double frequency) {
+		this.substep = (long) (1e9 / frequency);
+	}
+}
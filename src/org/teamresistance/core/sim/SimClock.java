@@ -0,0 +1,26 @@
+package org.teamresistance.core.sim;
+
+import org.teamresistance.core.util.ManualClock;
+
+/**
+ * {@link ManualClock} which only moves forward when the {@link Simulation} steps, so a simulation can run faster than
+ * real time.
+ */
+public class SimClock extends ManualClock {
+
+	/**
+	 * Creates a clock starting at zero.
+	 */
+	public SimClock() {
+		super();
+	}
+
+	/**
+	 * Creates a clock starting at the given time.
+	 * 
+	 * @param start the starting time in nanoseconds
+	 */
+	public SimClock(long start) {
+		super(start);
+	}
+}
@@ -0,0 +1,193 @@
+package org.teamresistance.core.sim;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.teamresistance.core.ModeStateMachine;
+import org.teamresistance.core.RobotMode;
+import org.teamresistance.core.io.IO;
+import org.teamresistance.core.io.sim.SimBackend;
+import org.teamresistance.core.subsystem.IUpdatable;
+import org.teamresistance.core.util.Clock;
+import org.teamresistance.core.util.Time;
+
+/**
+ * Runs the main loop of a robot headless on a workstation, driven by a {@link SimClock}.
+ * 
+ * <p>The simulation installs a {@link SimBackend} so devices created by robot code are simulated, then steps through a
+ * script of modes. Every cycle the {@link Plant}s are advanced by one period of simulated time, the clock is moved
+ * forward and the same {@link ModeStateMachine} used by {@link org.teamresistance.core.Robot} runs one cycle. Nothing
+ * waits on real time, so a match runs as fast as the robot code allows.
+ * 
+ * <pre><code>
+ * Simulation sim = new Simulation(0.01);
+ * sim.getModes().setRobot(new MyRobot());
+ * sim.getModes().set(RobotMode.TELEOP, new MyTeleop());
+ * sim.addMatch();
+ * sim.run();
+ * </code></pre>
+ */
+public class Simulation {
+	
+	private static Logger logger = Logger.getLogger(Simulation.class.getName());
+	
+	/**
+	 * Length of the autonomous period of a match in seconds.
+	 */
+	public static final double AUTONOMOUS_LENGTH = 15.0;
+	/**
+	 * Length of the teleop period of a match in seconds.
+	 */
+	public static final double TELEOP_LENGTH = 135.0;
+
+	/**
+	 * Part of the world being simulated, such as the robot's chassis, which is advanced once per cycle before robot
+	 * code runs.
+	 */
+	public interface Plant {
+		/**
+		 * Advances the plant by a period of simulated time.
+		 * 
+		 * @param nanos the length of the period in nanoseconds
+		 */
+		void step(long nanos);
+	}
+
+	private final SimClock clock = new SimClock();
+	private final SimBackend backend = new SimBackend();
+	private final ModeStateMachine modes = new ModeStateMachine();
+	private final long period;
+	
+	private final List<RobotMode> scriptModes = new ArrayList<>();
+	private final List<Long> scriptCycles = new ArrayList<>();
+	private final List<Plant> plants = new ArrayList<>();
+	
+	private long cycles = 0;
+	private long elapsed = 0;
+
+	/**
+	 * Creates a simulation whose loop runs at the given period and installs its backend with {@link IO}, so devices
+	 * should be created after this.
+	 * 
+	 * @param period the period of the main loop in seconds
+	 */
+	public Simulation(double period) {
+		this.period = (long) (period * Time.SECOND);
+		IO.setBackend(backend);
+	}
+	
+	/**
+	 * Adds a period of time spent in a mode to the end of the script.
+	 * 
+	 * @param mode the mode
+	 * @param seconds the length of time spent in the mode in seconds
+	 */
+	public void addPhase(RobotMode mode, double seconds) {
+		scriptModes.add(mode);
+		scriptCycles.add(Math.max(1, Math.round(seconds * Time.SECOND / period)));
+	}
+	
+	/**
+	 * Adds a full match to the end of the script: a moment disabled, autonomous, then teleop, then disabled again.
+	 */
+	public void addMatch() {
+		addPhase(RobotMode.DISABLED, 0.1);
+		addPhase(RobotMode.AUTONOMOUS, AUTONOMOUS_LENGTH);
+		addPhase(RobotMode.TELEOP, TELEOP_LENGTH);
+		addPhase(RobotMode.DISABLED, 0.1);
+	}
+	
+	/**
+	 * Adds a part of the world to be advanced every cycle.
+	 * 
+	 * @param plant the part of the world to be simulated
+	 */
+	public void addPlant(Plant plant) {
+		plants.add(plant);
+	}
+
+	/**
+	 * Initializes the robot and runs every phase of the script.
+	 */
+	public void run() {
+		Clock previousClock = Time.getClock();
+		Time.setClock(clock);
+		long start = System.nanoTime();
+		try {
+			modes.init();
+			for(int phase = 0; phase < scriptModes.size(); phase++) {
+				RobotMode mode = scriptModes.get(phase);
+				long phaseCycles = scriptCycles.get(phase);
+				for(long i = 0; i < phaseCycles; i++) {
+					step(mode);
+				}
+			}
+		} finally {
+			Time.setClock(previousClock);
+		}
+		long wall = System.nanoTime() - start;
+		logger.log(Level.INFO, "Simulated " + (elapsed / (double) Time.SECOND) + " s in " + (wall / (double) Time.SECOND)
+				+ " s over " + cycles + " cycles");
+	}
+	
+	/**
+	 * Runs a single cycle in the given mode, advancing every plant and the clock by one period first.
+	 * 
+	 * @param mode the mode to run the cycle in
+	 */
+	public void step(RobotMode mode) {
+		for(int i = 0; i < plants.size(); i++) {
+			plants.get(i).step(period);
+		}
+		clock.advance(period);
+		elapsed += period;
+		modes.cycle(mode);
+		cycles++;
+	}
+	
+	/**
+	 * Returns the state machine which runs the robot code, used to register the robot's {@link IUpdatable}s.
+	 * 
+	 * @return the state machine which runs the robot code
+	 */
+	public ModeStateMachine getModes() {
+		return modes;
+	}
+	
+	public SimBackend getBackend() {
+		return backend;
+	}
+	
+	public SimClock getClock() {
+		return clock;
+	}
+	
+	/**
+	 * Returns the period of the main loop in nanoseconds.
+	 * 
+	 * @return the period of the main loop in nanoseconds
+	 */
+	public long getPeriod() {
+		return period;
+	}
+	
+	/**
+	 * Returns the number of cycles run.
+	 * 
+	 * @return the number of cycles run
+	 */
+	public long getCycles() {
+		return cycles;
+	}
+	
+	/**
+	 * Returns the amount of simulated time which has passed in nanoseconds.
+	 * 
+	 * @return the amount of simulated time which has passed in nanoseconds
+	 */
+	public long getElapsed() {
+		return elapsed;
+	}
+}
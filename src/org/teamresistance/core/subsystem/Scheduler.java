@@ -0,0 +1,321 @@
+package org.teamresistance.core.subsystem;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.teamresistance.core.util.LoopWatchdog;
+
+/**
+ * Updates a set of {@link IUpdatable}s at their own rates from a single loop running at a fixed base rate.
+ *
+ * <p>Each registered {@link IUpdatable} runs every <code>divisor</code> cycles of the base loop, where the divisor is
+ * derived from the requested frequency, and is offset from cycle zero by its phase. Low rate work can be spread over
+ * different cycles by giving it different phases, which is done automatically when no phase is given.
+ *
+ * <p>The scheduler keeps a running estimate of how long each {@link IUpdatable} takes so the expected load of every
+ * cycle in the plan can be compared against the loop budget with {@link #getLoadPlan()}.
+ *
+ */
+public class Scheduler implements IUpdatable {
+
+	/**
+	 * Longest plan, in cycles, which will be examined when choosing phases or reporting load.
+	 */
+	public static final int MAX_PLAN_LENGTH = 1000;
+
+	private static Logger logger = Logger.getLogger(Scheduler.class.getName());
+
+	private final double baseFrequency;
+	private final List<Task> tasks = new ArrayList<>();
+
+	private LoopWatchdog watchdog;
+
+	private long cycle = 0;
+	private int lastCycleCount = 0;
+	private long lastCycleTime = 0;
+
+	/**
+	 * Creates a scheduler for a loop which calls {@link #update()} at the given frequency.
+	 *
+	 * @param baseFrequency the rate at which {@link #update()} is called, in hertz
+	 */
+	public Scheduler(double baseFrequency) {
+		if(baseFrequency <= 0) {
+			throw new IllegalArgumentException("Base frequency must be positive");
+		}
+		this.baseFrequency = baseFrequency;
+	}
+
+	/**
+	 * Registers an {@link IUpdatable} to be updated at the given frequency. The phase is chosen to keep the most heavily
+	 * loaded cycle as light as possible.
+	 *
+	 * @param updatable the {@link IUpdatable} to be updated
+	 * @param frequency the rate at which it should be updated, in hertz
+	 */
+	public void register(IUpdatable updatable, double frequency) {
+		int divisor = toDivisor(frequency);
+		register(updatable, divisor, choosePhase(divisor));
+	}
+
+	/**
+	 * Registers an {@link IUpdatable} to be updated at the given frequency offset by a number of base cycles.
+	 *
+	 * @param updatable the {@link IUpdatable} to be updated
+	 * @param frequency the rate at which it should be updated, in hertz
+	 * @param phase the number of base cycles by which its updates are offset
+	 */
+	public void register(IUpdatable updatable, double frequency, int phase) {
+		register(updatable, toDivisor(frequency), phase);
+	}
+
+	private void register(IUpdatable updatable, int divisor, int phase) {
+		Task task = new Task(updatable, divisor, ((phase % divisor) + divisor) % divisor);
+		// Line the countdown up with the current cycle so the phase holds for late registrations
+		task.countdown = (int) (((task.phase - cycle) % divisor + divisor) % divisor);
+		tasks.add(task);
+	}
+
+	/**
+	 * Removes an {@link IUpdatable} from the schedule.
+	 *
+	 * @param updatable the {@link IUpdatable} to be removed
+	 * @return whether the {@link IUpdatable} was registered
+	 */
+	public boolean unregister(IUpdatable updatable) {
+		for(int i = 0; i < tasks.size(); i++) {
+			if(tasks.get(i).updatable == updatable) {
+				tasks.remove(i);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Initializes every registered {@link IUpdatable}.
+	 */
+	@Override
+	public void init() {
+		for(int i = 0; i < tasks.size(); i++) {
+			tasks.get(i).updatable.init();
+		}
+	}
+
+	/**
+	 * Updates every registered {@link IUpdatable} which is due this cycle.
+	 */
+	@Override
+	public void update() {
+		long start = System.nanoTime();
+		int count = 0;
+		for(int i = 0; i < tasks.size(); i++) {
+			Task task = tasks.get(i);
+			if(task.countdown == 0) {
+				long taskStart = System.nanoTime();
+				if(watchdog != null) watchdog.setRunning(task.updatable);
+				task.updatable.update();
+				task.record(System.nanoTime() - taskStart);
+				task.countdown = task.divisor - 1;
+				count++;
+			} else {
+				task.countdown--;
+			}
+		}
+		if(watchdog != null) watchdog.setRunning(this);
+		cycle++;
+		lastCycleCount = count;
+		lastCycleTime = System.nanoTime() - start;
+	}
+
+	/**
+	 * Returns the expected time in nanoseconds spent in each cycle of the plan based on the measured average update
+	 * times. Index <code>i</code> of the result is the load of every cycle <code>n</code> where
+	 * <code>n % length == i</code>, as long as the least common multiple of the task divisors is at most
+	 * {@link #MAX_PLAN_LENGTH}. Otherwise only the first {@link #MAX_PLAN_LENGTH} cycles of the true period are given,
+	 * and the pattern does not repeat with the length of the result.
+	 *
+	 * @return the expected load in nanoseconds of each cycle in the plan
+	 */
+	public long[] getLoadPlan() {
+		long[] plan = new long[getPlanLength()];
+		for(Task task : tasks) {
+			long cost = (long) task.averageTime;
+			for(int i = task.phase; i < plan.length; i += task.divisor) {
+				plan[i] += cost;
+			}
+		}
+		return plan;
+	}
+
+	/**
+	 * Returns the number of {@link IUpdatable}s updated in each cycle of the plan.
+	 *
+	 * @return the number of {@link IUpdatable}s updated in each cycle of the plan
+	 * @see #getLoadPlan()
+	 */
+	public int[] getCountPlan() {
+		int[] plan = new int[getPlanLength()];
+		for(Task task : tasks) {
+			for(int i = task.phase; i < plan.length; i += task.divisor) {
+				plan[i]++;
+			}
+		}
+		return plan;
+	}
+
+	/**
+	 * Returns whether the expected load of every cycle in the plan fits within the given budget.
+	 *
+	 * @param budget the time available to the scheduler each cycle, in nanoseconds
+	 * @return whether the heaviest cycle in the plan fits within the budget
+	 */
+	public boolean fits(long budget) {
+		for(long load : getLoadPlan()) {
+			if(load > budget) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Logs the load plan and the heaviest cycle within it.
+	 */
+	public void logLoadPlan() {
+		long[] plan = getLoadPlan();
+		long max = 0;
+		int maxIndex = 0;
+		for(int i = 0; i < plan.length; i++) {
+			if(plan[i] > max) {
+				max = plan[i];
+				maxIndex = i;
+			}
+		}
+		logger.log(Level.INFO, tasks.size() + " tasks over a " + plan.length + " cycle plan, heaviest cycle " + maxIndex
+				+ " expected to take " + (max / 1000) + " us");
+	}
+
+	private int getPlanLength() {
+		long length = 1;
+		for(Task task : tasks) {
+			length = lcm(length, task.divisor);
+			if(length > MAX_PLAN_LENGTH) return MAX_PLAN_LENGTH;
+		}
+		return (int) length;
+	}
+
+	/**
+	 * Picks the phase for a new task which minimizes the number of tasks in the busiest cycle it lands on.
+	 */
+	private int choosePhase(int divisor) {
+		int[] counts = new int[(int) Math.min(lcm(getPlanLength(), divisor), MAX_PLAN_LENGTH)];
+		for(Task task : tasks) {
+			for(int i = task.phase; i < counts.length; i += task.divisor) {
+				counts[i]++;
+			}
+		}
+
+		int bestPhase = 0;
+		int bestLoad = Integer.MAX_VALUE;
+		for(int phase = 0; phase < divisor; phase++) {
+			int load = 0;
+			for(int i = phase; i < counts.length; i += divisor) {
+				load = Math.max(load, counts[i]);
+			}
+			if(load < bestLoad) {
+				bestLoad = load;
+				bestPhase = phase;
+			}
+		}
+		return bestPhase;
+	}
+
+	private int toDivisor(double frequency) {
+		if(frequency <= 0) {
+			throw new IllegalArgumentException("Frequency must be positive");
+		}
+		int divisor = (int) Math.max(1, Math.round(baseFrequency / frequency));
+		if(Math.abs(baseFrequency / divisor - frequency) > frequency * 0.01) {
+			logger.log(Level.FINE, "Rounded update rate of " + frequency + " Hz to " + (baseFrequency / divisor) + " Hz");
+		}
+		return divisor;
+	}
+
+	private static long lcm(long a, long b) {
+		long x = a;
+		long y = b;
+		while(y != 0) {
+			long t = x % y;
+			x = y;
+			y = t;
+		}
+		return a / x * b;
+	}
+
+	/**
+	 * Sets the watchdog which is told which {@link IUpdatable} is running, or null if there is none.
+	 *
+	 * @param watchdog the watchdog watching the thread which calls {@link #update()}
+	 */
+	public void setWatchdog(LoopWatchdog watchdog) {
+		this.watchdog = watchdog;
+	}
+
+	/**
+	 * Returns the rate at which {@link #update()} is expected to be called, in hertz.
+	 *
+	 * @return the rate at which {@link #update()} is expected to be called
+	 */
+	public double getBaseFrequency() {
+		return baseFrequency;
+	}
+
+	/**
+	 * Returns the number of {@link IUpdatable}s updated during the most recent cycle.
+	 *
+	 * @return the number of {@link IUpdatable}s updated during the most recent cycle
+	 */
+	public int getLastCycleCount() {
+		return lastCycleCount;
+	}
+
+	/**
+	 * Returns the time in nanoseconds spent in the most recent call to {@link #update()}.
+	 *
+	 * @return the time in nanoseconds spent in the most recent cycle
+	 */
+	public long getLastCycleTime() {
+		return lastCycleTime;
+	}
+
+	/**
+	 * An {@link IUpdatable} along with where it sits in the schedule.
+	 */
+	private static class Task {
+		// Weight given to the newest sample in the running average
+		private static final double SMOOTHING = 0.1;
+
+		private final IUpdatable updatable;
+		private final int divisor;
+		private final int phase;
+		private int countdown;
+		private double averageTime = 0;
+		private boolean measured = false;
+
+		private Task(IUpdatable updatable, int divisor, int phase) {
+			this.updatable = updatable;
+			this.divisor = divisor;
+			this.phase = phase;
+		}
+
+		private void record(long time) {
+			if(measured) {
+				averageTime += (time - averageTime) * SMOOTHING;
+			} else {
+				averageTime = time;
+				measured = true;
+			}
+		}
+	}
+}
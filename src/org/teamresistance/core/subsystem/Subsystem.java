@@ -1,12 +1,79 @@
 package org.teamresistance.core.subsystem;
 
-import java.awt.Robot;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.logging.Logger;
 
 public abstract class Subsystem implements IUpdatable {
 	
-	protected static Logger logger = Logger.getLogger(Subsystem.class.getName());
-	static {
-		logger.setParent(Logger.getLogger(Robot.class.getName()));
+	/**
+	 * Logger shared by every subsystem. It is the parent of every subsystem's own {@link #log}.
+	 */
+	protected static Logger logger = Logger.getLogger(SubsystemLog.SUBSYSTEMS);
+	
+	/**
+	 * Log of this subsystem, named after its class.
+	 */
+	protected final SubsystemLog log = new SubsystemLog(getClass());
+	
+	private final Set<Object> reads = new HashSet<>();
+	private final Set<Object> writes = new HashSet<>();
+	
+	/**
+	 * Declares resources, such as sensors or shared state, which this subsystem reads during {@link #update()}.
+	 * 
+	 * <p>Used by {@link SubsystemGroup} to decide which subsystems can be updated at the same time.
+	 * 
+	 * @param resources the resources read by this subsystem
+	 */
+	protected void reads(Object... resources) {
+		Collections.addAll(reads, resources);
+	}
+	
+	/**
+	 * Declares resources, such as actuators or shared state, which this subsystem writes during {@link #update()}.
+	 * 
+	 * <p>Used by {@link SubsystemGroup} to decide which subsystems can be updated at the same time.
+	 * 
+	 * @param resources the resources written by this subsystem
+	 */
+	protected void writes(Object... resources) {
+		Collections.addAll(writes, resources);
+	}
+	
+	/**
+	 * Returns the resources this subsystem has declared that it reads.
+	 * 
+	 * @return the resources this subsystem reads
+	 */
+	public Set<Object> getReads() {
+		return Collections.unmodifiableSet(reads);
+	}
+	
+	/**
+	 * Returns the resources this subsystem has declared that it writes.
+	 * 
+	 * @return the resources this subsystem writes
+	 */
+	public Set<Object> getWrites() {
+		return Collections.unmodifiableSet(writes);
+	}
+	
+	/**
+	 * Called after every subsystem in a {@link SubsystemGroup} has been updated, one subsystem at a time on the loop
+	 * thread. Subsystems updated in parallel should hold their outputs until this is called.
+	 */
+	public void commit() {
+		
+	}
+	
+	/**
+	 * Returns the log of this subsystem.
+	 * 
+	 * @return the log of this subsystem
+	 */
+	public SubsystemLog getLog() {
+		return log;
 	}
 }
@@ -0,0 +1,275 @@
+package org.teamresistance.core.subsystem;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Updates a set of {@link Subsystem}s, running those which do not depend on each other in parallel.
+ *
+ * <p>Dependencies are worked out from the resources each {@link Subsystem} declares with
+ * {@link Subsystem#reads(Object...)} and {@link Subsystem#writes(Object...)}. A subsystem depends on every subsystem
+ * added before it which writes something it reads or writes, or reads something it writes. Each cycle a subsystem is
+ * started on a small fixed thread pool as soon as everything it depends on has finished. Once all of them have finished
+ * {@link Subsystem#commit()} is called on each one in the order they were added, on the calling thread.
+ *
+ * <p>In serial mode every subsystem is simply updated in the order it was added, which is useful for debugging.
+ *
+ */
+public class SubsystemGroup implements IUpdatable {
+
+	private final List<Subsystem> subsystems = new ArrayList<>();
+	private final int threads;
+	private boolean parallel = true;
+
+	// Dependency graph, built by init()
+	private Node[] nodes = new Node[0];
+	private int[] roots = new int[0];
+	private ThreadPoolExecutor pool;
+
+	private final AtomicInteger pending = new AtomicInteger();
+	private final AtomicReference<Throwable> failure = new AtomicReference<>();
+	private volatile Thread waiter;
+
+	private long lastUpdateTime;
+
+	/**
+	 * Creates a group which updates its subsystems on a pool with one thread per available processor.
+	 */
+	public SubsystemGroup() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Creates a group which updates its subsystems on a pool with the given number of threads.
+	 *
+	 * @param threads the number of threads used to update subsystems in parallel
+	 */
+	public SubsystemGroup(int threads) {
+		this.threads = Math.max(1, threads);
+	}
+
+	/**
+	 * Adds a subsystem to the group. Subsystems should be added before {@link #init()} is called.
+	 *
+	 * @param subsystem the subsystem to be added
+	 */
+	public void add(Subsystem subsystem) {
+		subsystems.add(subsystem);
+	}
+
+	/**
+	 * Builds the dependency graph and initializes every subsystem in the order they were added.
+	 */
+	@Override
+	public void init() {
+		buildGraph();
+		for(Subsystem subsystem : subsystems) {
+			subsystem.init();
+		}
+	}
+
+	/**
+	 * Updates every subsystem, then commits every subsystem once all of them have been updated.
+	 */
+	@Override
+	public void update() {
+		long start = System.nanoTime();
+		if(parallel && nodes.length > 1) {
+			updateParallel();
+		} else {
+			for(int i = 0; i < subsystems.size(); i++) {
+				subsystems.get(i).update();
+			}
+		}
+		for(int i = 0; i < subsystems.size(); i++) {
+			subsystems.get(i).commit();
+		}
+		lastUpdateTime = System.nanoTime() - start;
+	}
+
+	private void updateParallel() {
+		if(pool == null) {
+			startPool();
+		}
+		for(Node node : nodes) {
+			node.remaining.set(node.dependencies);
+		}
+		failure.set(null);
+		waiter = Thread.currentThread();
+		pending.set(nodes.length);
+		for(int root : roots) {
+			pool.execute(nodes[root]);
+		}
+		// Barrier: wait until the last subsystem finishes
+		while(pending.get() > 0) {
+			LockSupport.park(this);
+		}
+		waiter = null;
+
+		Throwable t = failure.get();
+		if(t != null) {
+			if(t instanceof RuntimeException) throw (RuntimeException) t;
+			if(t instanceof Error) throw (Error) t;
+			throw new RuntimeException(t);
+		}
+	}
+
+	private void buildGraph() {
+		int size = subsystems.size();
+		nodes = new Node[size];
+		for(int i = 0; i < size; i++) {
+			nodes[i] = new Node(subsystems.get(i));
+		}
+
+		List<Integer> rootList = new ArrayList<>();
+		for(int j = 0; j < size; j++) {
+			Subsystem later = subsystems.get(j);
+			for(int i = 0; i < j; i++) {
+				Subsystem earlier = subsystems.get(i);
+				if(conflicts(earlier, later)) {
+					nodes[i].addDependent(j);
+					nodes[j].dependencies++;
+				}
+			}
+			if(nodes[j].dependencies == 0) {
+				rootList.add(j);
+			}
+		}
+		roots = new int[rootList.size()];
+		for(int i = 0; i < roots.length; i++) {
+			roots[i] = rootList.get(i);
+		}
+	}
+
+	private static boolean conflicts(Subsystem earlier, Subsystem later) {
+		for(Object resource : earlier.getWrites()) {
+			if(later.getReads().contains(resource) || later.getWrites().contains(resource)) return true;
+		}
+		for(Object resource : earlier.getReads()) {
+			if(later.getWrites().contains(resource)) return true;
+		}
+		return false;
+	}
+
+	private void startPool() {
+		final AtomicInteger count = new AtomicInteger();
+		pool = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(Math.max(1, nodes.length)), new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "Subsystem Worker " + count.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		pool.prestartAllCoreThreads();
+	}
+
+	/**
+	 * Stops the worker threads. They are started again if the group is updated in parallel mode.
+	 */
+	public void shutdown() {
+		if(pool != null) {
+			pool.shutdown();
+			pool = null;
+		}
+	}
+
+	/**
+	 * Returns whether independent subsystems are updated in parallel.
+	 *
+	 * @return whether independent subsystems are updated in parallel
+	 */
+	public boolean isParallel() {
+		return parallel;
+	}
+
+	/**
+	 * Sets whether independent subsystems are updated in parallel or one after another on the calling thread.
+	 *
+	 * @param parallel whether independent subsystems should be updated in parallel
+	 */
+	public void setParallel(boolean parallel) {
+		this.parallel = parallel;
+	}
+
+	/**
+	 * Returns the wall time in nanoseconds spent in the most recent call to {@link #update()}, including commits.
+	 *
+	 * @return the wall time in nanoseconds of the most recent update
+	 */
+	public long getLastUpdateTime() {
+		return lastUpdateTime;
+	}
+
+	/**
+	 * Returns the length of the longest chain of dependent subsystems, which bounds how much can run in parallel.
+	 *
+	 * @return the number of subsystems in the longest chain of dependencies
+	 */
+	public int getCriticalPathLength() {
+		int[] depth = new int[nodes.length];
+		int longest = 0;
+		for(int i = 0; i < nodes.length; i++) {
+			depth[i] = Math.max(depth[i], 1);
+			longest = Math.max(longest, depth[i]);
+			for(int j = 0; j < nodes[i].size; j++) {
+				int dependent = nodes[i].dependents[j];
+				depth[dependent] = Math.max(depth[dependent], depth[i] + 1);
+			}
+		}
+		return longest;
+	}
+
+	/**
+	 * A subsystem and its place in the dependency graph.
+	 */
+	private class Node implements Runnable {
+		private final Subsystem subsystem;
+		private int dependencies = 0;
+		private final AtomicInteger remaining = new AtomicInteger();
+		private int[] dependents = new int[0];
+		private int size = 0;
+
+		private Node(Subsystem subsystem) {
+			this.subsystem = subsystem;
+		}
+
+		private void addDependent(int index) {
+			if(size == dependents.length) {
+				int[] grown = new int[Math.max(4, size * 2)];
+				System.arraycopy(dependents, 0, grown, 0, size);
+				dependents = grown;
+			}
+			dependents[size++] = index;
+		}
+
+		@Override
+		public void run() {
+			try {
+				if(failure.get() == null) {
+					subsystem.update();
+				}
+			} catch (Throwable t) {
+				failure.compareAndSet(null, t);
+			} finally {
+				for(int i = 0; i < size; i++) {
+					Node dependent = nodes[dependents[i]];
+					if(dependent.remaining.decrementAndGet() == 0) {
+						pool.execute(dependent);
+					}
+				}
+				if(pending.decrementAndGet() == 0) {
+					LockSupport.unpark(waiter);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,225 @@
+package org.teamresistance.core.subsystem;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * A lightweight log for a single {@link Subsystem}.
+ *
+ * <p>Every subsystem gets its own {@link Logger} named after its class under {@link #SUBSYSTEMS}, which is itself a
+ * child of the logger of {@link org.teamresistance.core.Robot}. Records therefore reach the robot's log file, and the
+ * level of one subsystem or of every subsystem can be changed while the robot is running with
+ * {@link #setLevel(String, Level)} and {@link #setSubsystemsLevel(Level)}.
+ *
+ * <p>Messages are patterns in the style of {@link java.text.MessageFormat}, such as {@code "Moved to {0}"}, with up to
+ * three parameters. The level is checked before anything is done, so a disabled message costs a single comparison, and
+ * the pattern is only formatted by the log handler, which for the robot's log file is on a background thread. Records
+ * carry the subsystem's class as their source, so the caller is never looked up from the stack.
+ *
+ */
+public class SubsystemLog {
+
+	/**
+	 * Name of the logger of {@link org.teamresistance.core.Robot}, written out so the robot class is not loaded.
+	 */
+	public static final String ROOT = "org.teamresistance.core.Robot";
+
+	/**
+	 * Name of the logger every subsystem logger is a child of.
+	 */
+	public static final String SUBSYSTEMS = ROOT + ".subsystem";
+
+	// Loggers are only weakly held by the LogManager, so any logger given a level is kept here to stop it being
+	// collected and losing the level
+	private static final Map<String, Logger> configured = new HashMap<>();
+
+	private static final Logger subsystems = Logger.getLogger(SUBSYSTEMS);
+
+	private final Logger logger;
+	private final String source;
+
+	/**
+	 * Creates a log for a subsystem.
+	 *
+	 * @param subsystem the class of the subsystem
+	 */
+	public SubsystemLog(Class<?> subsystem) {
+		this(subsystem.getSimpleName().isEmpty() ? subsystem.getName() : subsystem.getSimpleName(), subsystem.getName());
+	}
+
+	/**
+	 * Creates a log with the given name under {@link #SUBSYSTEMS}.
+	 *
+	 * @param name the name of the log, which may itself contain dots to make a deeper hierarchy
+	 * @param source the class name attached to every record
+	 */
+	public SubsystemLog(String name, String source) {
+		this.logger = Logger.getLogger(SUBSYSTEMS + "." + name);
+		this.source = source;
+	}
+
+	/**
+	 * Sets the level of a single subsystem's log.
+	 *
+	 * @param name the name of the subsystem, which is the simple name of its class
+	 * @param level the lowest level which will be logged, or null to use the level of every subsystem
+	 */
+	public static synchronized void setLevel(String name, Level level) {
+		Logger logger = Logger.getLogger(SUBSYSTEMS + "." + name);
+		logger.setLevel(level);
+		configured.put(logger.getName(), logger);
+	}
+
+	/**
+	 * Sets the level of every subsystem log which has not been given its own level.
+	 *
+	 * @param level the lowest level which will be logged, or null to use the level of the robot's logger
+	 */
+	public static void setSubsystemsLevel(Level level) {
+		subsystems.setLevel(level);
+	}
+
+	public static Level getSubsystemsLevel() {
+		return subsystems.getLevel();
+	}
+
+	/**
+	 * Returns whether a message at the given level would be logged.
+	 *
+	 * @param level the level of the message
+	 * @return whether the message would be logged
+	 */
+	public boolean isLoggable(Level level) {
+		return logger.isLoggable(level);
+	}
+
+	public void severe(String message) {
+		log(Level.SEVERE, message, null, null, null, 0);
+	}
+
+	/**
+	 * Logs a message at {@link Level#SEVERE} along with the exception which caused it.
+	 *
+	 * @param message the message
+	 * @param thrown the exception
+	 */
+	public void severe(String message, Throwable thrown) {
+		if(!logger.isLoggable(Level.SEVERE)) return;
+		LogRecord record = record(Level.SEVERE, message);
+		record.setThrown(thrown);
+		logger.log(record);
+	}
+
+	public void severe(String pattern, Object a) {
+		log(Level.SEVERE, pattern, a, null, null, 1);
+	}
+
+	public void severe(String pattern, Object a, Object b) {
+		log(Level.SEVERE, pattern, a, b, null, 2);
+	}
+
+	public void severe(String pattern, Object a, Object b, Object c) {
+		log(Level.SEVERE, pattern, a, b, c, 3);
+	}
+
+	public void warning(String message) {
+		log(Level.WARNING, message, null, null, null, 0);
+	}
+
+	public void warning(String pattern, Object a) {
+		log(Level.WARNING, pattern, a, null, null, 1);
+	}
+
+	public void warning(String pattern, Object a, Object b) {
+		log(Level.WARNING, pattern, a, b, null, 2);
+	}
+
+	public void warning(String pattern, Object a, Object b, Object c) {
+		log(Level.WARNING, pattern, a, b, c, 3);
+	}
+
+	public void info(String message) {
+		log(Level.INFO, message, null, null, null, 0);
+	}
+
+	public void info(String pattern, Object a) {
+		log(Level.INFO, pattern, a, null, null, 1);
+	}
+
+	public void info(String pattern, Object a, Object b) {
+		log(Level.INFO, pattern, a, b, null, 2);
+	}
+
+	public void info(String pattern, Object a, Object b, Object c) {
+		log(Level.INFO, pattern, a, b, c, 3);
+	}
+
+	public void fine(String message) {
+		log(Level.FINE, message, null, null, null, 0);
+	}
+
+	public void fine(String pattern, Object a) {
+		log(Level.FINE, pattern, a, null, null, 1);
+	}
+
+	public void fine(String pattern, Object a, Object b) {
+		log(Level.FINE, pattern, a, b, null, 2);
+	}
+
+	public void fine(String pattern, Object a, Object b, Object c) {
+		log(Level.FINE, pattern, a, b, c, 3);
+	}
+
+	/**
+	 * Logs a message with up to three parameters if the level is enabled.
+	 */
+	private void log(Level level, String pattern, Object a, Object b, Object c, int count) {
+		if(!logger.isLoggable(level)) return;
+		LogRecord record = record(level, pattern);
+		switch(count) {
+		case 1:
+			record.setParameters(new Object[] { a });
+			break;
+		case 2:
+			record.setParameters(new Object[] { a, b });
+			break;
+		case 3:
+			record.setParameters(new Object[] { a, b, c });
+			break;
+		}
+		logger.log(record);
+	}
+
+	private LogRecord record(Level level, String message) {
+		LogRecord record = new LogRecord(level, message);
+		record.setLoggerName(logger.getName());
+		record.setSourceClassName(source);
+		record.setSourceMethodName(null);
+		return record;
+	}
+
+	/**
+	 * Sets the level of this log.
+	 *
+	 * @param level the lowest level which will be logged, or null to use the level of every subsystem
+	 */
+	public void setLevel(Level level) {
+		logger.setLevel(level);
+	}
+
+	public Level getLevel() {
+		return logger.getLevel();
+	}
+
+	/**
+	 * Returns the underlying logger, which is a child of {@link #SUBSYSTEMS}.
+	 *
+	 * @return the underlying logger
+	 */
+	public Logger getLogger() {
+		return logger;
+	}
+}
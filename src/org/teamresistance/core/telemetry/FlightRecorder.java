@@ -0,0 +1,244 @@
+package org.teamresistance.core.telemetry;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.teamresistance.core.CycleRecord;
+import org.teamresistance.core.util.Time;
+
+/**
+ * A black box which keeps the state of the robot over the last few thousand cycles in a memory-mapped ring file.
+ *
+ * <p>Every cycle a fixed-size snapshot is written into the next slot of the ring: the cycle number, when it started,
+ * the mode, the time since the previous cycle, how long each stage of the cycle took and the latest value of every
+ * registered channel. The slot is written directly into the mapped file, so recording is a few dozen stores with no
+ * system calls, and the data stays in the operating system's page cache if the JVM crashes. The page cache can be
+ * forced to flash every few seconds with {@link #setForceInterval(long)} to also survive losing power, at the cost of
+ * a system call on those cycles.
+ *
+ * <p>Each slot starts and ends with its cycle number. A slot which was only partly written when the program died has
+ * different numbers at each end and is ignored by {@link FlightRecorderReader}, which decodes the file after a crash.
+ *
+ */
+public class FlightRecorder {
+
+	private static Logger logger = Logger.getLogger(FlightRecorder.class.getName());
+
+	/**
+	 * Marks the start of a flight recorder file.
+	 */
+	public static final int MAGIC = 0x54524652; // "TRFR"
+	public static final int VERSION = 1;
+
+	/**
+	 * Default number of slots, which is a little over a minute at 50 Hz.
+	 */
+	public static final int DEFAULT_SLOTS = 4096;
+
+	// Slot layout
+	static final int SEQUENCE = 0;
+	static final int START = 8;
+	static final int DELTA = 16;
+	static final int MODE = 24;
+	static final int FLAGS = 28;
+	static final int TOTAL_TIME = 32;
+	static final int ROBOT_TIME = 36;
+	static final int INIT_TIME = 40;
+	static final int MODE_TIME = 44;
+	static final int SCHEDULER_TIME = 48;
+	static final int CHANNELS = 56;
+
+	static final int FLAG_TRANSITION = 1;
+
+	private final File file;
+	private final int slots;
+	private final List<Channel> channels = new ArrayList<>();
+	private double[] values = new double[0];
+
+	private MappedByteBuffer ring;
+	private int headerSize;
+	private int slotSize;
+	private long sequence = 0;
+
+	private long forceInterval = 0;
+	private long lastForce = 0;
+
+	/**
+	 * Creates a flight recorder with {@link #DEFAULT_SLOTS} slots.
+	 *
+	 * @param file the file to be written
+	 */
+	public FlightRecorder(File file) {
+		this(file, DEFAULT_SLOTS);
+	}
+
+	/**
+	 * Creates a flight recorder.
+	 *
+	 * @param file the file to be written
+	 * @param slots the number of cycles kept in the file
+	 */
+	public FlightRecorder(File file, int slots) {
+		this.file = file;
+		this.slots = slots;
+	}
+
+	/**
+	 * Registers a channel, such as a sensor reading or an output. Every channel must be registered before the recorder
+	 * is opened.
+	 *
+	 * @param name the name of the channel
+	 * @return the channel, which is used to set its value each cycle
+	 */
+	public Channel register(String name) {
+		if(ring != null) {
+			throw new IllegalStateException("Channels must be registered before the recorder is opened");
+		}
+		Channel channel = new Channel(name, channels.size());
+		channels.add(channel);
+		values = new double[channels.size()];
+		return channel;
+	}
+
+	/**
+	 * Creates the file, maps it and writes the header. Any previous file is overwritten, so it should be copied
+	 * somewhere safe before the robot code starts.
+	 *
+	 * @return whether the file could be created
+	 */
+	public synchronized boolean open() {
+		if(ring != null) return true;
+		byte[][] names = new byte[channels.size()][];
+		int size = 40;
+		for(int i = 0; i < names.length; i++) {
+			names[i] = channels.get(i).name.getBytes(StandardCharsets.UTF_8);
+			size += 2 + names[i].length;
+		}
+		headerSize = (size + 7) & ~7;
+		slotSize = CHANNELS + channels.size() * 8 + 8;
+
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			ring = channel.map(FileChannel.MapMode.READ_WRITE, 0, headerSize + (long) slots * slotSize);
+		} catch (IOException e) {
+			logger.log(Level.SEVERE, "Could not create flight recorder file " + file, e);
+			return false;
+		}
+		ring.order(ByteOrder.LITTLE_ENDIAN);
+		ring.putInt(MAGIC);
+		ring.putInt(VERSION);
+		ring.putInt(slotSize);
+		ring.putInt(slots);
+		ring.putInt(channels.size());
+		ring.putInt(headerSize);
+		// Lets the reader turn cycle start times, which come from the clock of Time, into wall clock times
+		ring.putLong(System.currentTimeMillis());
+		ring.putLong(Time.nanoTime());
+		for(int i = 0; i < names.length; i++) {
+			ring.putShort((short) names[i].length);
+			ring.put(names[i]);
+		}
+		for(int i = 0; i < slots; i++) {
+			int slot = headerSize + i * slotSize;
+			ring.putLong(slot + SEQUENCE, -1);
+			ring.putLong(slot + slotSize - 8, -1);
+		}
+		ring.force();
+		return true;
+	}
+
+	/**
+	 * Writes a snapshot of the cycle which just finished into the next slot.
+	 *
+	 * @param record the timing of the cycle
+	 * @param delta the time since the previous cycle in seconds
+	 */
+	public void record(CycleRecord record, double delta) {
+		if(ring == null) return;
+		int slot = headerSize + (int) (sequence % slots) * slotSize;
+		int end = slot + slotSize - 8;
+		// Invalidates the slot until it has been completely written
+		ring.putLong(end, -1);
+		ring.putLong(slot + SEQUENCE, sequence);
+		ring.putLong(slot + START, record.getStart());
+		ring.putDouble(slot + DELTA, delta);
+		ring.putInt(slot + MODE, record.getMode() == null ? -1 : record.getMode().ordinal());
+		ring.putInt(slot + FLAGS, record.isTransition() ? FLAG_TRANSITION : 0);
+		ring.putInt(slot + TOTAL_TIME, clamp(record.getTotalTime()));
+		ring.putInt(slot + ROBOT_TIME, clamp(record.getRobotTime()));
+		ring.putInt(slot + INIT_TIME, clamp(record.getInitTime()));
+		ring.putInt(slot + MODE_TIME, clamp(record.getModeTime()));
+		ring.putInt(slot + SCHEDULER_TIME, clamp(record.getSchedulerTime()));
+		for(int i = 0; i < values.length; i++) {
+			ring.putDouble(slot + CHANNELS + i * 8, values[i]);
+		}
+		ring.putLong(end, sequence);
+		sequence++;
+
+		if(forceInterval > 0 && record.getStart() - lastForce >= forceInterval) {
+			ring.force();
+			lastForce = record.getStart();
+		}
+	}
+
+	private static int clamp(long nanos) {
+		return (int) Math.min(nanos, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Returns the number of snapshots written since the recorder was opened.
+	 *
+	 * @return the number of snapshots written
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+
+	public int getSlots() {
+		return slots;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Sets how often the mapped file is forced to storage so it survives losing power, not just the JVM crashing.
+	 *
+	 * @param forceInterval the time between forces in nanoseconds, or 0 to leave it to the operating system
+	 */
+	public void setForceInterval(long forceInterval) {
+		this.forceInterval = forceInterval;
+	}
+
+	/**
+	 * A value kept in every snapshot. Setting it only stores the value; it is written by the next
+	 * {@link FlightRecorder#record(CycleRecord, double)}.
+	 */
+	public class Channel {
+		private final String name;
+		private final int index;
+
+		private Channel(String name, int index) {
+			this.name = name;
+			this.index = index;
+		}
+
+		public void set(double value) {
+			values[index] = value;
+		}
+
+		public String getName() {
+			return name;
+		}
+	}
+}
@@ -0,0 +1,252 @@
+package org.teamresistance.core.telemetry;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.teamresistance.core.RobotMode;
+
+/**
+ * Decodes the file written by a {@link FlightRecorder}, normally after the robot code crashed.
+ *
+ * <p>Run from the command line with the path of the file and optionally the number of seconds to show, it prints the
+ * last snapshots as comma separated values, oldest first.
+ *
+ */
+public class FlightRecorderReader {
+
+	private final String[] channels;
+	private final long openMillis;
+	private final long openNanos;
+	private final List<Snapshot> snapshots = new ArrayList<>();
+
+	/**
+	 * Reads every complete snapshot in a flight recorder file.
+	 *
+	 * @param file the file to be read
+	 * @throws IOException if the file cannot be read or is not a flight recorder file
+	 */
+	public FlightRecorderReader(File file) throws IOException {
+		ByteBuffer data;
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		data.order(ByteOrder.LITTLE_ENDIAN);
+
+		if(data.remaining() < 40 || data.getInt() != FlightRecorder.MAGIC) {
+			throw new IOException(file + " is not a flight recorder file");
+		}
+		int version = data.getInt();
+		if(version != FlightRecorder.VERSION) {
+			throw new IOException("Unsupported flight recorder version " + version);
+		}
+		int slotSize = data.getInt();
+		int slots = data.getInt();
+		channels = new String[data.getInt()];
+		int headerSize = data.getInt();
+		openMillis = data.getLong();
+		openNanos = data.getLong();
+		for(int i = 0; i < channels.length; i++) {
+			byte[] name = new byte[data.getShort()];
+			data.get(name);
+			channels[i] = new String(name, StandardCharsets.UTF_8);
+		}
+
+		RobotMode[] modes = RobotMode.values();
+		for(int i = 0; i < slots; i++) {
+			int slot = headerSize + i * slotSize;
+			if(slot + slotSize > data.limit()) break;
+			long sequence = data.getLong(slot + FlightRecorder.SEQUENCE);
+			if(sequence < 0 || data.getLong(slot + slotSize - 8) != sequence) continue;
+
+			Snapshot snapshot = new Snapshot();
+			snapshot.sequence = sequence;
+			snapshot.start = data.getLong(slot + FlightRecorder.START);
+			snapshot.delta = data.getDouble(slot + FlightRecorder.DELTA);
+			int mode = data.getInt(slot + FlightRecorder.MODE);
+			snapshot.mode = mode >= 0 && mode < modes.length ? modes[mode] : null;
+			snapshot.transition = (data.getInt(slot + FlightRecorder.FLAGS) & FlightRecorder.FLAG_TRANSITION) != 0;
+			snapshot.totalTime = data.getInt(slot + FlightRecorder.TOTAL_TIME);
+			snapshot.robotTime = data.getInt(slot + FlightRecorder.ROBOT_TIME);
+			snapshot.initTime = data.getInt(slot + FlightRecorder.INIT_TIME);
+			snapshot.modeTime = data.getInt(slot + FlightRecorder.MODE_TIME);
+			snapshot.schedulerTime = data.getInt(slot + FlightRecorder.SCHEDULER_TIME);
+			snapshot.values = new double[channels.length];
+			for(int j = 0; j < channels.length; j++) {
+				snapshot.values[j] = data.getDouble(slot + FlightRecorder.CHANNELS + j * 8);
+			}
+			snapshots.add(snapshot);
+		}
+		Collections.sort(snapshots);
+	}
+
+	/**
+	 * Returns every complete snapshot in the file, oldest first.
+	 *
+	 * @return every snapshot in the file
+	 */
+	public List<Snapshot> getSnapshots() {
+		return Collections.unmodifiableList(snapshots);
+	}
+
+	/**
+	 * Returns the snapshots of cycles which started within the given time of the last one, oldest first.
+	 *
+	 * @param seconds how far back from the last snapshot to go
+	 * @return the snapshots within the time
+	 */
+	public List<Snapshot> getLast(double seconds) {
+		if(snapshots.isEmpty()) return Collections.emptyList();
+		long from = snapshots.get(snapshots.size() - 1).start - (long) (seconds * 1e9);
+		int first = snapshots.size();
+		while(first > 0 && snapshots.get(first - 1).start >= from) {
+			first--;
+		}
+		return Collections.unmodifiableList(snapshots.subList(first, snapshots.size()));
+	}
+
+	/**
+	 * Returns the names of the channels, in the order their values appear in each snapshot.
+	 *
+	 * @return the names of the channels
+	 */
+	public String[] getChannels() {
+		return channels.clone();
+	}
+
+	/**
+	 * Returns the wall clock time at which a snapshot's cycle started.
+	 *
+	 * @param snapshot the snapshot
+	 * @return the time the cycle started in milliseconds since the epoch
+	 */
+	public long getWallTime(Snapshot snapshot) {
+		return openMillis + (snapshot.start - openNanos) / 1000000L;
+	}
+
+	/**
+	 * Prints the last snapshots of a flight recorder file as comma separated values.
+	 *
+	 * @param args the file and optionally the number of seconds to print, which defaults to 10
+	 * @throws IOException if the file cannot be read
+	 */
+	public static void main(String[] args) throws IOException {
+		if(args.length < 1) {
+			System.out.println("Usage: FlightRecorderReader <file> [seconds]");
+			return;
+		}
+		FlightRecorderReader reader = new FlightRecorderReader(new File(args[0]));
+		double seconds = args.length > 1 ? Double.parseDouble(args[1]) : 10;
+		SimpleDateFormat format = new SimpleDateFormat("HH:mm:ss.SSS");
+
+		StringBuilder line = new StringBuilder("cycle,time,mode,transition,delta,total_us,robot_us,init_us,mode_us,scheduler_us");
+		for(String channel : reader.channels) {
+			line.append(',').append(channel);
+		}
+		System.out.println(line);
+		for(Snapshot snapshot : reader.getLast(seconds)) {
+			line.setLength(0);
+			line.append(snapshot.sequence).append(',').append(format.format(new Date(reader.getWallTime(snapshot))))
+					.append(',').append(snapshot.mode).append(',').append(snapshot.transition).append(',')
+					.append(snapshot.delta).append(',').append(snapshot.totalTime / 1000).append(',')
+					.append(snapshot.robotTime / 1000).append(',').append(snapshot.initTime / 1000).append(',')
+					.append(snapshot.modeTime / 1000).append(',').append(snapshot.schedulerTime / 1000);
+			for(double value : snapshot.values) {
+				line.append(',').append(value);
+			}
+			System.out.println(line);
+		}
+	}
+
+	/**
+	 * The state of the robot at the end of a single cycle.
+	 */
+	public static class Snapshot implements Comparable<Snapshot> {
+		private long sequence;
+		private long start;
+		private double delta;
+		private RobotMode mode;
+		private boolean transition;
+		private int totalTime;
+		private int robotTime;
+		private int initTime;
+		private int modeTime;
+		private int schedulerTime;
+		private double[] values;
+
+		public long getSequence() {
+			return sequence;
+		}
+
+		/**
+		 * Returns the time at which the cycle started in nanoseconds.
+		 *
+		 * @return the time at which the cycle started in nanoseconds
+		 */
+		public long getStart() {
+			return start;
+		}
+
+		/**
+		 * Returns the time since the previous cycle in seconds, as reported by
+		 * {@link org.teamresistance.core.util.Time#getDelta()}.
+		 *
+		 * @return the time since the previous cycle in seconds
+		 */
+		public double getDelta() {
+			return delta;
+		}
+
+		public RobotMode getMode() {
+			return mode;
+		}
+
+		public boolean isTransition() {
+			return transition;
+		}
+
+		public int getTotalTime() {
+			return totalTime;
+		}
+
+		public int getRobotTime() {
+			return robotTime;
+		}
+
+		public int getInitTime() {
+			return initTime;
+		}
+
+		public int getModeTime() {
+			return modeTime;
+		}
+
+		public int getSchedulerTime() {
+			return schedulerTime;
+		}
+
+		/**
+		 * Returns the value of a channel.
+		 *
+		 * @param channel the index of the channel, in the order the channels were registered
+		 * @return the value of the channel
+		 */
+		public double getValue(int channel) {
+			return values[channel];
+		}
+
+		@Override
+		public int compareTo(Snapshot other) {
+			return Long.compare(sequence, other.sequence);
+		}
+	}
+}
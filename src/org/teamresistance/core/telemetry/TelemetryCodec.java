@@ -0,0 +1,495 @@
+package org.teamresistance.core.telemetry;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Map;
+
+import org.teamresistance.core.telemetry.TelemetryRecorder.Type;
+
+/**
+ * Compresses blocks of telemetry records column by column.
+ *
+ * <p>Every column of a block is encoded on its own so that neighbouring values, which are usually close to each other,
+ * can be stored as small differences:
+ * <ul>
+ * <li>Record times are stored as the difference between successive deltas, which is almost always zero for a loop
+ * running at a fixed rate, as zig-zag varints.</li>
+ * <li>Ints and longs are stored as deltas from the previous value as zig-zag varints.</li>
+ * <li>Doubles and floats are XORed with the previous value in the style of Facebook's Gorilla, so a repeated value
+ * takes one bit and a slowly changing value only stores the bits which changed.</li>
+ * <li>Booleans take one bit each.</li>
+ * </ul>
+ *
+ * <p>A block starts with its encoded length in bytes and the number of records it holds, so a file can be scanned
+ * without decoding it. Encoding is meant to be done on the background writer thread, never the loop thread.
+ *
+ */
+public class TelemetryCodec {
+
+	/**
+	 * Size in bytes of the length and count at the start of every block.
+	 */
+	public static final int BLOCK_HEADER_SIZE = 8;
+
+	private final Type[] types;
+	private final int[] offsets;
+	private final int recordSize;
+
+	private final BitWriter writer = new BitWriter();
+	private final BitReader reader = new BitReader();
+
+	/**
+	 * Creates a codec for records holding a time followed by signals of the given types.
+	 *
+	 * @param types the type of every signal in the order they appear in each record
+	 */
+	public TelemetryCodec(Type[] types) {
+		this.types = types.clone();
+		offsets = new int[types.length];
+		int offset = 8;
+		for(int i = 0; i < types.length; i++) {
+			offsets[i] = offset;
+			offset += types[i].getSize();
+		}
+		recordSize = offset;
+	}
+
+	/**
+	 * Returns the largest number of bytes a block of the given number of records can be encoded into.
+	 *
+	 * @param records the number of records in the block
+	 * @return the largest size of the encoded block in bytes
+	 */
+	public int getMaxEncodedSize(int records) {
+		// Every column is padded to a whole byte
+		long size = (getMaxEncodedBits(null) * records + 7) / 8;
+		for(Type type : types) {
+			size += (getMaxEncodedBits(type) * records + 7) / 8;
+		}
+		return (int) (BLOCK_HEADER_SIZE + size);
+	}
+
+	/**
+	 * Returns the most bits a single value of a type can be encoded into, or a record time for null.
+	 */
+	private static long getMaxEncodedBits(Type type) {
+		if(type == null) {
+			// A varint of a 64 bit difference
+			return 80;
+		}
+		switch(type) {
+		case BOOLEAN:
+			return 1;
+		case INT:
+			// A varint of a 33 bit difference
+			return 40;
+		case LONG:
+			return 80;
+		case FLOAT:
+			// A XORed value which opens a new window takes two control bits, 5 for the leading zeros, 6 for the length
+			// and then the value
+			return 2 + 5 + 6 + 32;
+		case DOUBLE:
+			return 2 + 5 + 6 + 64;
+		default:
+			throw new IllegalArgumentException("Unknown type " + type);
+		}
+	}
+
+	public int getRecordSize() {
+		return recordSize;
+	}
+
+	/**
+	 * Encodes every record between the position and limit of a buffer, leaving the buffer's position at its limit.
+	 *
+	 * @param records raw records in the layout written by {@link TelemetryRecorder}
+	 * @param out the buffer the block is written to, which must have at least {@link #getMaxEncodedSize(int)} bytes
+	 *            remaining
+	 * @return the number of bytes written
+	 */
+	public int encode(ByteBuffer records, ByteBuffer out) {
+		int base = records.position();
+		int count = (records.limit() - base) / recordSize;
+		int start = out.position();
+		out.putInt(0);
+		out.putInt(count);
+		writer.begin(out);
+
+		// Times
+		long previous = 0;
+		long delta = 0;
+		for(int i = 0; i < count; i++) {
+			long time = records.getLong(base + i * recordSize);
+			long newDelta = time - previous;
+			writer.writeVarLong(zigZag(newDelta - delta));
+			delta = newDelta;
+			previous = time;
+		}
+		writer.align();
+
+		for(int column = 0; column < types.length; column++) {
+			int position = base + offsets[column];
+			switch(types[column]) {
+			case BOOLEAN:
+				for(int i = 0; i < count; i++) {
+					writer.writeBits(records.get(position + i * recordSize) != 0 ? 1 : 0, 1);
+				}
+				break;
+			case INT: {
+				int last = 0;
+				for(int i = 0; i < count; i++) {
+					int value = records.getInt(position + i * recordSize);
+					writer.writeVarLong(zigZag((long) value - last));
+					last = value;
+				}
+				break;
+			}
+			case LONG: {
+				long last = 0;
+				for(int i = 0; i < count; i++) {
+					long value = records.getLong(position + i * recordSize);
+					writer.writeVarLong(zigZag(value - last));
+					last = value;
+				}
+				break;
+			}
+			case FLOAT:
+				xorEncoder.reset(32);
+				for(int i = 0; i < count; i++) {
+					xorEncoder.encode(Float.floatToRawIntBits(records.getFloat(position + i * recordSize)) & 0xFFFFFFFFL);
+				}
+				break;
+			case DOUBLE:
+				xorEncoder.reset(64);
+				for(int i = 0; i < count; i++) {
+					xorEncoder.encode(Double.doubleToRawLongBits(records.getDouble(position + i * recordSize)));
+				}
+				break;
+			}
+			writer.align();
+		}
+
+		int length = out.position() - start;
+		out.putInt(start, length);
+		records.position(base + count * recordSize);
+		return length;
+	}
+
+	/**
+	 * Decodes one block, appending its records to a buffer in the layout written by {@link TelemetryRecorder}.
+	 *
+	 * @param block a buffer positioned at the start of the block, which is left positioned after it
+	 * @param records the buffer the decoded records are written to
+	 * @return the number of records decoded
+	 */
+	public int decode(ByteBuffer block, ByteBuffer records) {
+		int start = block.position();
+		int length = block.getInt();
+		int count = block.getInt();
+		int base = records.position();
+		reader.begin(block);
+
+		long previous = 0;
+		long delta = 0;
+		for(int i = 0; i < count; i++) {
+			delta += unZigZag(reader.readVarLong());
+			previous += delta;
+			records.putLong(base + i * recordSize, previous);
+		}
+		reader.align();
+
+		for(int column = 0; column < types.length; column++) {
+			int position = base + offsets[column];
+			switch(types[column]) {
+			case BOOLEAN:
+				for(int i = 0; i < count; i++) {
+					records.put(position + i * recordSize, (byte) reader.readBits(1));
+				}
+				break;
+			case INT: {
+				int last = 0;
+				for(int i = 0; i < count; i++) {
+					last += (int) unZigZag(reader.readVarLong());
+					records.putInt(position + i * recordSize, last);
+				}
+				break;
+			}
+			case LONG: {
+				long last = 0;
+				for(int i = 0; i < count; i++) {
+					last += unZigZag(reader.readVarLong());
+					records.putLong(position + i * recordSize, last);
+				}
+				break;
+			}
+			case FLOAT:
+				xorDecoder.reset(32);
+				for(int i = 0; i < count; i++) {
+					records.putFloat(position + i * recordSize, Float.intBitsToFloat((int) xorDecoder.decode()));
+				}
+				break;
+			case DOUBLE:
+				xorDecoder.reset(64);
+				for(int i = 0; i < count; i++) {
+					records.putDouble(position + i * recordSize, Double.longBitsToDouble(xorDecoder.decode()));
+				}
+				break;
+			}
+			reader.align();
+		}
+
+		block.position(start + length);
+		records.position(base + count * recordSize);
+		return count;
+	}
+
+	/**
+	 * Reads the number of records in the block at the current position of a buffer without moving it.
+	 *
+	 * @param block a buffer positioned at the start of a block
+	 * @return the number of records in the block
+	 */
+	public static int peekCount(ByteBuffer block) {
+		return block.getInt(block.position() + 4);
+	}
+
+	/**
+	 * Reads the encoded length of the block at the current position of a buffer without moving it.
+	 *
+	 * @param block a buffer positioned at the start of a block
+	 * @return the length of the block in bytes, including its header
+	 */
+	public static int peekLength(ByteBuffer block) {
+		return block.getInt(block.position());
+	}
+
+	private static long zigZag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	private static long unZigZag(long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	private final XorEncoder xorEncoder = new XorEncoder();
+	private final XorDecoder xorDecoder = new XorDecoder();
+
+	/**
+	 * Gorilla style floating point compression. Each value is XORed with the one before it. A zero result is stored as a
+	 * single 0 bit. Otherwise a 1 bit is followed either by a 0 bit and the meaningful bits, if they fit within the
+	 * previous window of leading and trailing zeros, or by a 1 bit, 5 bits of leading zeros, 6 bits of length and the
+	 * meaningful bits.
+	 */
+	private class XorEncoder {
+		private int width;
+		private long previous;
+		private int leading;
+		private int trailing;
+
+		private void reset(int width) {
+			this.width = width;
+			previous = 0;
+			leading = Integer.MAX_VALUE;
+			trailing = 0;
+		}
+
+		private void encode(long value) {
+			long xor = value ^ previous;
+			previous = value;
+			if(xor == 0) {
+				writer.writeBits(0, 1);
+				return;
+			}
+			writer.writeBits(1, 1);
+			int newLeading = Math.min(31, Long.numberOfLeadingZeros(xor) - (64 - width));
+			int newTrailing = Long.numberOfTrailingZeros(xor);
+			if(newLeading >= leading && newTrailing >= trailing) {
+				writer.writeBits(0, 1);
+				writer.writeBits(xor >>> trailing, width - leading - trailing);
+			} else {
+				leading = newLeading;
+				trailing = newTrailing;
+				int length = width - leading - trailing;
+				writer.writeBits(1, 1);
+				writer.writeBits(leading, 5);
+				writer.writeBits(length - 1, 6);
+				writer.writeBits(xor >>> trailing, length);
+			}
+		}
+	}
+
+	private class XorDecoder {
+		private int width;
+		private long previous;
+		private int leading;
+		private int trailing;
+
+		private void reset(int width) {
+			this.width = width;
+			previous = 0;
+			leading = 0;
+			trailing = 0;
+		}
+
+		private long decode() {
+			if(reader.readBits(1) == 0) {
+				return previous;
+			}
+			if(reader.readBits(1) == 1) {
+				leading = (int) reader.readBits(5);
+				int length = (int) reader.readBits(6) + 1;
+				trailing = width - leading - length;
+			}
+			long xor = reader.readBits(width - leading - trailing) << trailing;
+			previous ^= xor;
+			return previous;
+		}
+	}
+
+	/**
+	 * Writes a stream of bits into a buffer, most significant bit first.
+	 */
+	private static class BitWriter {
+		private ByteBuffer out;
+		private long bits;
+		private int size;
+
+		private void begin(ByteBuffer out) {
+			this.out = out;
+			bits = 0;
+			size = 0;
+		}
+
+		private void writeBits(long value, int count) {
+			if(count == 0) return;
+			if(count > 32) {
+				writeBits(value >>> 32, count - 32);
+				count = 32;
+			}
+			bits = (bits << count) | (value & ((1L << count) - 1));
+			size += count;
+			while(size >= 8) {
+				size -= 8;
+				out.put((byte) (bits >>> size));
+			}
+		}
+
+		private void writeVarLong(long value) {
+			while((value & ~0x7FL) != 0) {
+				writeBits((value & 0x7F) | 0x80, 8);
+				value >>>= 7;
+			}
+			writeBits(value, 8);
+		}
+
+		/**
+		 * Pads the stream with zeros up to the next whole byte.
+		 */
+		private void align() {
+			if(size > 0) writeBits(0, 8 - size);
+		}
+	}
+
+	/**
+	 * Reads a stream of bits written by {@link BitWriter}.
+	 */
+	private static class BitReader {
+		private ByteBuffer in;
+		private long bits;
+		private int size;
+
+		private void begin(ByteBuffer in) {
+			this.in = in;
+			bits = 0;
+			size = 0;
+		}
+
+		private long readBits(int count) {
+			if(count == 0) return 0;
+			if(count > 32) {
+				long high = readBits(count - 32);
+				return (high << 32) | readBits(32);
+			}
+			while(size < count) {
+				bits = (bits << 8) | (in.get() & 0xFF);
+				size += 8;
+			}
+			size -= count;
+			return (bits >>> size) & ((1L << count) - 1);
+		}
+
+		private long readVarLong() {
+			long value = 0;
+			int shift = 0;
+			long b;
+			do {
+				b = readBits(8);
+				value |= (b & 0x7F) << shift;
+				shift += 7;
+			} while((b & 0x80) != 0);
+			return value;
+		}
+
+		private void align() {
+			size -= size % 8;
+		}
+	}
+
+	/**
+	 * Encodes every record of an uncompressed telemetry file and reports how well it compresses, which gives realistic
+	 * figures for logs of NavX and OFS signals.
+	 *
+	 * @param args the telemetry file and optionally the number of records per block
+	 * @throws IOException if the file cannot be read
+	 */
+	public static void main(String[] args) throws IOException {
+		if(args.length < 1) {
+			System.out.println("Usage: TelemetryCodec <telemetry file> [records per block]");
+			return;
+		}
+		TelemetryReader log = new TelemetryReader(new File(args[0]));
+		Map<String, Type> signals = log.getSignals();
+		TelemetryCodec codec = new TelemetryCodec(signals.values().toArray(new Type[signals.size()]));
+		int block = args.length > 1 ? Integer.parseInt(args[1]) : 1024;
+
+		ByteBuffer raw = log.getRawRecords();
+		int records = log.getRecords();
+		ByteBuffer out = ByteBuffer.allocateDirect(codec.getMaxEncodedSize(block)).order(ByteOrder.LITTLE_ENDIAN);
+		ByteBuffer decoded = ByteBuffer.allocateDirect(block * codec.recordSize).order(ByteOrder.LITTLE_ENDIAN);
+		long encoded = 0;
+		long time = 0;
+		boolean exact = true;
+		for(int pass = 0; pass < 5; pass++) {
+			encoded = 0;
+			time = 0;
+			for(int first = 0; first < records; first += block) {
+				int count = Math.min(block, records - first);
+				ByteBuffer slice = raw.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+				slice.position(first * codec.recordSize).limit((first + count) * codec.recordSize);
+				out.clear();
+				long start = System.nanoTime();
+				encoded += codec.encode(slice, out);
+				time += System.nanoTime() - start;
+
+				if(pass == 0) {
+					out.flip();
+					decoded.clear();
+					codec.decode(out, decoded);
+					for(int i = 0; i < count * codec.recordSize; i++) {
+						if(decoded.get(i) != raw.get(first * codec.recordSize + i)) exact = false;
+					}
+				}
+			}
+		}
+		long samples = (long) records * (signals.size() + 1);
+		long rawSize = (long) records * codec.recordSize;
+		System.out.println(records + " records of " + signals.size() + " signals, " + rawSize + " bytes raw, " + encoded
+				+ " bytes encoded");
+		System.out.println("Compression ratio " + (rawSize / (double) Math.max(1, encoded)) + ", "
+				+ (time / (double) Math.max(1, samples)) + " ns/sample to encode, round trip "
+				+ (exact ? "exact" : "MISMATCHED"));
+	}
+}
@@ -0,0 +1,286 @@
+package org.teamresistance.core.telemetry;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.teamresistance.core.telemetry.TelemetryRecorder.Type;
+
+/**
+ * Reads a file written by {@link TelemetryRecorder} back into one primitive array per signal for analysis.
+ *
+ * <p>The file is memory mapped and the signals are described by its header, so nothing needs to be known about what
+ * was recorded. Compressed files are decoded into memory when they are opened. A record or block cut short at the end
+ * of the file, such as when the robot lost power, is ignored.
+ *
+ */
+public class TelemetryReader {
+
+	private final ByteBuffer data;
+	private final int headerSize;
+	private final int recordSize;
+	private final int records;
+	private final boolean compressed;
+	private final Map<String, Column> columns = new LinkedHashMap<>();
+
+	/**
+	 * Opens and maps a telemetry file.
+	 *
+	 * @param file the file to be read
+	 * @throws IOException if the file cannot be read or is not a telemetry file
+	 */
+	public TelemetryReader(File file) throws IOException {
+		MappedByteBuffer mapped;
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		mapped.order(ByteOrder.LITTLE_ENDIAN);
+
+		if(mapped.remaining() < 8 || mapped.getInt() != TelemetryRecorder.MAGIC) {
+			throw new IOException(file + " is not a telemetry file");
+		}
+		int version = mapped.getInt();
+		if(version < 1 || version > TelemetryRecorder.VERSION) {
+			throw new IOException("Unsupported telemetry version " + version);
+		}
+		// Version 2 added the flags before the record size and signal count
+		if(mapped.remaining() < (version >= 2 ? 12 : 8)) {
+			throw new IOException(file + " has a truncated header");
+		}
+		int flags = version >= 2 ? mapped.getInt() : 0;
+		compressed = (flags & TelemetryRecorder.FLAG_COMPRESSED) != 0;
+		recordSize = mapped.getInt();
+		int count = mapped.getInt();
+		if(count < 0) {
+			throw new IOException(file + " has a corrupt header");
+		}
+		Type[] types = Type.values();
+		Type[] signalTypes = new Type[count];
+		int offset = 8;
+		try {
+			for(int i = 0; i < count; i++) {
+				int ordinal = mapped.get();
+				if(ordinal < 0 || ordinal >= types.length) {
+					throw new IOException(file + " has a signal of unknown type " + ordinal);
+				}
+				Type type = types[ordinal];
+				byte[] name = new byte[mapped.getShort()];
+				mapped.get(name);
+				columns.put(new String(name, StandardCharsets.UTF_8), new Column(type, offset));
+				signalTypes[i] = type;
+				offset += type.getSize();
+			}
+		} catch (BufferUnderflowException | NegativeArraySizeException e) {
+			throw new IOException(file + " has a truncated header", e);
+		}
+		// Records hold the time followed by every signal, so any other size would read outside them
+		if(recordSize != offset) {
+			throw new IOException(file + " has a corrupt header");
+		}
+
+		if(compressed) {
+			data = decode(mapped, new TelemetryCodec(signalTypes));
+			headerSize = 0;
+			records = data.capacity() / recordSize;
+		} else {
+			data = mapped;
+			headerSize = mapped.position();
+			records = (data.limit() - headerSize) / recordSize;
+		}
+	}
+
+	/**
+	 * Decodes every complete block after the header into a single buffer of raw records.
+	 */
+	private ByteBuffer decode(ByteBuffer blocks, TelemetryCodec codec) {
+		int start = blocks.position();
+		int total = 0;
+		while(blocks.remaining() >= TelemetryCodec.BLOCK_HEADER_SIZE) {
+			int length = TelemetryCodec.peekLength(blocks);
+			if(length < TelemetryCodec.BLOCK_HEADER_SIZE || length > blocks.remaining()) break;
+			total += TelemetryCodec.peekCount(blocks);
+			blocks.position(blocks.position() + length);
+		}
+		int end = blocks.position();
+
+		ByteBuffer decoded = ByteBuffer.allocate(total * recordSize).order(ByteOrder.LITTLE_ENDIAN);
+		blocks.position(start);
+		while(blocks.position() < end) {
+			codec.decode(blocks, decoded);
+		}
+		decoded.clear();
+		return decoded;
+	}
+
+	/**
+	 * Returns the number of complete records in the file.
+	 *
+	 * @return the number of records
+	 */
+	public int getRecords() {
+		return records;
+	}
+
+	/**
+	 * Returns whether the file was compressed by {@link TelemetryCodec}.
+	 *
+	 * @return whether the file was compressed
+	 */
+	public boolean isCompressed() {
+		return compressed;
+	}
+
+	/**
+	 * Returns every record in the layout written by {@link TelemetryRecorder}, uncompressed.
+	 */
+	ByteBuffer getRawRecords() {
+		ByteBuffer raw = data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		raw.position(headerSize).limit(headerSize + records * recordSize);
+		return raw.slice().order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/**
+	 * Returns the types of every signal in the order they were registered.
+	 *
+	 * @return the type of every signal by name
+	 */
+	public Map<String, Type> getSignals() {
+		Map<String, Type> signals = new LinkedHashMap<>();
+		for(Map.Entry<String, Column> entry : columns.entrySet()) {
+			signals.put(entry.getKey(), entry.getValue().type);
+		}
+		return Collections.unmodifiableMap(signals);
+	}
+
+	/**
+	 * Returns whether the file has a signal with the given name.
+	 *
+	 * @param name the name of the signal
+	 * @return whether the signal was recorded
+	 */
+	public boolean hasSignal(String name) {
+		return columns.containsKey(name);
+	}
+
+	/**
+	 * Returns the time of every record.
+	 *
+	 * @return the time of every record, normally in nanoseconds
+	 */
+	public long[] getTimes() {
+		long[] values = new long[records];
+		for(int i = 0; i < records; i++) {
+			values[i] = data.getLong(headerSize + i * recordSize);
+		}
+		return values;
+	}
+
+	/**
+	 * Returns every value of a signal, converted to doubles.
+	 *
+	 * @param name the name of the signal
+	 * @return every value of the signal
+	 */
+	public double[] getDoubles(String name) {
+		Column column = column(name);
+		double[] values = new double[records];
+		for(int i = 0; i < records; i++) {
+			int position = headerSize + i * recordSize + column.offset;
+			switch(column.type) {
+			case BOOLEAN:
+				values[i] = data.get(position);
+				break;
+			case INT:
+				values[i] = data.getInt(position);
+				break;
+			case LONG:
+				values[i] = data.getLong(position);
+				break;
+			case FLOAT:
+				values[i] = data.getFloat(position);
+				break;
+			case DOUBLE:
+				values[i] = data.getDouble(position);
+				break;
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Returns every value of a signal, converted to longs.
+	 *
+	 * @param name the name of the signal
+	 * @return every value of the signal
+	 */
+	public long[] getLongs(String name) {
+		Column column = column(name);
+		long[] values = new long[records];
+		for(int i = 0; i < records; i++) {
+			int position = headerSize + i * recordSize + column.offset;
+			switch(column.type) {
+			case BOOLEAN:
+				values[i] = data.get(position);
+				break;
+			case INT:
+				values[i] = data.getInt(position);
+				break;
+			case LONG:
+				values[i] = data.getLong(position);
+				break;
+			case FLOAT:
+				values[i] = (long) data.getFloat(position);
+				break;
+			case DOUBLE:
+				values[i] = (long) data.getDouble(position);
+				break;
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Returns every value of a signal as booleans, where any non-zero value is true.
+	 *
+	 * @param name the name of the signal
+	 * @return every value of the signal
+	 */
+	public boolean[] getBooleans(String name) {
+		double[] doubles = getDoubles(name);
+		boolean[] values = new boolean[records];
+		for(int i = 0; i < records; i++) {
+			values[i] = doubles[i] != 0;
+		}
+		return values;
+	}
+
+	private Column column(String name) {
+		Column column = columns.get(name);
+		if(column == null) {
+			throw new IllegalArgumentException("No signal named " + name);
+		}
+		return column;
+	}
+
+	/**
+	 * Where a signal is stored within each record.
+	 */
+	private static class Column {
+		private final Type type;
+		private final int offset;
+
+		private Column(Type type, int offset) {
+			this.type = type;
+			this.offset = offset;
+		}
+	}
+}
@@ -0,0 +1,494 @@
+package org.teamresistance.core.telemetry;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Records the values of a fixed set of signals once per cycle into a compact binary log.
+ *
+ * <p>Signals are registered once by name and {@link Type} before the recorder is started. Each cycle the loop sets the
+ * signals it has new values for and calls {@link #commit(long)}, which appends one fixed-width record holding the time
+ * and the latest value of every signal. Signals which were not set keep their previous value.
+ *
+ * <p>Records are written into a preallocated direct {@link ByteBuffer}. When it fills it is handed to a background
+ * thread which writes it to the file through a {@link FileChannel}, and recording continues into a second buffer. If
+ * the writer has not finished with the second buffer by the time the first fills again the records in it are dropped
+ * rather than making the loop wait. Nothing is allocated after {@link #start()}.
+ *
+ * <p>The file starts with a header describing every signal, so it can be read back by {@link TelemetryReader} without
+ * knowing what was recorded. If compression is enabled the writer thread encodes each buffer with a
+ * {@link TelemetryCodec} before writing it, which costs the loop thread nothing.
+ *
+ */
+public class TelemetryRecorder {
+
+	private static Logger logger = Logger.getLogger(TelemetryRecorder.class.getName());
+
+	/**
+	 * Marks the start of a telemetry file.
+	 */
+	public static final int MAGIC = 0x54524C47; // "TRLG"
+	public static final int VERSION = 2;
+
+	/**
+	 * Header flag set when the records are stored in blocks encoded by {@link TelemetryCodec}.
+	 */
+	public static final int FLAG_COMPRESSED = 1;
+
+	/**
+	 * Default size in bytes of each record buffer.
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+
+	private static final int TIME_SIZE = 8;
+
+	// Handed to the writer thread to tell it to stop
+	private static final ByteBuffer STOP = ByteBuffer.allocate(0);
+
+	/**
+	 * The type of a signal, which decides how many bytes it takes in each record.
+	 */
+	public enum Type {
+		BOOLEAN(1),
+		INT(4),
+		LONG(8),
+		FLOAT(4),
+		DOUBLE(8);
+
+		private final int size;
+
+		private Type(int size) {
+			this.size = size;
+		}
+
+		/**
+		 * Returns the number of bytes a value of this type takes in each record.
+		 *
+		 * @return the size of a value in bytes
+		 */
+		public int getSize() {
+			return size;
+		}
+	}
+
+	private final File file;
+	private final int bufferSize;
+	private final List<Signal> signals = new ArrayList<>();
+	private int recordSize = TIME_SIZE;
+
+	private ByteBuffer staging;
+	private ByteBuffer current;
+	private final BlockingQueue<ByteBuffer> full = new ArrayBlockingQueue<>(3);
+	private final BlockingQueue<ByteBuffer> free = new ArrayBlockingQueue<>(2);
+
+	private FileChannel channel;
+	private boolean compressed = false;
+	private TelemetryCodec codec;
+	private ByteBuffer encoded;
+	private Thread writer;
+	private volatile boolean running = false;
+
+	private long records = 0;
+	private long droppedRecords = 0;
+	private volatile long writtenBytes = 0;
+	private volatile long rawBytes = 0;
+	private volatile long encodeTime = 0;
+
+	/**
+	 * Creates a recorder which writes to the given file using buffers of {@link #DEFAULT_BUFFER_SIZE} bytes.
+	 *
+	 * @param file the file to be written
+	 */
+	public TelemetryRecorder(File file) {
+		this(file, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Creates a recorder which writes to the given file.
+	 *
+	 * @param file the file to be written
+	 * @param bufferSize the size in bytes of each of the two record buffers
+	 */
+	public TelemetryRecorder(File file, int bufferSize) {
+		this.file = file;
+		this.bufferSize = bufferSize;
+	}
+
+	/**
+	 * Registers a signal. Every signal must be registered before the recorder is started.
+	 *
+	 * @param name the name of the signal, which should be unique
+	 * @param type the type of the signal
+	 * @return the signal, which is used to set its value each cycle
+	 */
+	public Signal register(String name, Type type) {
+		if(running) {
+			throw new IllegalStateException("Signals must be registered before the recorder is started");
+		}
+		Signal signal = new Signal(name, type, recordSize);
+		signals.add(signal);
+		recordSize += type.size;
+		return signal;
+	}
+
+	/**
+	 * Opens the file, writes the header and starts the writer thread.
+	 *
+	 * @return whether the file could be opened
+	 */
+	public synchronized boolean start() {
+		if(running) return true;
+		int capacity = Math.max(1, bufferSize / recordSize) * recordSize;
+		staging = ByteBuffer.allocateDirect(recordSize).order(ByteOrder.LITTLE_ENDIAN);
+		current = ByteBuffer.allocateDirect(capacity).order(ByteOrder.LITTLE_ENDIAN);
+		free.clear();
+		full.clear();
+		free.offer(ByteBuffer.allocateDirect(capacity).order(ByteOrder.LITTLE_ENDIAN));
+		if(compressed) {
+			Type[] types = new Type[signals.size()];
+			for(int i = 0; i < types.length; i++) {
+				types[i] = signals.get(i).type;
+			}
+			codec = new TelemetryCodec(types);
+			encoded = ByteBuffer.allocateDirect(codec.getMaxEncodedSize(capacity / recordSize))
+					.order(ByteOrder.LITTLE_ENDIAN);
+		}
+
+		try {
+			channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING);
+			ByteBuffer header = createHeader();
+			while(header.hasRemaining()) {
+				writtenBytes += channel.write(header);
+			}
+		} catch (IOException e) {
+			logger.log(Level.SEVERE, "Could not open telemetry file " + file, e);
+			return false;
+		}
+
+		running = true;
+		writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				write();
+			}
+		}, "Telemetry Writer");
+		writer.setDaemon(true);
+		writer.setPriority(Thread.MIN_PRIORITY);
+		writer.start();
+		return true;
+	}
+
+	private ByteBuffer createHeader() {
+		byte[][] names = new byte[signals.size()][];
+		int size = 20;
+		for(int i = 0; i < names.length; i++) {
+			names[i] = signals.get(i).name.getBytes(StandardCharsets.UTF_8);
+			size += 3 + names[i].length;
+		}
+		ByteBuffer header = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(MAGIC);
+		header.putInt(VERSION);
+		header.putInt(compressed ? FLAG_COMPRESSED : 0);
+		header.putInt(recordSize);
+		header.putInt(signals.size());
+		for(int i = 0; i < names.length; i++) {
+			header.put((byte) signals.get(i).type.ordinal());
+			header.putShort((short) names[i].length);
+			header.put(names[i]);
+		}
+		header.flip();
+		return header;
+	}
+
+	/**
+	 * Appends a record holding the given time and the latest value of every signal. Called once per cycle from the
+	 * thread which sets the signals.
+	 *
+	 * @param time the time of the record, normally the start of the cycle in nanoseconds
+	 */
+	public void commit(long time) {
+		if(!running) return;
+		if(!current.hasRemaining()) {
+			ByteBuffer next = free.poll();
+			if(next == null) {
+				// The writer is still busy with the other buffer, so these records are lost
+				droppedRecords += current.capacity() / recordSize;
+				current.clear();
+			} else {
+				current.flip();
+				full.offer(current);
+				current = next;
+			}
+		}
+		staging.putLong(0, time);
+		staging.clear();
+		current.put(staging);
+		records++;
+	}
+
+	/**
+	 * Hands every committed record to the writer thread without waiting for it to be written.
+	 */
+	public void flush() {
+		if(!running || current.position() == 0) return;
+		ByteBuffer next = free.poll();
+		if(next != null) {
+			current.flip();
+			full.offer(current);
+			current = next;
+		}
+	}
+
+	/**
+	 * Writes every committed record, stops the writer thread and closes the file. Should be called from the thread
+	 * which commits records.
+	 */
+	public synchronized void close() {
+		if(!running) return;
+		running = false;
+		if(current.position() > 0) {
+			current.flip();
+			full.offer(current);
+		}
+		full.offer(STOP);
+		try {
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		try {
+			channel.close();
+		} catch (IOException e) {
+			logger.log(Level.SEVERE, "Could not write telemetry file " + file, e);
+		}
+	}
+
+	private void write() {
+		while(true) {
+			ByteBuffer buffer;
+			try {
+				buffer = full.take();
+			} catch (InterruptedException e) {
+				return;
+			}
+			if(buffer == STOP) return;
+			try {
+				writeBuffer(buffer);
+			} catch (IOException e) {
+				logger.log(Level.SEVERE, "Could not write telemetry file " + file, e);
+			}
+			buffer.clear();
+			free.offer(buffer);
+		}
+	}
+
+	private void writeBuffer(ByteBuffer buffer) throws IOException {
+		rawBytes += buffer.remaining();
+		if(codec != null) {
+			long start = System.nanoTime();
+			encoded.clear();
+			codec.encode(buffer, encoded);
+			encoded.flip();
+			encodeTime += System.nanoTime() - start;
+			buffer = encoded;
+		}
+		while(buffer.hasRemaining()) {
+			writtenBytes += channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Returns the signals in the order they were registered.
+	 *
+	 * @return the registered signals
+	 */
+	public List<Signal> getSignals() {
+		return signals;
+	}
+
+	/**
+	 * Returns the size in bytes of each record, including the time.
+	 *
+	 * @return the size of each record in bytes
+	 */
+	public int getRecordSize() {
+		return recordSize;
+	}
+
+	/**
+	 * Returns the number of records committed, including those which were dropped.
+	 *
+	 * @return the number of records committed
+	 */
+	public long getRecords() {
+		return records;
+	}
+
+	/**
+	 * Returns the number of records lost because the writer thread fell behind.
+	 *
+	 * @return the number of records dropped
+	 */
+	public long getDroppedRecords() {
+		return droppedRecords;
+	}
+
+	/**
+	 * Returns the number of bytes written to the file so far, including the header.
+	 *
+	 * @return the number of bytes written
+	 */
+	public long getWrittenBytes() {
+		return writtenBytes;
+	}
+
+	/**
+	 * Returns the number of bytes of records handed to the writer thread, before compression.
+	 *
+	 * @return the number of bytes of records written before compression
+	 */
+	public long getRawBytes() {
+		return rawBytes;
+	}
+
+	/**
+	 * Returns the total time in nanoseconds the writer thread has spent compressing records.
+	 *
+	 * @return the time spent compressing in nanoseconds
+	 */
+	public long getEncodeTime() {
+		return encodeTime;
+	}
+
+	public boolean isCompressed() {
+		return compressed;
+	}
+
+	/**
+	 * Sets whether records are compressed with a {@link TelemetryCodec} before being written. Must be set before the
+	 * recorder is started.
+	 *
+	 * @param compressed whether records should be compressed
+	 */
+	public void setCompressed(boolean compressed) {
+		if(running) {
+			throw new IllegalStateException("Compression must be set before the recorder is started");
+		}
+		this.compressed = compressed;
+	}
+
+	public boolean isRunning() {
+		return running;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * A recorded signal. Setting its value only changes the record being built; the value is written by the next
+	 * {@link TelemetryRecorder#commit(long)}.
+	 */
+	public class Signal {
+		private final String name;
+		private final Type type;
+		private final int offset;
+
+		private Signal(String name, Type type, int offset) {
+			this.name = name;
+			this.type = type;
+			this.offset = offset;
+		}
+
+		/**
+		 * Sets the value of the signal, converting it to the signal's type.
+		 *
+		 * @param value the new value
+		 */
+		public void set(double value) {
+			if(staging == null) return;
+			switch(type) {
+			case BOOLEAN:
+				staging.put(offset, (byte) (value != 0 ? 1 : 0));
+				break;
+			case INT:
+				staging.putInt(offset, (int) value);
+				break;
+			case LONG:
+				staging.putLong(offset, (long) value);
+				break;
+			case FLOAT:
+				staging.putFloat(offset, (float) value);
+				break;
+			case DOUBLE:
+				staging.putDouble(offset, value);
+				break;
+			}
+		}
+
+		/**
+		 * Sets the value of the signal, converting it to the signal's type.
+		 *
+		 * @param value the new value
+		 */
+		public void set(long value) {
+			if(staging == null) return;
+			switch(type) {
+			case BOOLEAN:
+				staging.put(offset, (byte) (value != 0 ? 1 : 0));
+				break;
+			case INT:
+				staging.putInt(offset, (int) value);
+				break;
+			case LONG:
+				staging.putLong(offset, value);
+				break;
+			case FLOAT:
+				staging.putFloat(offset, value);
+				break;
+			case DOUBLE:
+				staging.putDouble(offset, value);
+				break;
+			}
+		}
+
+		/**
+		 * Sets the value of the signal, converting it to the signal's type.
+		 *
+		 * @param value the new value
+		 */
+		public void set(boolean value) {
+			set(value ? 1L : 0L);
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public Type getType() {
+			return type;
+		}
+
+		/**
+		 * Returns the position in bytes of the signal within each record.
+		 *
+		 * @return the offset of the signal within each record
+		 */
+		public int getOffset() {
+			return offset;
+		}
+	}
+}
@@ -0,0 +1,326 @@
+package org.teamresistance.core.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.ErrorManager;
+import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.XMLFormatter;
+
+/**
+ * A log {@link Handler} which writes to a file on a background thread so logging never blocks the thread that logged.
+ *
+ * <p>{@link #publish(LogRecord)} only places the record into a bounded ring buffer which is allocated once when the
+ * handler is created. A low priority writer thread takes records out of the ring, formats them and writes them through
+ * a buffered {@link FileChannel}. The file is written whenever the buffer fills, whenever the ring runs empty and at
+ * least every flush interval.
+ *
+ * <p>Backpressure policy: if the ring is full the record being published is dropped and counted. Records already in the
+ * ring are never discarded, and the thread that logged never waits. The next time the writer catches up it writes a
+ * warning saying how many records were dropped, and the total is available from {@link #getDroppedRecords()}.
+ *
+ * <p>Because records are formatted later on another thread, the caller's class and method are not looked up unless
+ * {@link #setInferCaller(boolean)} is enabled, as finding them walks the stack of the thread that logged. A source set
+ * on the record by whatever logged it is always written. Parameters
+ * of a record are formatted when the record is written, not when it is published.
+ *
+ */
+public class AsyncFileHandler extends Handler {
+
+	/**
+	 * Default number of records the ring can hold.
+	 */
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	// Ring of pending records. Each slot has a sequence number which tells producers and the writer whether the slot
+	// is free to be filled or ready to be written.
+	private final int mask;
+	private final AtomicReferenceArray<LogRecord> slots;
+	private final AtomicLongArray sequences;
+	private final AtomicLong tail = new AtomicLong();
+	private long head = 0;
+
+	private final FileChannel channel;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+
+	private final Thread writer;
+	private volatile boolean running = true;
+	private volatile boolean flushRequested = false;
+	private volatile boolean inferCaller = false;
+	private long flushInterval = 50000000L;
+	private long pollInterval = 1000000L;
+
+	private final AtomicLong droppedRecords = new AtomicLong();
+	private long reportedDrops = 0;
+	private volatile long writtenRecords = 0;
+
+	/**
+	 * Creates a handler which writes XML to the given file with a ring of {@link #DEFAULT_CAPACITY} records.
+	 *
+	 * @param file the file to be written
+	 * @throws IOException if the file cannot be opened
+	 */
+	public AsyncFileHandler(File file) throws IOException {
+		this(file, new XMLFormatter(), DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates a handler which writes to the given file.
+	 *
+	 * @param file the file to be written
+	 * @param formatter the formatter used to format records on the writer thread
+	 * @param capacity the number of records the ring can hold, rounded up to a power of two
+	 * @throws IOException if the file cannot be opened
+	 */
+	public AsyncFileHandler(File file, Formatter formatter, int capacity) throws IOException {
+		int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+		mask = size - 1;
+		slots = new AtomicReferenceArray<>(size);
+		sequences = new AtomicLongArray(size);
+		for(int i = 0; i < size; i++) {
+			sequences.set(i, i);
+		}
+		setFormatter(formatter);
+
+		channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		append(formatter.getHead(this));
+
+		writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				write();
+			}
+		}, "Log Writer");
+		writer.setDaemon(true);
+		writer.setPriority(Thread.MIN_PRIORITY);
+		writer.start();
+	}
+
+	/**
+	 * Places a record into the ring to be written by the writer thread. Never blocks; if the ring is full the record
+	 * is dropped.
+	 *
+	 * @param record the record to be written
+	 */
+	@Override
+	public void publish(LogRecord record) {
+		if(!running || !isLoggable(record)) return;
+		// The record is shared with other handlers, so it is left alone otherwise. A source the logger did not set is
+		// then looked up by the formatter on the writer thread, which never finds a caller and writes none.
+		if(inferCaller) {
+			record.getSourceClassName();
+		}
+
+		long position;
+		int index;
+		while(true) {
+			position = tail.get();
+			index = (int) position & mask;
+			long difference = sequences.get(index) - position;
+			if(difference == 0) {
+				if(tail.compareAndSet(position, position + 1)) break;
+			} else if(difference < 0) {
+				droppedRecords.incrementAndGet();
+				return;
+			}
+		}
+		slots.lazySet(index, record);
+		sequences.lazySet(index, position + 1);
+	}
+
+	/**
+	 * Takes the next record out of the ring.
+	 *
+	 * @return the next record, or null if the ring is empty
+	 */
+	private LogRecord poll() {
+		int index = (int) head & mask;
+		if(sequences.get(index) != head + 1) return null;
+		LogRecord record = slots.get(index);
+		slots.lazySet(index, null);
+		sequences.lazySet(index, head + mask + 1);
+		head++;
+		return record;
+	}
+
+	private void write() {
+		long lastFlush = System.nanoTime();
+		while(running) {
+			boolean wrote = drain();
+			long now = System.nanoTime();
+			if(flushRequested || (!wrote && buffer.position() > 0) || now - lastFlush >= flushInterval) {
+				flushRequested = false;
+				flushBuffer();
+				lastFlush = now;
+			}
+			if(!wrote) {
+				LockSupport.parkNanos(this, pollInterval);
+			}
+		}
+	}
+
+	/**
+	 * Formats every record currently in the ring into the buffer.
+	 *
+	 * @return whether any record was written
+	 */
+	private boolean drain() {
+		boolean wrote = false;
+		LogRecord record;
+		while((record = poll()) != null) {
+			format(record);
+			writtenRecords++;
+			wrote = true;
+		}
+		long dropped = droppedRecords.get();
+		if(dropped != reportedDrops) {
+			LogRecord warning = new LogRecord(Level.WARNING, (dropped - reportedDrops)
+					+ " log records were dropped because the log writer fell behind");
+			warning.setLoggerName(AsyncFileHandler.class.getName());
+			warning.setSourceClassName(null);
+			warning.setSourceMethodName(null);
+			format(warning);
+			reportedDrops = dropped;
+		}
+		return wrote;
+	}
+
+	private void format(LogRecord record) {
+		try {
+			append(getFormatter().format(record));
+		} catch (Exception e) {
+			reportError(null, e, ErrorManager.FORMAT_FAILURE);
+		}
+	}
+
+	/**
+	 * Encodes text into the buffer, writing the buffer to the file each time it fills.
+	 */
+	private void append(String text) {
+		CharBuffer chars = CharBuffer.wrap(text);
+		encoder.reset();
+		while(true) {
+			CoderResult result = encoder.encode(chars, buffer, true);
+			if(result.isOverflow()) {
+				flushBuffer();
+			} else {
+				break;
+			}
+		}
+		while(encoder.flush(buffer).isOverflow()) {
+			flushBuffer();
+		}
+	}
+
+	private void flushBuffer() {
+		buffer.flip();
+		try {
+			while(buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		} catch (IOException e) {
+			reportError(null, e, ErrorManager.WRITE_FAILURE);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Asks the writer thread to write everything in the ring to the file. Does not wait for it to finish.
+	 */
+	@Override
+	public void flush() {
+		flushRequested = true;
+		LockSupport.unpark(writer);
+	}
+
+	/**
+	 * Stops the writer thread, writes every record still in the ring and closes the file.
+	 */
+	@Override
+	public synchronized void close() {
+		if(!running) return;
+		running = false;
+		LockSupport.unpark(writer);
+		try {
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		drain();
+		append(getFormatter().getTail(this));
+		flushBuffer();
+		try {
+			channel.close();
+		} catch (IOException e) {
+			reportError(null, e, ErrorManager.CLOSE_FAILURE);
+		}
+	}
+
+	/**
+	 * Returns the number of records dropped because the ring was full.
+	 *
+	 * @return the number of records dropped
+	 */
+	public long getDroppedRecords() {
+		return droppedRecords.get();
+	}
+
+	/**
+	 * Returns the number of records written to the file.
+	 *
+	 * @return the number of records written
+	 */
+	public long getWrittenRecords() {
+		return writtenRecords;
+	}
+
+	/**
+	 * Returns the number of records the ring can hold.
+	 *
+	 * @return the number of records the ring can hold
+	 */
+	public int getCapacity() {
+		return mask + 1;
+	}
+
+	public boolean isInferCaller() {
+		return inferCaller;
+	}
+
+	/**
+	 * Sets whether the class and method which logged each record are looked up before it is placed in the ring. This
+	 * walks the stack of the thread that logged, so it is disabled by default. Records which already carry a source
+	 * keep it either way.
+	 *
+	 * @param inferCaller whether the caller of each record should be looked up
+	 */
+	public void setInferCaller(boolean inferCaller) {
+		this.inferCaller = inferCaller;
+	}
+
+	/**
+	 * Sets the longest time records may wait in the buffer before being written to the file.
+	 *
+	 * @param flushInterval the longest time between writes in nanoseconds
+	 */
+	public void setFlushInterval(long flushInterval) {
+		this.flushInterval = flushInterval;
+	}
+}
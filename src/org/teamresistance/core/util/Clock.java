@@ -0,0 +1,40 @@
+package org.teamresistance.core.util;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Monotonic source of time in nanoseconds.
+ * 
+ * <p>Only differences between two readings of the same clock are meaningful. {@link #SYSTEM} follows real time, while
+ * a {@link ManualClock} only moves when told to, so a loop paced by it can run faster than real time.
+ * 
+ */
+public interface Clock {
+	
+	/**
+	 * Clock backed by {@link System#nanoTime()}.
+	 */
+	Clock SYSTEM = new Clock() {
+		@Override
+		public long nanoTime() {
+			return System.nanoTime();
+		}
+	};
+	
+	/**
+	 * Returns the current time in nanoseconds.
+	 * 
+	 * @return the current time in nanoseconds
+	 */
+	long nanoTime();
+	
+	/**
+	 * Waits for up to the given amount of this clock's time to pass. May return early, so callers should check the
+	 * time again.
+	 * 
+	 * @param nanos the longest time to wait in nanoseconds
+	 */
+	default void park(long nanos) {
+		LockSupport.parkNanos(nanos);
+	}
+}
@@ -0,0 +1,65 @@
+package org.teamresistance.core.util;
+
+/**
+ * {@link History} of a single number, interpolated linearly between samples.
+ *
+ */
+public class DoubleHistory extends History {
+
+	private final double[] values;
+
+	/**
+	 * Creates a history which holds the given number of samples.
+	 *
+	 * @param capacity the number of samples kept
+	 */
+	public DoubleHistory(int capacity) {
+		super(capacity);
+		values = new double[capacity];
+	}
+
+	/**
+	 * Adds a sample. Samples older than the newest one are ignored.
+	 *
+	 * @param time the time the value was measured in nanoseconds
+	 * @param value the value
+	 */
+	public void add(long time, double value) {
+		int index = append(time);
+		if(index >= 0) values[index] = value;
+	}
+
+	/**
+	 * Returns the value as of the given time.
+	 *
+	 * @param time the time in nanoseconds
+	 * @param defaultValue the value returned if there are no samples
+	 * @return the interpolated value at the time
+	 */
+	public double get(long time, double defaultValue) {
+		if(!locate(time)) return defaultValue;
+		return interpolate(values[lower()], values[upper()], fraction());
+	}
+
+	/**
+	 * Returns the value as of the given time.
+	 *
+	 * @param time the time in nanoseconds
+	 * @return the interpolated value at the time, or 0 if there are no samples
+	 */
+	public double get(long time) {
+		return get(time, 0);
+	}
+
+	/**
+	 * Interpolates between two neighbouring samples.
+	 *
+	 * @param a the earlier value
+	 * @param b the later value
+	 * @param t how far between the two samples the time falls, from 0 to 1
+	 * @return the interpolated value
+	 */
+	protected double interpolate(double a, double b, double t) {
+		return a + (b - a) * t;
+	}
+}
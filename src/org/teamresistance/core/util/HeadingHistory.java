@@ -0,0 +1,33 @@
+package org.teamresistance.core.util;
+
+/**
+ * {@link History} of a heading in degrees, interpolated along the shorter way around the circle so a heading which
+ * crossed 0 between two samples does not swing through 180.
+ *
+ * <p>Works both with headings which wrap at 360, such as {@link org.teamresistance.core.io.NavX#getNormalizedAngle()},
+ * and continuous ones, such as {@link org.teamresistance.core.io.NavX#getRawAngle()}. Interpolated values are near the
+ * earlier sample, so they may be slightly outside the range of wrapped samples.
+ *
+ */
+public class HeadingHistory extends DoubleHistory {
+
+	/**
+	 * Creates a history which holds the given number of samples.
+	 *
+	 * @param capacity the number of samples kept
+	 */
+	public HeadingHistory(int capacity) {
+		super(capacity);
+	}
+
+	@Override
+	protected double interpolate(double a, double b, double t) {
+		double difference = (b - a) % 360;
+		if(difference > 180) {
+			difference -= 360;
+		} else if(difference < -180) {
+			difference += 360;
+		}
+		return a + difference * t;
+	}
+}
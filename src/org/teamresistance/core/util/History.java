@@ -0,0 +1,164 @@
+package org.teamresistance.core.util;
+
+/**
+ * Base of the fixed-size ring buffers which keep a signal's recent samples along with the time each was taken, so the
+ * value of the signal can be found as of a moment in the past, such as when a camera frame was captured.
+ *
+ * <p>Samples must be added in order of time. Looking up a time is a binary search over the samples, and values between
+ * two samples are interpolated. Times before the oldest sample or after the newest return the oldest or newest value;
+ * nothing is extrapolated. Once full, each new sample replaces the oldest. Samples are stored in primitive arrays
+ * allocated up front, so adding them allocates nothing.
+ *
+ * <p>A history is meant to be written and read by the loop thread only.
+ *
+ */
+public abstract class History {
+
+	private final long[] times;
+	private int head = 0; // Index the next sample is written to
+	private int size = 0;
+
+	// Result of the most recent locate()
+	private int lower;
+	private int upper;
+	private double fraction;
+
+	/**
+	 * Creates a history which holds the given number of samples.
+	 *
+	 * @param capacity the number of samples kept
+	 */
+	protected History(int capacity) {
+		if(capacity < 1) {
+			throw new IllegalArgumentException("Capacity must be positive");
+		}
+		times = new long[capacity];
+	}
+
+	/**
+	 * Claims the slot for a new sample.
+	 *
+	 * @param time the time of the sample in nanoseconds
+	 * @return the index the sample's values should be stored at, or -1 if the time is before the newest sample
+	 */
+	protected int append(long time) {
+		if(size > 0 && time < getNewestTime()) return -1;
+		int index = head;
+		times[index] = time;
+		head = head + 1 == times.length ? 0 : head + 1;
+		if(size < times.length) size++;
+		return index;
+	}
+
+	/**
+	 * Finds the samples on either side of a time, which can then be read from {@link #lower()}, {@link #upper()} and
+	 * {@link #fraction()}.
+	 *
+	 * @param time the time in nanoseconds
+	 * @return false if there are no samples
+	 */
+	protected boolean locate(long time) {
+		if(size == 0) return false;
+		// Binary search for the last sample at or before the time, in order from oldest to newest
+		int low = 0;
+		int high = size - 1;
+		if(time <= times[physical(0)]) {
+			high = 0;
+		} else if(time >= times[physical(size - 1)]) {
+			low = size - 1;
+		} else {
+			while(high - low > 1) {
+				int middle = (low + high) >>> 1;
+				if(times[physical(middle)] <= time) {
+					low = middle;
+				} else {
+					high = middle;
+				}
+			}
+		}
+		lower = physical(low);
+		if(time <= times[lower] || low == size - 1) {
+			upper = lower;
+			fraction = 0;
+		} else {
+			upper = physical(low + 1);
+			fraction = (double) (time - times[lower]) / (times[upper] - times[lower]);
+		}
+		return true;
+	}
+
+	private int physical(int logical) {
+		int index = head - size + logical;
+		if(index < 0) index += times.length;
+		return index;
+	}
+
+	/**
+	 * Returns the index of the sample at or before the time given to the last {@link #locate(long)}.
+	 */
+	protected int lower() {
+		return lower;
+	}
+
+	/**
+	 * Returns the index of the sample after the time given to the last {@link #locate(long)}.
+	 */
+	protected int upper() {
+		return upper;
+	}
+
+	/**
+	 * Returns how far between the two located samples the time given to the last {@link #locate(long)} falls.
+	 */
+	protected double fraction() {
+		return fraction;
+	}
+
+	/**
+	 * Removes every sample.
+	 */
+	public void clear() {
+		head = 0;
+		size = 0;
+	}
+
+	/**
+	 * Returns the number of samples held.
+	 *
+	 * @return the number of samples held
+	 */
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Returns the largest number of samples held.
+	 *
+	 * @return the largest number of samples held
+	 */
+	public int getCapacity() {
+		return times.length;
+	}
+
+	/**
+	 * Returns the time of the oldest sample held.
+	 *
+	 * @return the time of the oldest sample in nanoseconds, or 0 if there are none
+	 */
+	public long getOldestTime() {
+		return size == 0 ? 0 : times[physical(0)];
+	}
+
+	/**
+	 * Returns the time of the newest sample.
+	 *
+	 * @return the time of the newest sample in nanoseconds, or 0 if there are none
+	 */
+	public long getNewestTime() {
+		return size == 0 ? 0 : times[physical(size - 1)];
+	}
+}
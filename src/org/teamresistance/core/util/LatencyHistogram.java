@@ -0,0 +1,158 @@
+package org.teamresistance.core.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of durations in nanoseconds with logarithmically sized buckets.
+ *
+ * <p>Each power of two is split into {@link #SUB_BUCKETS} linear buckets, so any recorded value is reported within
+ * 25% of its true value. All storage is allocated up front and {@link #record(long)} neither allocates nor locks.
+ * Only a single thread may record into a histogram, but any thread may take a {@link Snapshot} of it at any time.
+ *
+ */
+public class LatencyHistogram {
+
+	/**
+	 * Number of linear buckets each power of two is divided into.
+	 */
+	public static final int SUB_BUCKETS = 4;
+	private static final int SUB_BITS = 2;
+	/**
+	 * Largest power of two which can be recorded, roughly 68 seconds. Larger values land in the last bucket.
+	 */
+	private static final int MAX_EXPONENT = 36;
+	private static final int BUCKETS = (MAX_EXPONENT - SUB_BITS + 2) * SUB_BUCKETS;
+
+	// Slots past the buckets: total count and max
+	private static final int COUNT = BUCKETS;
+	private static final int MAX = BUCKETS + 1;
+
+	private final AtomicLongArray data = new AtomicLongArray(BUCKETS + 2);
+
+	/**
+	 * Records a single duration. Must only be called from one thread.
+	 *
+	 * @param nanos the duration in nanoseconds
+	 */
+	public void record(long nanos) {
+		if(nanos < 0) nanos = 0;
+		int index = indexOf(nanos);
+		// Single writer, so ordered stores are enough for readers to see consistent values
+		data.lazySet(index, data.get(index) + 1);
+		data.lazySet(COUNT, data.get(COUNT) + 1);
+		if(nanos > data.get(MAX)) {
+			data.lazySet(MAX, nanos);
+		}
+	}
+
+	/**
+	 * Copies the current contents of the histogram into a snapshot.
+	 *
+	 * @param snapshot the snapshot to be overwritten
+	 * @return the given snapshot
+	 */
+	public Snapshot snapshot(Snapshot snapshot) {
+		long count = 0;
+		for(int i = 0; i < BUCKETS; i++) {
+			long c = data.get(i);
+			snapshot.counts[i] = c;
+			count += c;
+		}
+		snapshot.count = count;
+		snapshot.max = data.get(MAX);
+		return snapshot;
+	}
+
+	/**
+	 * Takes a snapshot of the current contents of the histogram.
+	 *
+	 * @return a new snapshot
+	 */
+	public Snapshot snapshot() {
+		return snapshot(new Snapshot());
+	}
+
+	/**
+	 * Returns the number of durations recorded.
+	 *
+	 * @return the number of durations recorded
+	 */
+	public long getCount() {
+		return data.get(COUNT);
+	}
+
+	static int indexOf(long value) {
+		if(value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		if(exponent > MAX_EXPONENT) {
+			return BUCKETS - 1;
+		}
+		int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+	}
+
+	/**
+	 * Returns the largest value which falls into a bucket.
+	 */
+	static long upperBoundOf(int index) {
+		if(index < SUB_BUCKETS) {
+			return index;
+		}
+		int exponent = index / SUB_BUCKETS + SUB_BITS - 1;
+		long sub = index % SUB_BUCKETS;
+		return ((SUB_BUCKETS + sub + 1) << (exponent - SUB_BITS)) - 1;
+	}
+
+	/**
+	 * Point in time copy of a {@link LatencyHistogram}.
+	 */
+	public static class Snapshot {
+		private final long[] counts = new long[BUCKETS];
+		private long count;
+		private long max;
+
+		/**
+		 * Returns the value in nanoseconds which the given fraction of recorded durations are at or below.
+		 *
+		 * @param quantile the fraction of durations, between 0 and 1
+		 * @return the upper bound in nanoseconds of the bucket containing the quantile
+		 */
+		public long getQuantile(double quantile) {
+			if(count == 0) return 0;
+			long target = (long) Math.ceil(quantile * count);
+			if(target < 1) target = 1;
+			long seen = 0;
+			for(int i = 0; i < counts.length; i++) {
+				seen += counts[i];
+				if(seen >= target) {
+					return Math.min(upperBoundOf(i), max);
+				}
+			}
+			return max;
+		}
+
+		public long getP50() {
+			return getQuantile(0.5);
+		}
+
+		public long getP99() {
+			return getQuantile(0.99);
+		}
+
+		public long getMax() {
+			return max;
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+		@Override
+		public String toString() {
+			return "n=" + count + " p50=" + (getP50() / 1000) + "us p99=" + (getP99() / 1000) + "us max="
+					+ (max / 1000) + "us";
+		}
+	}
+}
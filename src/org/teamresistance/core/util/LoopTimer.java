@@ -0,0 +1,289 @@
+package org.teamresistance.core.util;
+
+/**
+ * Paces a loop at a fixed period measured from a monotonic {@link Clock} and keeps statistics about how well that
+ * period is being held. With a {@link ManualClock} waiting moves the clock instead of blocking, so the loop runs faster
+ * than real time.
+ *
+ * <p>Deadlines are laid out on a fixed grid starting at {@link #start()}, so a late cycle does not push every following
+ * cycle back. When a cycle runs past its deadline it is counted as an overrun and the timer either runs the missed
+ * cycles back to back or drops them, depending on its {@link OverrunPolicy}.
+ *
+ * <p>The timer can also be used without waiting by calling {@link #startCycle()} and {@link #endCycle()} around a
+ * loop that is paced by something else, which allows the jitter and utilization of both schemes to be compared.
+ *
+ */
+public class LoopTimer {
+
+	/**
+	 * Determines what happens to cycles whose start time has already passed when the loop gets around to them.
+	 */
+	public enum OverrunPolicy {
+		/**
+		 * Run missed cycles immediately, back to back, until the loop is caught up. If
+		 * {@link LoopTimer#getMaxCatchUp()} or more cycles were missed none of them are run, and every missed cycle is
+		 * skipped as with {@link #SKIP}.
+		 */
+		CATCH_UP,
+		/**
+		 * Drop every missed cycle and wait for the next deadline on the original grid.
+		 */
+		SKIP;
+	}
+
+	private final long period;
+	private Clock clock;
+	private OverrunPolicy overrunPolicy = OverrunPolicy.SKIP;
+	private int maxCatchUp = 2;
+
+	private long nextDeadline;
+	private long cycleStart;
+	private long previousCycleStart;
+	private boolean running = false;
+
+	// Statistics
+	private long cycles;
+	private long overruns;
+	private long skippedCycles;
+	private long lastPeriod;
+	private long maxJitter;
+	private long totalJitter;
+	private long busyTime;
+	private long elapsedTime;
+
+	/**
+	 * Creates a timer which paces cycles at the given period.
+	 *
+	 * @param period the length of a cycle in nanoseconds
+	 */
+	public LoopTimer(long period) {
+		this(period, Clock.SYSTEM);
+	}
+
+	/**
+	 * Creates a timer which paces cycles at the given period measured by the given clock.
+	 *
+	 * @param period the length of a cycle in nanoseconds
+	 * @param clock the clock deadlines are measured by
+	 */
+	public LoopTimer(long period, Clock clock) {
+		if(period <= 0) {
+			throw new IllegalArgumentException("Loop period must be positive");
+		}
+		this.period = period;
+		this.clock = clock;
+	}
+
+	/**
+	 * Creates a timer which paces cycles at the given period.
+	 *
+	 * @param seconds the length of a cycle in seconds
+	 * @return a new timer with the given period
+	 */
+	public static LoopTimer fromSeconds(double seconds) {
+		return new LoopTimer((long) (seconds * Time.SECOND));
+	}
+
+	/**
+	 * Lays out the deadline grid starting now. The first call to {@link #waitForNextCycle()} returns after one period.
+	 */
+	public void start() {
+		long now = clock.nanoTime();
+		nextDeadline = now + period;
+		cycleStart = now;
+		previousCycleStart = now;
+		running = false;
+	}
+
+	/**
+	 * Blocks until the next cycle should begin and then marks the start of that cycle.
+	 *
+	 * <p>If the previous cycle ran past the deadline this returns immediately and the overrun is counted. Whether the
+	 * missed cycles are run or dropped is determined by the {@link OverrunPolicy}.
+	 */
+	public void waitForNextCycle() {
+		if(running) {
+			endCycle();
+		}
+		long now = clock.nanoTime();
+		if(now < nextDeadline) {
+			while((now = clock.nanoTime()) < nextDeadline) {
+				clock.park(nextDeadline - now);
+			}
+			nextDeadline += period;
+		} else {
+			overruns++;
+			long missed = (now - nextDeadline) / period;
+			if(overrunPolicy == OverrunPolicy.CATCH_UP && missed < maxCatchUp) {
+				// Run the next cycle right away and keep the grid so the missed ones follow
+				nextDeadline += period;
+			} else {
+				// Drop the missed cycles and realign with the grid
+				skippedCycles += missed;
+				nextDeadline += (missed + 1) * period;
+			}
+		}
+		startCycle();
+	}
+
+	/**
+	 * Marks the start of a cycle. Only needs to be called directly when the loop is not paced by
+	 * {@link #waitForNextCycle()}.
+	 */
+	public void startCycle() {
+		long now = clock.nanoTime();
+		previousCycleStart = cycleStart;
+		cycleStart = now;
+		running = true;
+
+		if(cycles > 0) {
+			lastPeriod = cycleStart - previousCycleStart;
+			long jitter = Math.abs(lastPeriod - period);
+			if(jitter > maxJitter) maxJitter = jitter;
+			totalJitter += jitter;
+			elapsedTime += lastPeriod;
+		}
+		cycles++;
+	}
+
+	/**
+	 * Marks the end of the work done in a cycle. Only needs to be called directly when the loop is not paced by
+	 * {@link #waitForNextCycle()}.
+	 */
+	public void endCycle() {
+		if(running) {
+			busyTime += clock.nanoTime() - cycleStart;
+			running = false;
+		}
+	}
+
+	/**
+	 * Clears all collected statistics without disturbing the deadline grid.
+	 */
+	public void resetStatistics() {
+		cycles = 0;
+		overruns = 0;
+		skippedCycles = 0;
+		lastPeriod = 0;
+		maxJitter = 0;
+		totalJitter = 0;
+		busyTime = 0;
+		elapsedTime = 0;
+	}
+
+	/**
+	 * Returns the length of a cycle in nanoseconds.
+	 *
+	 * @return the length of a cycle in nanoseconds
+	 */
+	public long getPeriod() {
+		return period;
+	}
+
+	public Clock getClock() {
+		return clock;
+	}
+
+	/**
+	 * Sets the clock deadlines are measured by. {@link #start()} should be called again afterwards.
+	 *
+	 * @param clock the clock deadlines are measured by
+	 */
+	public void setClock(Clock clock) {
+		this.clock = clock;
+	}
+
+	public OverrunPolicy getOverrunPolicy() {
+		return overrunPolicy;
+	}
+
+	public void setOverrunPolicy(OverrunPolicy overrunPolicy) {
+		this.overrunPolicy = overrunPolicy;
+	}
+
+	/**
+	 * Returns the number of missed cycles at which {@link OverrunPolicy#CATCH_UP} stops catching up and skips every
+	 * missed cycle instead.
+	 *
+	 * @return the number of missed cycles at which they are skipped
+	 */
+	public int getMaxCatchUp() {
+		return maxCatchUp;
+	}
+
+	public void setMaxCatchUp(int maxCatchUp) {
+		this.maxCatchUp = maxCatchUp;
+	}
+
+	/**
+	 * Returns the time at which the current cycle started in nanoseconds.
+	 *
+	 * @return the time at which the current cycle started in nanoseconds
+	 */
+	public long getCycleStart() {
+		return cycleStart;
+	}
+
+	/**
+	 * Returns the number of cycles started since the statistics were last reset.
+	 *
+	 * @return the number of cycles started
+	 */
+	public long getCycles() {
+		return cycles;
+	}
+
+	/**
+	 * Returns the number of cycles which ran past their deadline.
+	 *
+	 * @return the number of cycles which ran past their deadline
+	 */
+	public long getOverruns() {
+		return overruns;
+	}
+
+	/**
+	 * Returns the number of cycles which were dropped because the loop fell behind.
+	 *
+	 * @return the number of cycles which were dropped
+	 */
+	public long getSkippedCycles() {
+		return skippedCycles;
+	}
+
+	/**
+	 * Returns the measured time in nanoseconds between the starts of the two most recent cycles.
+	 *
+	 * @return the measured length of the last cycle in nanoseconds
+	 */
+	public long getLastPeriod() {
+		return lastPeriod;
+	}
+
+	/**
+	 * Returns the largest difference in nanoseconds between a measured cycle length and the configured period.
+	 *
+	 * @return the largest jitter in nanoseconds
+	 */
+	public long getMaxJitter() {
+		return maxJitter;
+	}
+
+	/**
+	 * Returns the average difference in nanoseconds between a measured cycle length and the configured period.
+	 *
+	 * @return the average jitter in nanoseconds
+	 */
+	public double getAverageJitter() {
+		return cycles > 1 ? (double) totalJitter / (cycles - 1) : 0.0;
+	}
+
+	/**
+	 * Returns the fraction of elapsed time spent doing work rather than waiting for the next cycle.
+	 *
+	 * @return the fraction of time spent inside cycles, between 0 and 1
+	 */
+	public double getUtilization() {
+		return elapsedTime > 0 ? (double) busyTime / elapsedTime : 0.0;
+	}
+}
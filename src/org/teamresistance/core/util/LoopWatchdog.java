@@ -0,0 +1,270 @@
+package org.teamresistance.core.util;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.teamresistance.core.subsystem.IUpdatable;
+
+/**
+ * Watches a loop thread from a separate thread and samples its stack whenever a cycle runs past its deadline.
+ *
+ * <p>The loop thread calls {@link #beginCycle(long)} and {@link #endCycle()} around every cycle and
+ * {@link #setRunning(IUpdatable)} around every {@link IUpdatable} it dispatches. These are single volatile stores, so
+ * the watchdog costs the loop almost nothing. When a deadline is missed the watchdog captures the loop thread's stack
+ * a few times without stopping it, notes which {@link IUpdatable} was running for each sample and hands the report to
+ * a logging thread so the blocking call can be found after the match.
+ *
+ */
+public class LoopWatchdog {
+
+	private static Logger logger = Logger.getLogger(LoopWatchdog.class.getName());
+
+	private static final int MAX_PENDING_REPORTS = 16;
+
+	private final Thread target;
+	private final long budget;
+	private final Clock clock;
+
+	private int samples = 3;
+	private long sampleInterval = 2000000L;
+	private long pollInterval = 1000000L;
+
+	private volatile long deadline = 0;
+	private volatile long cycle = 0;
+	private volatile IUpdatable running;
+
+	private volatile long missedDeadlines = 0;
+	private volatile long droppedReports = 0;
+
+	private final BlockingQueue<Report> reports = new ArrayBlockingQueue<>(MAX_PENDING_REPORTS);
+	private Thread sampler;
+	private Thread writer;
+
+	/**
+	 * Creates a watchdog for the given loop thread.
+	 *
+	 * @param target the thread running the loop
+	 * @param budget the time in nanoseconds a cycle may take before its stack is sampled
+	 */
+	public LoopWatchdog(Thread target, long budget) {
+		this(target, budget, Clock.SYSTEM);
+	}
+
+	/**
+	 * Creates a watchdog for the given loop thread whose cycle start times are read from the given clock.
+	 *
+	 * @param target the thread running the loop
+	 * @param budget the time in nanoseconds a cycle may take before its stack is sampled
+	 * @param clock the clock cycle start times passed to {@link #beginCycle(long)} are read from
+	 */
+	public LoopWatchdog(Thread target, long budget, Clock clock) {
+		this.target = target;
+		this.budget = budget;
+		this.clock = clock;
+	}
+
+	/**
+	 * Starts the sampling and logging threads.
+	 */
+	public synchronized void start() {
+		if(sampler != null) return;
+		sampler = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				watch();
+			}
+		}, "Loop Watchdog");
+		sampler.setDaemon(true);
+		sampler.setPriority(Thread.MAX_PRIORITY);
+		sampler.start();
+
+		writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				write();
+			}
+		}, "Loop Watchdog Writer");
+		writer.setDaemon(true);
+		writer.setPriority(Thread.MIN_PRIORITY);
+		writer.start();
+	}
+
+	/**
+	 * Stops the sampling and logging threads.
+	 */
+	public synchronized void stop() {
+		if(sampler != null) {
+			sampler.interrupt();
+			writer.interrupt();
+			sampler = null;
+			writer = null;
+		}
+	}
+
+	/**
+	 * Marks the start of a cycle. Called from the loop thread.
+	 *
+	 * @param start the time in nanoseconds at which the cycle started
+	 */
+	public void beginCycle(long start) {
+		cycle = cycle + 1;
+		deadline = start + budget;
+	}
+
+	/**
+	 * Marks the end of a cycle. Called from the loop thread.
+	 */
+	public void endCycle() {
+		deadline = 0;
+		running = null;
+	}
+
+	/**
+	 * Marks which {@link IUpdatable} the loop thread is currently running. Called from the loop thread.
+	 *
+	 * @param updatable the {@link IUpdatable} now running, or null if none
+	 * @return the {@link IUpdatable} which was running before, so it can be restored
+	 */
+	public IUpdatable setRunning(IUpdatable updatable) {
+		IUpdatable previous = running;
+		running = updatable;
+		return previous;
+	}
+
+	private void watch() {
+		long reportedCycle = -1;
+		while(!Thread.currentThread().isInterrupted()) {
+			long currentDeadline = deadline;
+			long currentCycle = cycle;
+			if(currentDeadline == 0 || currentCycle == reportedCycle) {
+				LockSupport.parkNanos(pollInterval);
+				continue;
+			}
+			long now = clock.nanoTime();
+			if(now < currentDeadline) {
+				LockSupport.parkNanos(Math.min(currentDeadline - now, pollInterval));
+				continue;
+			}
+
+			reportedCycle = currentCycle;
+			missedDeadlines++;
+			Report report = new Report(currentCycle, samples);
+			for(int i = 0; i < samples && cycle == currentCycle; i++) {
+				if(i > 0) LockSupport.parkNanos(sampleInterval);
+				IUpdatable updatable = running;
+				StackTraceElement[] stack = target.getStackTrace();
+				if(cycle != currentCycle) break;
+				report.add(clock.nanoTime() - currentDeadline, updatable, stack);
+			}
+			if(!reports.offer(report)) {
+				droppedReports++;
+			}
+		}
+	}
+
+	private void write() {
+		while(!Thread.currentThread().isInterrupted()) {
+			try {
+				Report report = reports.take();
+				logger.log(Level.WARNING, report.toString());
+			} catch (InterruptedException e) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Returns the time in nanoseconds a cycle may take before its stack is sampled.
+	 *
+	 * @return the time in nanoseconds a cycle may take
+	 */
+	public long getBudget() {
+		return budget;
+	}
+
+	/**
+	 * Returns the number of cycles which ran past their deadline.
+	 *
+	 * @return the number of cycles which ran past their deadline
+	 */
+	public long getMissedDeadlines() {
+		return missedDeadlines;
+	}
+
+	/**
+	 * Returns the number of reports which were discarded because the logging thread fell behind.
+	 *
+	 * @return the number of reports which were discarded
+	 */
+	public long getDroppedReports() {
+		return droppedReports;
+	}
+
+	public int getSamples() {
+		return samples;
+	}
+
+	/**
+	 * Sets the largest number of stack samples taken of a single late cycle.
+	 *
+	 * @param samples the largest number of stack samples per late cycle
+	 */
+	public void setSamples(int samples) {
+		this.samples = samples;
+	}
+
+	public long getSampleInterval() {
+		return sampleInterval;
+	}
+
+	/**
+	 * Sets the time between stack samples of a late cycle.
+	 *
+	 * @param sampleInterval the time between samples in nanoseconds
+	 */
+	public void setSampleInterval(long sampleInterval) {
+		this.sampleInterval = sampleInterval;
+	}
+
+	/**
+	 * Stack samples taken during a single late cycle.
+	 */
+	private static class Report {
+		private final long cycle;
+		private final long[] lateness;
+		private final IUpdatable[] updatables;
+		private final StackTraceElement[][] stacks;
+		private int size = 0;
+
+		private Report(long cycle, int samples) {
+			this.cycle = cycle;
+			lateness = new long[samples];
+			updatables = new IUpdatable[samples];
+			stacks = new StackTraceElement[samples][];
+		}
+
+		private void add(long late, IUpdatable updatable, StackTraceElement[] stack) {
+			lateness[size] = late;
+			updatables[size] = updatable;
+			stacks[size] = stack;
+			size++;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder builder = new StringBuilder();
+			builder.append("Cycle ").append(cycle).append(" missed its deadline");
+			for(int i = 0; i < size; i++) {
+				builder.append("\n  Sample ").append(i + 1).append(", ").append(lateness[i] / 1000)
+						.append(" us late, running ").append(updatables[i] == null ? "framework" : updatables[i].getClass().getName());
+				for(StackTraceElement element : stacks[i]) {
+					builder.append("\n    at ").append(element);
+				}
+			}
+			return builder.toString();
+		}
+	}
+}
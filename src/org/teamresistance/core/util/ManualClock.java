@@ -0,0 +1,69 @@
+package org.teamresistance.core.util;
+
+/**
+ * {@link Clock} which only moves forward when it is told to.
+ * 
+ * <p>Waiting on the clock moves it forward instead of blocking, so a loop paced by a {@link LoopTimer} using this clock
+ * runs as fast as it can while every timestamp and delta it sees is exactly what it would be in real time. Useful for
+ * simulation, replaying logs and benchmarks.
+ * 
+ */
+public class ManualClock implements Clock {
+	
+	private volatile long time;
+	
+	/**
+	 * Creates a clock starting at zero.
+	 */
+	public ManualClock() {
+		this(0);
+	}
+	
+	/**
+	 * Creates a clock starting at the given time.
+	 * 
+	 * @param start the starting time in nanoseconds
+	 */
+	public ManualClock(long start) {
+		this.time = start;
+	}
+	
+	@Override
+	public long nanoTime() {
+		return time;
+	}
+	
+	/**
+	 * Moves the clock forward by the time which would have been waited.
+	 * 
+	 * @param nanos the time to move forward in nanoseconds
+	 */
+	@Override
+	public void park(long nanos) {
+		if(nanos > 0) advance(nanos);
+	}
+	
+	/**
+	 * Moves the clock forward.
+	 * 
+	 * @param nanos the amount of time to move forward in nanoseconds
+	 */
+	public void advance(long nanos) {
+		if(nanos < 0) {
+			throw new IllegalArgumentException("Time cannot move backwards");
+		}
+		time += nanos;
+	}
+	
+	/**
+	 * Sets the clock to the given time, such as the time of a record being replayed.
+	 * 
+	 * @param time the new time in nanoseconds, which may not be before the current time
+	 */
+	public void set(long time) {
+		if(time < this.time) {
+			throw new IllegalArgumentException("Time cannot move backwards");
+		}
+		this.time = time;
+	}
+}
@@ -1,6 +1,8 @@
 package org.teamresistance.core.util;
 
+import org.teamresistance.core.io.DriveOutput;
 import org.teamresistance.core.io.NavX;
+import org.teamresistance.core.io.WPILibBackend;
 
 import edu.wpi.first.wpilibj.RobotDrive;
 
@@ -11,7 +13,7 @@ import edu.wpi.first.wpilibj.RobotDrive;
  *
  */
 public class MecanumDrive {
-	private RobotDrive drive;
+	private DriveOutput drive;
 	private NavX gyro;
 	
 	// PID constants
@@ -25,6 +27,7 @@ public class MecanumDrive {
 	private double integral = 0.0; // Error integrated over time
 	
 	private long prevTime;
+	private Clock clock = null; // Follows Time unless set
 	
 	private double setpoint; // The target orientation for the robot
 	
@@ -37,7 +40,23 @@ public class MecanumDrive {
 	
 	private double minToMove = 0.17; // determined through testing forward strafing
 	
+	// Last values computed by drive(), kept for telemetry
+	private double lastError = 0.0;
+	private double lastX = 0.0;
+	private double lastY = 0.0;
+	private double lastRotation = 0.0;
+	
 	public MecanumDrive(RobotDrive drive, NavX gyro) {
+		this(new WPILibBackend.RobotDriveOutput(drive), gyro);
+	}
+	
+	/**
+	 * Creates a mecanum drive which sends its commands to the given drive train, such as a simulated one.
+	 * 
+	 * @param drive the drive train to be commanded
+	 * @param gyro the source of the robot's heading
+	 */
+	public MecanumDrive(DriveOutput drive, NavX gyro) {
 		this.drive = drive;
 		this.gyro = gyro;
 	}
@@ -50,7 +69,7 @@ public class MecanumDrive {
 		this.kF = f;
 		this.prevError = 0.0;
 		this.integral = 0.0;
-		this.prevTime = System.currentTimeMillis();
+		this.prevTime = nanoTime();
 	}
 	
 	public void drive(double x, double y, double angle) {
@@ -58,8 +77,8 @@ public class MecanumDrive {
 	}
 	
 	public void drive(double x, double y, double rotation, double knobAngle) {
-		long curTime = System.currentTimeMillis(); 
-		double deltaTime = (curTime - prevTime) / 1000.0;
+		long curTime = nanoTime();
+		double deltaTime = (curTime - prevTime) / (double) Time.SECOND;
 		double gyroAngle = gyro.getRawAngle();
 		switch(driveState) {
 		case KNOB_FIELD:
@@ -93,10 +112,11 @@ public class MecanumDrive {
 				result = 0;
 			}
 			
-			drive.mecanumDrive_Cartesian(x, y, result, gyroAngle);
+			lastError = error;
+			output(x, y, result, gyroAngle);
 			break;
 		case STICK_FIELD:
-			drive.mecanumDrive_Cartesian(x, y, rotation, gyroAngle);
+			output(x, y, rotation, gyroAngle);
 			break;	
 		case ROTATE_PID:
 			gyroAngle = gyro.getNormalizedAngle();
@@ -152,7 +172,8 @@ public class MecanumDrive {
 //	        	}
 //	        }
 	        
-			drive.mecanumDrive_Cartesian(x, y, result, gyroAngle);
+			lastError = error;
+			output(x, y, result, gyroAngle);
 			break;
 		case STICK_FIELD2:
 			// currently untested
@@ -183,7 +204,7 @@ public class MecanumDrive {
 		    x = y * sinA + x * cosA;
 		    y = y * cosA - x * sinA;
 		    
-			drive.mecanumDrive_Cartesian(x, y, rotation, gyroAngle);
+			output(x, y, rotation, gyroAngle);
 			break;
 		}
 	}
@@ -224,6 +245,17 @@ public class MecanumDrive {
 //		}
 //	}
 	
+	private long nanoTime() {
+		return clock != null ? clock.nanoTime() : Time.nanoTime();
+	}
+	
+	private void output(double x, double y, double rotation, double gyroAngle) {
+		lastX = x;
+		lastY = y;
+		lastRotation = rotation;
+		drive.mecanumDrive(x, y, rotation, gyroAngle);
+	}
+	
 	// If the error is less than or equal to the tolerance it is on target
 	private boolean onTarget(double error) {
 		return Math.abs(error) <= setpoint * tolerance;
@@ -246,6 +278,42 @@ public class MecanumDrive {
 		}
 	}
 	
+	/**
+	 * Returns the heading error in degrees used by the most recent PID update, after wrapping and deadbands.
+	 * 
+	 * @return the most recent heading error in degrees
+	 */
+	public double getLastError() {
+		return lastError;
+	}
+	
+	/**
+	 * Returns the strafe output most recently sent to the drive train.
+	 * 
+	 * @return the most recent x output
+	 */
+	public double getLastX() {
+		return lastX;
+	}
+	
+	/**
+	 * Returns the forward output most recently sent to the drive train.
+	 * 
+	 * @return the most recent y output
+	 */
+	public double getLastY() {
+		return lastY;
+	}
+	
+	/**
+	 * Returns the rotation output most recently sent to the drive train.
+	 * 
+	 * @return the most recent rotation output
+	 */
+	public double getLastRotation() {
+		return lastRotation;
+	}
+	
 	public void setMinToMove(double minToMove) {
 		this.minToMove = minToMove;		
 	}
@@ -258,14 +326,44 @@ public class MecanumDrive {
 		return driveState;
 	}
 	
+	/**
+	 * Returns the WPILib drive this class commands.
+	 * 
+	 * @return the WPILib drive this class commands, or null if it commands some other {@link DriveOutput}
+	 */
 	public RobotDrive getDrive() {
-		return drive;
+		if(drive instanceof WPILibBackend.RobotDriveOutput) {
+			return ((WPILibBackend.RobotDriveOutput) drive).getRobotDrive();
+		}
+		return null;
 	}
 
 	public void setDrive(RobotDrive drive) {
+		this.drive = new WPILibBackend.RobotDriveOutput(drive);
+	}
+	
+	public DriveOutput getDriveOutput() {
+		return drive;
+	}
+	
+	public void setDriveOutput(DriveOutput drive) {
 		this.drive = drive;
 	}
 
+	public Clock getClock() {
+		return clock != null ? clock : Time.getClock();
+	}
+
+	/**
+	 * Sets the clock used to measure time between updates, such as a simulated clock. By default the clock of
+	 * {@link Time} is used.
+	 * 
+	 * @param clock the clock used to measure time between updates, or null to follow {@link Time}
+	 */
+	public void setClock(Clock clock) {
+		this.clock = clock;
+	}
+
 	public NavX getGyro() {
 		return gyro;
 	}
@@ -3,24 +3,48 @@ package org.teamresistance.core.util;
 /**
  * Static class used to track elapsed time between updates.
  * 
+ * <p>Time is kept as a count of nanoseconds in a {@code long}, read from an injectable {@link Clock}, so deltas are
+ * exact however long the robot has been running.
+ * 
  * @author Frank McCoy
  *
  */
 public class Time {
 
 	public static final long SECOND = 1000000000L;
-	private static double delta;
-	private static double previousTime = getTime();
+	private static Clock clock = Clock.SYSTEM;
+	private static long cycleTime = clock.nanoTime();
+	private static long delta;
 	
 	/**
-	 * Update the amount of time since the last call to this function.
+	 * Sets the clock time is read from, such as a {@link ManualClock} which runs faster than real time.
+	 * 
+	 * @param clock the clock time should be read from
+	 */
+	public static void setClock(Clock clock) {
+		Time.clock = clock;
+		cycleTime = clock.nanoTime();
+		delta = 0;
+	}
+	
+	/**
+	 * Returns the clock time is read from.
+	 * 
+	 * @return the clock time is read from
+	 */
+	public static Clock getClock() {
+		return clock;
+	}
+	
+	/**
+	 * Update the amount of time since the last call to this function. Called once at the start of every cycle.
 	 * 
 	 * <p>The first invocation of this function <b>may</b> not result in an expected value.
 	 */
 	public static void update() {
-		double currentTime = getTime();
-		delta = currentTime - previousTime;
-		previousTime = currentTime;
+		long now = clock.nanoTime();
+		delta = now - cycleTime;
+		cycleTime = now;
 	}
 	
 	/**
@@ -29,12 +53,40 @@ public class Time {
 	 * @return the amount of time passed in seconds between calss to update()
 	 */
 	public static double getDelta() {
+		return delta / (double) SECOND;
+	}
+	
+	/**
+	 * Returns the amount of time passed in nanoseconds between the previous two successive calls to {@link #update()}.
+	 * 
+	 * @return the amount of time passed in nanoseconds between calls to update()
+	 */
+	public static long getDeltaNanos() {
 		return delta;
 	}
 	
+	/**
+	 * Returns the time of the most recent call to {@link #update()}, which is the timestamp of the current cycle.
+	 * Every reading taken during a cycle can share this timestamp.
+	 * 
+	 * @return the time the current cycle started in nanoseconds
+	 */
+	public static long getCycleTime() {
+		return cycleTime;
+	}
+	
+	/**
+	 * Returns the current value of the clock set with {@link #setClock(Clock)} in nanoseconds.
+	 * 
+	 * @return the current value of the clock in nanoseconds
+	 */
+	public static long nanoTime() {
+		return clock.nanoTime();
+	}
+	
     /**
-     * Returns the current value of the running Java Virtual Machine's
-     * high-resolution time source, in nanoseconds.
+     * Returns the current value of the clock set with {@link #setClock(Clock)}, which by default is the running Java
+     * Virtual Machine's high-resolution time source.
      *
      * <p>This method can only be used to measure elapsed time and is
      * not related to any other notion of system or wall-clock time.
@@ -51,13 +103,13 @@ public class Time {
      *
      * <p>The values returned by this method become meaningful only when
      * the difference between two such values, obtained within the same
-     * instance of a Java virtual machine, is computed.
+     * instance of a Java virtual machine, is computed. Use {@link #nanoTime()} where the precision of a double is not
+     * enough.
      *
-     * @return the current value of the running Java Virtual Machine's
-     *         high-resolution time source, in seconds
+     * @return the current value of the clock, in seconds
      */
 	public static double getTime() {
-		return (double)System.nanoTime() / SECOND;
+		return (double)clock.nanoTime() / SECOND;
 	}
 	
 }
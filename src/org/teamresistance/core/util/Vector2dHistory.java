@@ -0,0 +1,84 @@
+package org.teamresistance.core.util;
+
+import org.teamresistance.core.mathd.Vector2d;
+
+/**
+ * {@link History} of a position, interpolated linearly between samples. The coordinates are stored in two primitive
+ * arrays, so adding a sample allocates nothing.
+ *
+ */
+public class Vector2dHistory extends History {
+
+	private final double[] xs;
+	private final double[] ys;
+
+	/**
+	 * Creates a history which holds the given number of samples.
+	 *
+	 * @param capacity the number of samples kept
+	 */
+	public Vector2dHistory(int capacity) {
+		super(capacity);
+		xs = new double[capacity];
+		ys = new double[capacity];
+	}
+
+	/**
+	 * Adds a sample. Samples older than the newest one are ignored.
+	 *
+	 * @param time the time the position was measured in nanoseconds
+	 * @param x the x coordinate
+	 * @param y the y coordinate
+	 */
+	public void add(long time, double x, double y) {
+		int index = append(time);
+		if(index >= 0) {
+			xs[index] = x;
+			ys[index] = y;
+		}
+	}
+
+	/**
+	 * Adds a sample. Samples older than the newest one are ignored.
+	 *
+	 * @param time the time the position was measured in nanoseconds
+	 * @param position the position
+	 */
+	public void add(long time, Vector2d position) {
+		add(time, position.getX(), position.getY());
+	}
+
+	/**
+	 * Returns the position as of the given time.
+	 *
+	 * @param time the time in nanoseconds
+	 * @return the interpolated position at the time, or null if there are no samples
+	 */
+	public Vector2d get(long time) {
+		if(!locate(time)) return null;
+		double t = fraction();
+		return new Vector2d(xs[lower()] + (xs[upper()] - xs[lower()]) * t, ys[lower()] + (ys[upper()] - ys[lower()]) * t);
+	}
+
+	/**
+	 * Returns the x coordinate as of the given time without creating a vector.
+	 *
+	 * @param time the time in nanoseconds
+	 * @return the interpolated x coordinate at the time, or 0 if there are no samples
+	 */
+	public double getX(long time) {
+		if(!locate(time)) return 0;
+		return xs[lower()] + (xs[upper()] - xs[lower()]) * fraction();
+	}
+
+	/**
+	 * Returns the y coordinate as of the given time without creating a vector.
+	 *
+	 * @param time the time in nanoseconds
+	 * @return the interpolated y coordinate at the time, or 0 if there are no samples
+	 */
+	public double getY(long time) {
+		if(!locate(time)) return 0;
+		return ys[lower()] + (ys[upper()] - ys[lower()]) * fraction();
+	}
+}